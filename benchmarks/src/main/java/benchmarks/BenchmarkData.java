@@ -0,0 +1,50 @@
+package benchmarks;
+
+import java.util.Random;
+
+import common.ChatMessage;
+
+/**
+ * Общие входные данные бенчмарков: сообщения пользователей с повторяющимся словарем
+ */
+final class BenchmarkData {
+    private static final String[] WORDS = buildVocabulary(5000);
+
+    private BenchmarkData() {
+    }
+
+    /**
+     * Детерминированный набор сообщений (размер - степень двойки для индексации по маске)
+     */
+    static ChatMessage[] userMessages(int count, int users) {
+        Random random = new Random(42);
+        ChatMessage[] messages = new ChatMessage[count];
+        for (int i = 0; i < count; i++) {
+            StringBuilder text = new StringBuilder();
+            int words = 3 + random.nextInt(12);
+            for (int w = 0; w < words; w++) {
+                if (w > 0) text.append(' ');
+                // Степенное распределение: часть слов встречается намного чаще остальных
+                double skew = Math.pow(random.nextDouble(), 3);
+                text.append(WORDS[(int) (skew * WORDS.length)]);
+            }
+            messages[i] = new ChatMessage(ChatMessage.MessageType.USER_MESSAGE, "user" + random.nextInt(users), text.toString());
+        }
+        return messages;
+    }
+
+    private static String[] buildVocabulary(int size) {
+        String[] syllables = {"ка", "то", "ми", "ра", "но", "ве", "ли", "су", "да", "по", "ре", "ту"};
+        Random random = new Random(7);
+        String[] words = new String[size];
+        for (int i = 0; i < size; i++) {
+            StringBuilder word = new StringBuilder();
+            int length = 2 + random.nextInt(3);
+            for (int s = 0; s < length; s++) {
+                word.append(syllables[random.nextInt(syllables.length)]);
+            }
+            words[i] = word.toString() + i;
+        }
+        return words;
+    }
+}
@@ -0,0 +1,58 @@
+package benchmarks;
+
+import java.io.OutputStream;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import common.ChatMessage;
+import server.ChatServer;
+import server.ClientHandler;
+import server.Logger;
+
+/**
+ * ChatServer.broadcastMessage: рассылка одного сообщения всем клиентам.
+ * Клиенты пишут в пустой поток, поэтому измеряется форматирование, кодирование и учет,
+ * а не сеть.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class BroadcastBenchmark {
+
+    @Param({"10", "100", "1000"})
+    public int clients;
+
+    private ChatServer server;
+    private ChatMessage message;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        Logger.setLogLevel(Logger.LogLevel.WARN);
+        server = new ChatServer(0, 1);
+        for (int i = 0; i < clients; i++) {
+            String user = "user" + i;
+            server.registerClient(user, new ClientHandler(server, user, OutputStream.nullOutputStream()));
+        }
+        message = new ChatMessage(ChatMessage.MessageType.USER_MESSAGE, "user0", "привет всем, как дела?");
+    }
+
+    @Benchmark
+    public int broadcast() {
+        return server.broadcastMessage(message);
+    }
+}
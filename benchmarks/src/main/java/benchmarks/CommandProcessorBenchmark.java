@@ -0,0 +1,71 @@
+package benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import common.ChatMessage;
+import server.ChatServer;
+import server.CommandProcessor;
+import server.Logger;
+import server.StatsCalculator;
+
+/**
+ * Выполнение команд бота на заполненной статистике.
+ * cached - установившийся режим с кэшем ответов, afterUpdate - каждое выполнение
+ * после нового сообщения, т.е. с пересчетом ответа.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CommandProcessorBenchmark {
+    private static final int MESSAGE_COUNT = 4096;
+
+    @Param({"/stats", "/top", "/users", "/me", "/rate", "/cmdstats", "/help"})
+    public String command;
+
+    private StatsCalculator statsCalculator;
+    private CommandProcessor processor;
+    private ChatMessage message;
+    private ChatMessage[] updates;
+    private int nextUpdate;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        Logger.setLogLevel(Logger.LogLevel.WARN);
+        statsCalculator = new StatsCalculator();
+        updates = BenchmarkData.userMessages(MESSAGE_COUNT, 1000);
+        for (int i = 0; i < 20; i++) {
+            for (ChatMessage update : updates) {
+                statsCalculator.processUserMessage(update);
+            }
+        }
+        processor = new CommandProcessor(statsCalculator, new ChatServer(0, 1).getMessageBroker());
+        message = new ChatMessage(ChatMessage.MessageType.COMMAND, "user1", command);
+    }
+
+    @Benchmark
+    public String cached() {
+        return processor.execute(message);
+    }
+
+    @Benchmark
+    public String afterUpdate() {
+        statsCalculator.processUserMessage(updates[nextUpdate++ & (MESSAGE_COUNT - 1)]);
+        return processor.execute(message);
+    }
+}
@@ -0,0 +1,127 @@
+package benchmarks;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintWriter;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import server.ChatServer;
+import server.Logger;
+import server.LoopbackTransport;
+import server.Transport;
+
+/**
+ * Полная сессия клиента через LoopbackTransport: подключение, регистрация, одно сообщение
+ * до доставки всем слушателям и отключение. Проходит настоящие ClientHandler, рейт-лимит,
+ * MessageBroker и рассылку, но без сетевого стека. Каждая сессия - новый пользователь,
+ * поэтому рейт-лимит 60 сообщений в минуту не ограничивает бенчмарк.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class LoopbackSessionBenchmark {
+
+    @Param({"10", "100", "1000"})
+    public int listeners;
+
+    private LoopbackTransport transport;
+    private ChatServer server;
+    private final BlockingQueue<String> probe = new LinkedBlockingQueue<>();
+    private long session;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        Logger.setLogLevel(Logger.LogLevel.WARN);
+        transport = new LoopbackTransport();
+        server = new ChatServer(transport, listeners + 4);
+        Thread acceptor = new Thread(server::start, "ChatServer-Acceptor");
+        acceptor.setDaemon(true);
+        acceptor.start();
+
+        // Слушатели читают рассылку; первый передает строки бенчмарку
+        for (int i = 0; i < listeners; i++) {
+            Client client = new Client(transport.connect());
+            client.register("listener" + i);
+            boolean isProbe = i == 0;
+            Thread reader = new Thread(() -> client.drain(isProbe ? probe : null), "Listener-" + i);
+            reader.setDaemon(true);
+            reader.start();
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        server.shutdown();
+    }
+
+    @Benchmark
+    public String joinSendLeave() throws IOException, InterruptedException {
+        String name = "session" + session++;
+        Client client = new Client(transport.connect());
+        client.register(name);
+        String text = "сообщение от " + name;
+        client.out.println(text);
+
+        // Ждем, пока сообщение дойдет до слушателя
+        String line;
+        do {
+            line = probe.poll(5, TimeUnit.SECONDS);
+            if (line == null) {
+                throw new IllegalStateException("Сообщение не доставлено: " + text);
+            }
+        } while (!line.endsWith(text));
+        client.connection.close();
+        return line;
+    }
+
+    private static final class Client {
+        final Transport.Connection connection;
+        final BufferedReader in;
+        final PrintWriter out;
+
+        Client(Transport.Connection connection) throws IOException {
+            this.connection = connection;
+            this.in = new BufferedReader(new InputStreamReader(connection.getInputStream()));
+            this.out = new PrintWriter(connection.getOutputStream(), true);
+        }
+
+        void register(String name) throws IOException {
+            in.readLine(); // приглашение ввести имя
+            out.println(name);
+            in.readLine(); // приветствие
+        }
+
+        void drain(BlockingQueue<String> sink) {
+            try {
+                String line;
+                while ((line = in.readLine()) != null) {
+                    if (sink != null && line.startsWith("[session")) {
+                        sink.add(line);
+                    }
+                }
+            } catch (IOException e) {
+                // соединение закрыто при остановке сервера
+            }
+        }
+    }
+}
@@ -0,0 +1,71 @@
+package benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import common.ChatMessage;
+import server.ChatServer;
+import server.Logger;
+import server.MessageBroker;
+
+/**
+ * Пропускная способность маршрутизации MessageBroker: входящая очередь → маршрутизатор →
+ * отправитель (рассылка без клиентов). Очереди ограничены, поэтому в установившемся режиме
+ * скорость определяется самым медленным этапом конвейера.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MessageBrokerBenchmark {
+    private static final int MESSAGE_COUNT = 1024;
+
+    private MessageBroker broker;
+    private ChatMessage[] messages;
+
+    @State(Scope.Thread)
+    public static class Cursor {
+        int next;
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        Logger.setLogLevel(Logger.LogLevel.WARN);
+        ChatServer server = new ChatServer(0, 1);
+        broker = server.getMessageBroker();
+        broker.run();
+        messages = BenchmarkData.userMessages(MESSAGE_COUNT, 64);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        broker.shutdown();
+    }
+
+    @Benchmark
+    @Threads(1)
+    public void routeSingleProducer(Cursor cursor) {
+        broker.processIncomingMessage(messages[cursor.next++ & (MESSAGE_COUNT - 1)]);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public void routeFourProducers(Cursor cursor) {
+        broker.processIncomingMessage(messages[cursor.next++ & (MESSAGE_COUNT - 1)]);
+    }
+}
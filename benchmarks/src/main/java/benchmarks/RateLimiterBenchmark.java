@@ -0,0 +1,64 @@
+package benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import server.UserRateLimiter;
+
+/**
+ * UserRateLimiter.allowRequest под конкуренцией.
+ * limit=60 - почти все вызовы отклоняются (путь перегрузки), большой лимит - почти все проходят (CAS).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RateLimiterBenchmark {
+
+    @Param({"60", "2147483647"})
+    public int limit;
+
+    private UserRateLimiter sharedLimiter;
+
+    @State(Scope.Thread)
+    public static class OwnLimiter {
+        UserRateLimiter limiter;
+
+        @Setup(Level.Trial)
+        public void setUp(RateLimiterBenchmark benchmark) {
+            limiter = new UserRateLimiter(benchmark.limit);
+        }
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        sharedLimiter = new UserRateLimiter(limit);
+    }
+
+    @Benchmark
+    @Threads(1)
+    public boolean uncontended(OwnLimiter own) {
+        return own.limiter.allowRequest();
+    }
+
+    @Benchmark
+    @Threads(8)
+    public boolean sharedByEightThreads() {
+        return sharedLimiter.allowRequest();
+    }
+}
@@ -0,0 +1,53 @@
+package benchmarks;
+
+import java.io.OutputStream;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import common.ChatMessage;
+import server.ChatServer;
+import server.ClientHandler;
+import server.Logger;
+
+/**
+ * ClientHandler.sendMessage: форматирование строки и запись одному клиенту
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SendMessageBenchmark {
+
+    @Param({"USER_MESSAGE", "SYSTEM_MESSAGE", "STATISTICS"})
+    public ChatMessage.MessageType type;
+
+    private ClientHandler client;
+    private ChatMessage message;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        Logger.setLogLevel(Logger.LogLevel.WARN);
+        ChatServer server = new ChatServer(0, 1);
+        client = new ClientHandler(server, "reader", OutputStream.nullOutputStream());
+        message = new ChatMessage(type, "writer", "Короткое сообщение средней длины для проверки форматирования");
+    }
+
+    @Benchmark
+    public void sendMessage() {
+        client.sendMessage(message);
+    }
+}
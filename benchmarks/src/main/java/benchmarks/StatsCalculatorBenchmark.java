@@ -0,0 +1,61 @@
+package benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import common.ChatMessage;
+import server.Logger;
+import server.StatsCalculator;
+
+/**
+ * StatsCalculator.processUserMessage: разбор текста, счетчики, рейтинги, HyperLogLog.
+ * Вариант с четырьмя потоками соответствует пулу воркеров аналитики.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class StatsCalculatorBenchmark {
+    private static final int MESSAGE_COUNT = 4096;
+
+    private StatsCalculator statsCalculator;
+    private ChatMessage[] messages;
+
+    @State(Scope.Thread)
+    public static class Cursor {
+        int next;
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        Logger.setLogLevel(Logger.LogLevel.WARN);
+        statsCalculator = new StatsCalculator();
+        messages = BenchmarkData.userMessages(MESSAGE_COUNT, 1000);
+    }
+
+    @Benchmark
+    @Threads(1)
+    public void processSingleWorker(Cursor cursor) {
+        statsCalculator.processUserMessage(messages[cursor.next++ & (MESSAGE_COUNT - 1)]);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public void processFourWorkers(Cursor cursor) {
+        statsCalculator.processUserMessage(messages[cursor.next++ & (MESSAGE_COUNT - 1)]);
+    }
+}
@@ -14,12 +14,20 @@ public class ChatMessage {
     private final String user;
     private final String text;
     private final Instant timestamp;
+    private final long createdNanos; // Монотонное время создания для замера задержек
+    private final String recipient;  // null - сообщение для всех
 
     public ChatMessage(MessageType type, String user, String text) {
+        this(type, user, text, null);
+    }
+
+    public ChatMessage(MessageType type, String user, String text, String recipient) {
         this.type = type;
         this.user = user;
         this.text = text;
+        this.recipient = recipient;
         this.timestamp = Instant.now();
+        this.createdNanos = System.nanoTime();
     }
 
     // Getters
@@ -27,6 +35,8 @@ public class ChatMessage {
     public String getUser() { return user; }
     public String getText() { return text; }
     public Instant getTimestamp() { return timestamp; }
+    public long getCreatedNanos() { return createdNanos; }
+    public String getRecipient() { return recipient; }
 
     @Override
     public String toString() {
@@ -0,0 +1,168 @@
+package server;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.IntConsumer;
+import java.util.function.IntSupplier;
+import java.util.function.LongSupplier;
+import java.util.function.ToIntFunction;
+
+/**
+ * Адаптивный размер пулов обработчиков по глубине очереди и ее отставанию.
+ * Пул растет вдвое, если очередь "горячая" (глубина выше порога или старое сообщение
+ * в голове) несколько замеров подряд, и уменьшается на один поток после долгого
+ * затишья. Разные пороги роста и сжатия и счетчики подряд идущих замеров
+ * не дают пулу колебаться на границе. Границы и пороги читаются из конфигурации
+ * при каждом замере, поэтому меняются без перезапуска.
+ */
+public class AdaptiveScaler {
+    private final ScheduledExecutorService scheduler;
+    private final List<Pool> pools = new CopyOnWriteArrayList<>();
+    private final ServerConfig.Listener configListener = this::applyConfig;
+    private ScheduledFuture<?> sampling;
+
+    /**
+     * Управляемый пул: текущий размер, способ изменить его и сигналы нагрузки
+     */
+    private static final class Pool {
+        private final String name;
+        private final IntSupplier workers;
+        private final IntConsumer resize;
+        private final IntSupplier depth;
+        private final LongSupplier lagNanos;
+        private final ToIntFunction<ServerConfig.Snapshot> min;
+        private final ToIntFunction<ServerConfig.Snapshot> max;
+        private final AtomicLong resizes = new AtomicLong(0);
+        private int hotTicks;
+        private int coldTicks;
+
+        Pool(String name, IntSupplier workers, IntConsumer resize, IntSupplier depth, LongSupplier lagNanos,
+             ToIntFunction<ServerConfig.Snapshot> min, ToIntFunction<ServerConfig.Snapshot> max) {
+            this.name = name;
+            this.workers = workers;
+            this.resize = resize;
+            this.depth = depth;
+            this.lagNanos = lagNanos;
+            this.min = min;
+            this.max = max;
+        }
+    }
+
+    public AdaptiveScaler() {
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "AdaptiveScaler");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Отправитель: шарды рассылки, сигнал - исходящая очередь вместе с очередями шардов
+     */
+    public void addSender(MessageBroker broker) {
+        FanOutSender fanOut = broker.getFanOutSender();
+        addPool(new Pool("sender", fanOut::getWorkers, fanOut::setWorkers,
+            () -> broker.getOutgoingQueue().size() + fanOut.getBacklog(),
+            () -> Math.max(broker.getOutgoingLagNanos(), fanOut.getLagNanos()),
+            ServerConfig.Snapshot::getSenderWorkersMin, ServerConfig.Snapshot::getSenderWorkersMax));
+    }
+
+    /**
+     * Воркеры аналитики, сигнал - очередь аналитики
+     */
+    public void addAnalytics(AnalyticsBot bot, MessageBroker broker) {
+        addPool(new Pool("analytics", bot::getWorkers, bot::setWorkers,
+            () -> broker.getAnalyticsQueue().size(), broker::getAnalyticsLagNanos,
+            ServerConfig.Snapshot::getAnalyticsWorkersMin, ServerConfig.Snapshot::getAnalyticsWorkersMax));
+    }
+
+    private void addPool(Pool pool) {
+        pools.add(pool);
+        MetricsRegistry metrics = MetricsRegistry.getInstance();
+        String labels = MetricsRegistry.label("pool", pool.name);
+        metrics.gauge("chat_pool_workers", labels, "Потоков в адаптивном пуле", () -> pool.workers.getAsInt());
+        metrics.counter("chat_pool_resizes_total", labels, "Изменений размера адаптивного пула", pool.resizes::get);
+    }
+
+    public void start() {
+        ServerConfig config = ServerConfig.getInstance();
+        long interval = config.getSnapshot().getAdaptiveIntervalMillis();
+        schedule(interval);
+        config.addListener(configListener);
+        Logger.info("AdaptiveScaler", "Адаптивные пулы: %d, замер каждые %d мс, %s",
+            pools.size(), interval, config.getSnapshot().isAdaptiveEnabled() ? "включены" : "выключены");
+    }
+
+    // Перепланирование при смене интервала в конфигурации
+    private synchronized void schedule(long intervalMillis) {
+        if (sampling != null) {
+            sampling.cancel(false);
+        }
+        sampling = scheduler.scheduleAtFixedRate(() -> {
+            try {
+                sample();
+            } catch (Exception e) {
+                Logger.error("AdaptiveScaler", "Ошибка при изменении размера пулов: " + e.getMessage(), e);
+            }
+        }, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    private void applyConfig(ServerConfig.Snapshot previous, ServerConfig.Snapshot current) {
+        if (previous.getAdaptiveIntervalMillis() != current.getAdaptiveIntervalMillis()) {
+            schedule(current.getAdaptiveIntervalMillis());
+        }
+    }
+
+    /**
+     * Один замер (выполняется только в потоке планировщика)
+     */
+    void sample() {
+        ServerConfig.Snapshot config = ServerConfig.getInstance().getSnapshot();
+        if (!config.isAdaptiveEnabled()) return;
+
+        long growLagNanos = TimeUnit.MILLISECONDS.toNanos(config.getAdaptiveGrowLagMillis());
+        for (Pool pool : pools) {
+            int current = pool.workers.getAsInt();
+            int min = pool.min.applyAsInt(config);
+            int max = pool.max.applyAsInt(config);
+
+            // Границы могли измениться при перезагрузке конфигурации
+            if (current < min || current > max) {
+                resize(pool, current, Math.max(min, Math.min(max, current)), "границы из конфигурации");
+                continue;
+            }
+
+            int depth = pool.depth.getAsInt();
+            long lag = pool.lagNanos.getAsLong();
+            boolean hot = depth >= config.getAdaptiveGrowDepth() || lag >= growLagNanos;
+            boolean cold = depth <= config.getAdaptiveShrinkDepth() && lag < growLagNanos / 2;
+            pool.hotTicks = hot ? pool.hotTicks + 1 : 0;
+            pool.coldTicks = cold ? pool.coldTicks + 1 : 0;
+
+            if (pool.hotTicks >= config.getAdaptiveGrowTicks() && current < max) {
+                resize(pool, current, Math.min(max, current * 2),
+                    String.format("очередь %d, отставание %d мс", depth, TimeUnit.NANOSECONDS.toMillis(lag)));
+            } else if (pool.coldTicks >= config.getAdaptiveShrinkTicks() && current > min) {
+                resize(pool, current, current - 1, "очередь пуста");
+            }
+        }
+    }
+
+    private void resize(Pool pool, int from, int to, String reason) {
+        pool.resize.accept(to);
+        pool.resizes.incrementAndGet();
+        pool.hotTicks = 0;
+        pool.coldTicks = 0;
+        Logger.info("AdaptiveScaler", "Пул %s: %d -> %d (%s)", pool.name, from, to, reason);
+    }
+
+    public void shutdown() {
+        ServerConfig.getInstance().removeListener(configListener);
+        scheduler.shutdownNow();
+    }
+}
@@ -1,8 +1,16 @@
 package server;
 
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import common.ChatMessage;
 
@@ -11,44 +19,138 @@ public class AnalyticsBot {
     private final MessageBroker messageBroker;
     private final ScheduledExecutorService scheduler;
     private final CommandProcessor commandProcessor;
+    private final Path checkpointFile; // null, если снимки отключены
+    private final ServerConfig.Listener configListener = this::applyConfig;
+    private final List<Worker> workers = new ArrayList<>(); // под блокировкой this
+    private final AtomicInteger workerNumber = new AtomicInteger(0);
+    private ScheduledFuture<?> reportTask;
     private volatile boolean isRunning;
 
     public AnalyticsBot(MessageBroker messageBroker) {
+        this(messageBroker, ServerConfig.getInstance().getCheckpointFile());
+    }
+
+    /**
+     * @param checkpointPath файл снимка статистики, пустая строка - без снимков (прогрев)
+     */
+    AnalyticsBot(MessageBroker messageBroker, String checkpointPath) {
         this.statsCalculator = new StatsCalculator();
         this.messageBroker = messageBroker;
-        this.scheduler = Executors.newScheduledThreadPool(2);
+        AtomicInteger schedulerThreads = new AtomicInteger(0);
+        this.scheduler = Executors.newScheduledThreadPool(2,
+            r -> new Thread(r, "AnalyticsBot-Scheduler-" + schedulerThreads.getAndIncrement()));
         this.isRunning = true;
         this.commandProcessor = new CommandProcessor(statsCalculator, messageBroker);
+        this.checkpointFile = checkpointPath.isEmpty() ? null : Paths.get(checkpointPath);
     }
 
     public void start() {
         Logger.info("AnalyticsBot", "AnalyticsBot запущен");
         
-        // Поток для обработки сообщений из очереди
-        new Thread(this::processMessages, "AnalyticsBot-Processor").start();
+        // Восстанавливаем статистику до того, как воркеры начнут ее менять
+        restoreCheckpoint();
+        
+        // Пул воркеров: конкурирующие потребители analyticsQueue, общие счетчики в StatsCalculator
+        setWorkers(ServerConfig.getInstance().getAnalyticsWorkers());
+        
+        // Команды выполняются в отдельной полосе MessageBroker, а не в воркерах аналитики
+        if (ServerConfig.getInstance().isCommandProcessorEnabled()) {
+            messageBroker.registerCommandProcessor(commandProcessor);
+        } else {
+            Logger.info("AnalyticsBot", "Обработка команд отключена в конфигурации");
+        }
         
-        // Периодическая генерация отчетов (каждую минуту)
-        scheduler.scheduleAtFixedRate(this::generatePeriodicReport, 1, ServerConfig.getInstance().getReportIntervalMinutes(), TimeUnit.MINUTES);
+        // Периодическая генерация отчетов (интервал меняется при перезагрузке конфигурации)
+        scheduleReports(1, ServerConfig.getInstance().getReportIntervalMinutes());
+        ServerConfig.getInstance().addListener(configListener);
         
         // Ежесекундное обновление активности (для определения "онлайн" статуса)
         scheduler.scheduleAtFixedRate(statsCalculator::cleanupInactiveUsers, 5, 5, TimeUnit.MINUTES);
+        
+        // Периодический снимок статистики на диск
+        if (checkpointFile != null) {
+            int interval = ServerConfig.getInstance().getCheckpointIntervalSeconds();
+            scheduler.scheduleAtFixedRate(this::saveCheckpoint, interval, interval, TimeUnit.SECONDS);
+        }
+    }
+    
+    private void restoreCheckpoint() {
+        if (checkpointFile == null || !Files.exists(checkpointFile)) return;
+        
+        try {
+            long start = System.nanoTime();
+            StatsSnapshot snapshot = StatsCheckpoint.read(checkpointFile);
+            long read = System.nanoTime();
+            statsCalculator.restore(snapshot);
+            long restored = System.nanoTime();
+            
+            Logger.info("AnalyticsBot", 
+                "Статистика восстановлена из %s: %d пользователей, %d слов (чтение %d мс, восстановление %d мс)",
+                checkpointFile, snapshot.users.length, snapshot.words.length,
+                TimeUnit.NANOSECONDS.toMillis(read - start), TimeUnit.NANOSECONDS.toMillis(restored - read));
+        } catch (IOException e) {
+            Logger.error("AnalyticsBot", "Не удалось восстановить статистику из " + checkpointFile, e);
+        }
+    }
+    
+    private void saveCheckpoint() {
+        try {
+            long start = System.nanoTime();
+            StatsSnapshot snapshot = statsCalculator.snapshot();
+            long copied = System.nanoTime();
+            StatsCheckpoint.write(snapshot, checkpointFile);
+            long written = System.nanoTime();
+            
+            Logger.debug("AnalyticsBot", 
+                "Снимок статистики сохранен: %d пользователей, %d слов (копия %d мс, запись %d мс)",
+                snapshot.users.length, snapshot.words.length,
+                TimeUnit.NANOSECONDS.toMillis(copied - start), TimeUnit.NANOSECONDS.toMillis(written - copied));
+        } catch (IOException e) {
+            Logger.error("AnalyticsBot", "Не удалось сохранить снимок статистики в " + checkpointFile, e);
+        }
+    }
+
+    /**
+     * Число воркеров аналитики; лишние завершаются после текущего сообщения (вызывает AdaptiveScaler)
+     */
+    public synchronized void setWorkers(int count) {
+        if (count == workers.size()) return;
+        while (workers.size() < count) {
+            Worker worker = new Worker();
+            workers.add(worker);
+            new Thread(worker, "AnalyticsBot-Processor-" + workerNumber.getAndIncrement()).start();
+        }
+        while (workers.size() > count) {
+            workers.remove(workers.size() - 1).retired = true;
+        }
+        Logger.info("AnalyticsBot", "Воркеров аналитики: " + count);
+    }
+
+    public synchronized int getWorkers() {
+        return workers.size();
     }
 
-    private void processMessages() {
-        while (isRunning) {
+    private final class Worker implements Runnable {
+        private volatile boolean retired;
+
+        @Override
+        public void run() {
+            processMessages(this);
+        }
+    }
+
+    private void processMessages(Worker self) {
+        while (isRunning && !self.retired) {
             try {
                 ChatMessage message = messageBroker.getAnalyticsQueue().poll(100, TimeUnit.MILLISECONDS);
                 if (message == null) continue;
+                ChatEvents.dequeued("analytics", message, messageBroker.getAnalyticsQueue());
 
                 // Обработка в зависимости от типа сообщения
                 switch (message.getType()) {
                     case USER_MESSAGE:
                         statsCalculator.processUserMessage(message);
-                        break;
-                        
-                    case COMMAND:
-                        // Команды обрабатываются CommandProcessor
-                        commandProcessor.processCommand(message);
+                        messageBroker.getLatency().record(MessageLatency.Stage.ANALYTICS, message);
                         break;
                         
                     default:
@@ -84,12 +186,30 @@ public class AnalyticsBot {
         }
     }
 
+    private synchronized void scheduleReports(long initialDelayMinutes, long intervalMinutes) {
+        if (reportTask != null) {
+            reportTask.cancel(false);
+        }
+        reportTask = scheduler.scheduleAtFixedRate(this::generatePeriodicReport, initialDelayMinutes, intervalMinutes, TimeUnit.MINUTES);
+    }
+
+    private void applyConfig(ServerConfig.Snapshot previous, ServerConfig.Snapshot current) {
+        if (previous.getReportIntervalMinutes() != current.getReportIntervalMinutes()) {
+            scheduleReports(current.getReportIntervalMinutes(), current.getReportIntervalMinutes());
+            Logger.info("AnalyticsBot", "Интервал отчетов: %d мин", current.getReportIntervalMinutes());
+        }
+        if (previous.getResponseCacheStalenessMillis() != current.getResponseCacheStalenessMillis()) {
+            commandProcessor.setResponseCacheStalenessMillis(current.getResponseCacheStalenessMillis());
+        }
+    }
+
     public StatsCalculator getStatsCalculator() {
         return statsCalculator;
     }
 
     public void shutdown() {
         isRunning = false;
+        ServerConfig.getInstance().removeListener(configListener);
         scheduler.shutdown();
         try {
             if (!scheduler.awaitTermination(3, TimeUnit.SECONDS)) {
@@ -98,6 +218,9 @@ public class AnalyticsBot {
         } catch (InterruptedException e) {
             scheduler.shutdownNow();
         }
+        if (checkpointFile != null) {
+            saveCheckpoint();
+        }
         System.out.println("AnalyticsBot остановлен");
     }
 }
@@ -0,0 +1,206 @@
+package server;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Асинхронная запись лога.
+ * Записи попадают в заранее выделенное кольцо (ограниченная MPSC-очередь Вьюкова):
+ * поток-источник только копирует ссылки в ячейку, форматирование и вывод выполняет
+ * один фоновый поток. При заполнении кольца запись отбрасывается (DROP) или
+ * поток-источник ждет освобождения места (BLOCK).
+ */
+public class AsyncLogWriter {
+
+    public enum OverflowPolicy {
+        DROP, BLOCK
+    }
+
+    private static final int MAX_BATCH_CHARS = 16 * 1024;
+
+    private static final class Slot {
+        final AtomicLong sequence;
+        Logger.LogLevel level;
+        long timestamp;
+        String thread;
+        String context;
+        String message;
+        Object[] args;
+        Throwable throwable;
+
+        Slot(long sequence) {
+            this.sequence = new AtomicLong(sequence);
+        }
+    }
+
+    private final Slot[] ring;
+    private final int mask;
+    private final AtomicLong tail = new AtomicLong(0); // следующая позиция для записи
+    private long head = 0;                            // читает только поток записи
+    private final OverflowPolicy overflowPolicy;
+    private final PrintStream console;
+    private final RollingFileAppender fileAppender;   // null - только консоль
+    private final Thread writerThread;
+    private final LongAdder dropped = new LongAdder();
+    private long reportedDrops = 0;
+    private final StringBuilder batch = new StringBuilder(MAX_BATCH_CHARS);
+    private volatile boolean writerParked;
+    private volatile boolean running = true;
+
+    /**
+     * @param capacity размер кольца, округляется вверх до степени двойки
+     */
+    public AsyncLogWriter(int capacity, OverflowPolicy overflowPolicy, PrintStream console, RollingFileAppender fileAppender) {
+        int size = Integer.highestOneBit(Math.max(2, capacity - 1)) << 1;
+        this.ring = new Slot[size];
+        for (int i = 0; i < size; i++) {
+            ring[i] = new Slot(i);
+        }
+        this.mask = size - 1;
+        this.overflowPolicy = overflowPolicy;
+        this.console = console;
+        this.fileAppender = fileAppender;
+        this.writerThread = new Thread(this::drainLoop, "Logger-Writer");
+        writerThread.setDaemon(true);
+        writerThread.start();
+    }
+
+    /**
+     * Помещает запись в кольцо. Не форматирует и не выполняет ввод-вывод.
+     * @return false, если запись отброшена
+     */
+    public boolean publish(Logger.LogLevel level, String context, String message, Object[] args, Throwable throwable) {
+        long timestamp = System.currentTimeMillis();
+        String thread = Thread.currentThread().getName();
+        while (true) {
+            long position = tail.get();
+            Slot slot = ring[(int) position & mask];
+            long difference = slot.sequence.get() - position;
+            if (difference == 0) {
+                if (!tail.compareAndSet(position, position + 1)) {
+                    continue;
+                }
+                slot.level = level;
+                slot.timestamp = timestamp;
+                slot.thread = thread;
+                slot.context = context;
+                slot.message = message;
+                slot.args = args;
+                slot.throwable = throwable;
+                slot.sequence.lazySet(position + 1);
+                if (writerParked) {
+                    LockSupport.unpark(writerThread);
+                }
+                return true;
+            }
+            if (difference < 0) {
+                // Кольцо заполнено
+                if (overflowPolicy == OverflowPolicy.DROP || !running || Thread.currentThread() == writerThread) {
+                    dropped.increment();
+                    return false;
+                }
+                LockSupport.unpark(writerThread);
+                LockSupport.parkNanos(TimeUnit.MICROSECONDS.toNanos(50));
+            }
+            // difference > 0: позицию уже занял другой поток, перечитываем tail
+        }
+    }
+
+    private void drainLoop() {
+        while (running || hasPending()) {
+            if (drain()) {
+                continue;
+            }
+            writerParked = true;
+            if (!hasPending() && running) {
+                LockSupport.parkNanos(this, TimeUnit.MILLISECONDS.toNanos(100));
+            }
+            writerParked = false;
+        }
+        // Последний проход: сообщить о потерянных при остановке записях
+        drain();
+    }
+
+    private boolean hasPending() {
+        return ring[(int) head & mask].sequence.get() == head + 1;
+    }
+
+    /**
+     * Выводит все опубликованные записи пачками
+     * @return true, если что-то было записано
+     */
+    private boolean drain() {
+        boolean wrote = false;
+        while (hasPending()) {
+            Slot slot = ring[(int) head & mask];
+            Logger.formatLine(batch, slot.level, slot.timestamp, slot.thread, slot.context, slot.message, slot.args, slot.throwable);
+            slot.thread = null;
+            slot.context = null;
+            slot.message = null;
+            slot.args = null;
+            slot.throwable = null;
+            slot.sequence.lazySet(head + ring.length);
+            head++;
+            wrote = true;
+            if (batch.length() >= MAX_BATCH_CHARS) {
+                flush();
+            }
+        }
+        long totalDropped = dropped.sum();
+        long lost = totalDropped - reportedDrops;
+        if (lost > 0) {
+            reportedDrops = totalDropped;
+            Logger.formatLine(batch, Logger.LogLevel.WARN, System.currentTimeMillis(), writerThread.getName(),
+                "Logger", "Буфер лога переполнен, потеряно записей: %d", new Object[] {lost}, null);
+        }
+        if (batch.length() > 0) {
+            flush();
+        }
+        return wrote;
+    }
+
+    private void flush() {
+        if (batch.length() == 0) {
+            return;
+        }
+        console.print(batch);
+        console.flush();
+        if (fileAppender != null) {
+            try {
+                fileAppender.write(batch);
+                fileAppender.flush();
+            } catch (IOException e) {
+                console.println("Ошибка записи лога в файл: " + e.getMessage());
+            }
+        }
+        batch.setLength(0);
+    }
+
+    public long getDropped() {
+        return dropped.sum();
+    }
+
+    /**
+     * Дописывает накопленные записи и останавливает поток записи
+     */
+    public void shutdown() {
+        running = false;
+        LockSupport.unpark(writerThread);
+        try {
+            writerThread.join(TimeUnit.SECONDS.toMillis(5));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (fileAppender != null) {
+            try {
+                fileAppender.close();
+            } catch (IOException e) {
+                console.println("Ошибка при закрытии файла лога: " + e.getMessage());
+            }
+        }
+    }
+}
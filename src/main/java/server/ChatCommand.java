@@ -0,0 +1,57 @@
+package server;
+
+/**
+ * Команда бота (SPI).
+ * Реализации регистрируются в META-INF/services/server.ChatCommand и загружаются
+ * через ServiceLoader, поэтому новая команда не требует изменений в CommandProcessor.
+ */
+public interface ChatCommand {
+
+    /**
+     * Основное имя команды без "/", например "stats"
+     */
+    String name();
+
+    /**
+     * Дополнительные имена команды
+     */
+    default String[] aliases() {
+        return new String[0];
+    }
+
+    /**
+     * Строка для /help, null - команда не показывается в справке
+     */
+    default String usage() {
+        return null;
+    }
+
+    /**
+     * true - команда дешевая и выполняется сразу в потоке маршрутизатора,
+     * false - выполняется в полосе CommandExecutor с лимитами и таймаутом
+     */
+    default boolean isInline() {
+        return false;
+    }
+
+    /**
+     * true - ответ получает только вызвавший пользователь, а не весь чат
+     */
+    default boolean isPrivate() {
+        return false;
+    }
+
+    /**
+     * Ключ кэша ответа (см. ResponseCache), null - ответ не кэшируется
+     */
+    default String cacheKey(String user, String args) {
+        return null;
+    }
+
+    /**
+     * Выполняет команду
+     * @param args аргументы после имени команды (без начальных и конечных пробелов)
+     * @return текст ответа
+     */
+    String execute(CommandContext context, String user, String args);
+}
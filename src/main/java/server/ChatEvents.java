@@ -0,0 +1,160 @@
+package server;
+
+import java.util.Collection;
+
+import common.ChatMessage;
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * События JDK Flight Recorder для жизненного цикла сообщения.
+ * Пока запись не включена, shouldCommit() возвращает false и событие не заполняется;
+ * объект события JIT обычно устраняет, поэтому накладные расходы близки к нулю.
+ * Включаются профилем netchat.jfc (см. README).
+ */
+public final class ChatEvents {
+
+    private ChatEvents() {
+    }
+
+    // ================= СОБЫТИЯ =================
+
+    @Name("netchat.ClientConnect")
+    @Label("Client Connect")
+    @Category({"NetChat", "Connections"})
+    @Description("Клиент зарегистрировался в чате")
+    @StackTrace(false)
+    public static final class ClientConnectEvent extends Event {
+        @Label("User") String user;
+        @Label("Remote Address") String remoteAddress;
+    }
+
+    @Name("netchat.ClientDisconnect")
+    @Label("Client Disconnect")
+    @Category({"NetChat", "Connections"})
+    @Description("Клиент отключился")
+    @StackTrace(false)
+    public static final class ClientDisconnectEvent extends Event {
+        @Label("User") String user;
+        @Label("Connection Age") @Timespan(Timespan.MILLISECONDS) long connectionAge;
+    }
+
+    @Name("netchat.MessageEnqueue")
+    @Label("Message Enqueue")
+    @Category({"NetChat", "Broker"})
+    @Description("Сообщение помещено в очередь MessageBroker")
+    @StackTrace(false)
+    public static final class MessageEnqueueEvent extends Event {
+        @Label("Queue") String queue;
+        @Label("Message Type") String messageType;
+        @Label("User") String user;
+        @Label("Queue Size") int queueSize;
+        @Label("Accepted") boolean accepted;
+    }
+
+    @Name("netchat.MessageDequeue")
+    @Label("Message Dequeue")
+    @Category({"NetChat", "Broker"})
+    @Description("Сообщение извлечено из очереди MessageBroker")
+    @StackTrace(false)
+    public static final class MessageDequeueEvent extends Event {
+        @Label("Queue") String queue;
+        @Label("Message Type") String messageType;
+        @Label("User") String user;
+        @Label("Queue Size") int queueSize;
+        @Label("Message Age") @Timespan(Timespan.NANOSECONDS) long messageAge;
+    }
+
+    @Name("netchat.Broadcast")
+    @Label("Broadcast")
+    @Category({"NetChat", "Broker"})
+    @Description("Рассылка сообщения всем клиентам, длительность - от начала до конца записи")
+    @StackTrace(false)
+    public static final class BroadcastEvent extends Event {
+        @Label("Message Type") String messageType;
+        @Label("User") String user;
+        @Label("Recipients") int recipients;
+        @Label("Payload Length") int payloadChars;
+    }
+
+    @Name("netchat.RateLimitRejection")
+    @Label("Rate Limit Rejection")
+    @Category({"NetChat", "Connections"})
+    @Description("Сообщение отклонено рейт-лимитом")
+    @StackTrace(false)
+    public static final class RateLimitEvent extends Event {
+        @Label("User") String user;
+        @Label("Limit Per Minute") int limit;
+    }
+
+    @Name("netchat.CommandExecution")
+    @Label("Command Execution")
+    @Category({"NetChat", "Commands"})
+    @Description("Выполнение команды бота")
+    @StackTrace(false)
+    public static final class CommandEvent extends Event {
+        @Label("Command") String command;
+        @Label("User") String user;
+        @Label("Inline") boolean inline;
+        @Label("Failed") boolean failed;
+    }
+
+    // ================= МГНОВЕННЫЕ СОБЫТИЯ =================
+
+    public static void clientConnected(String user, String remoteAddress) {
+        ClientConnectEvent event = new ClientConnectEvent();
+        if (event.shouldCommit()) {
+            event.user = user;
+            event.remoteAddress = remoteAddress;
+            event.commit();
+        }
+    }
+
+    public static void clientDisconnected(String user, long connectionAgeMillis) {
+        ClientDisconnectEvent event = new ClientDisconnectEvent();
+        if (event.shouldCommit()) {
+            event.user = user;
+            event.connectionAge = connectionAgeMillis;
+            event.commit();
+        }
+    }
+
+    // Размер очереди читается, только если событие записывается
+    public static void enqueued(String queue, ChatMessage message, Collection<?> target, boolean accepted) {
+        MessageEnqueueEvent event = new MessageEnqueueEvent();
+        if (event.shouldCommit()) {
+            event.queue = queue;
+            event.messageType = message.getType().name();
+            event.user = message.getUser();
+            event.queueSize = target.size();
+            event.accepted = accepted;
+            event.commit();
+        }
+    }
+
+    public static void dequeued(String queue, ChatMessage message, Collection<?> source) {
+        MessageDequeueEvent event = new MessageDequeueEvent();
+        if (event.shouldCommit()) {
+            event.queue = queue;
+            event.messageType = message.getType().name();
+            event.user = message.getUser();
+            event.queueSize = source.size();
+            event.messageAge = System.nanoTime() - message.getCreatedNanos();
+            event.commit();
+        }
+    }
+
+    public static void rateLimited(String user, int limit) {
+        RateLimitEvent event = new RateLimitEvent();
+        if (event.shouldCommit()) {
+            event.user = user;
+            event.limit = limit;
+            event.commit();
+        }
+    }
+}
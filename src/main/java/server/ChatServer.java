@@ -1,45 +1,66 @@
 package server;
 
 import java.io.IOException;
-import java.net.ServerSocket;
-import java.net.Socket;
-import java.util.concurrent.ConcurrentHashMap;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 import common.ChatMessage;
 
 public class ChatServer {
-    private final int port;
+    private final Transport transport;
     private final ExecutorService clientThreadPool;
-    private final ConcurrentHashMap<String, ClientHandler> connectedClients;
+    private final SessionRegistry sessions = new SessionRegistry(); // Все сведения о подключенных пользователях
     private volatile boolean isRunning;
     private MessageBroker messageBroker; // Ссылка на брокер
+    private final PresenceCoalescer presence; // Уведомления о входе и выходе, по тактам
+    private final ScheduledExecutorService sessionExpiry; // Закрытие сессий, не восстановленных вовремя
+    private final AtomicLong sessionsResumed = new AtomicLong(0);
+    private final AtomicLong sessionsExpired = new AtomicLong(0);
 
     public ChatServer(int port, int maxClients) {
-        this.port = port;
+        this(new SocketTransport(port), maxClients);
+    }
+
+    public ChatServer(Transport transport, int maxClients) {
+        this.transport = transport;
         this.clientThreadPool = Executors.newFixedThreadPool(maxClients);
-        this.connectedClients = new ConcurrentHashMap<>();
         this.isRunning = true;
         this.messageBroker = new MessageBroker(this); // Создаем брокер
+        this.presence = new PresenceCoalescer(messageBroker);
+        this.sessionExpiry = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "SessionExpiry");
+            thread.setDaemon(true);
+            return thread;
+        });
     }
 
     public void start() {
-        Logger.info("Запуск чат-сервера на порту " + port);
-        try (ServerSocket serverSocket = new ServerSocket(port)) {
+        Logger.info("Запуск чат-сервера: " + transport.describe());
+        try {
             // Запускаем поток для MessageBroker
             new Thread(messageBroker, "MessageBroker-Thread").start();
             Logger.info("MessageBroker запущен");
- 
-            while (isRunning) {
-                Socket clientSocket = serverSocket.accept();
-                Logger.info("Новое подключение: " + clientSocket.getInetAddress());
-                
+            presence.start();
+
+            // Время готовности пишем только после успешной привязки порта
+            transport.bind();
+            Logger.info("Сервер слушает " + transport.describe() + " через "
+                + ManagementFactory.getRuntimeMXBean().getUptime() + " мс после запуска JVM");
+
+            transport.serve(connection -> {
+                Logger.info("Новое подключение: " + connection.getRemoteAddress());
+
                 // Создаем обработчик клиента
-                ClientHandler clientHandler = new ClientHandler(clientSocket, this);
+                ClientHandler clientHandler = new ClientHandler(connection, this);
                 clientThreadPool.execute(clientHandler);
-            }
+            });
         } catch (IOException e) {
             Logger.error("Ошибка сервера: " + e.getMessage(), e);
         } catch (Exception e) {
@@ -49,28 +70,134 @@ public class ChatServer {
         }
     }
 
-    // Регистрация клиента после успешной аутентификации
-    public void registerClient(String username, ClientHandler handler) {
-        connectedClients.put(username, handler);
-        messageBroker.addClient(username);
-        broadcastSystemMessage(username + " присоединился к чату.");
-        Logger.info("Зарегистрирован пользователь: " + username + ", активных пользователей: " + connectedClients.size());
+    // Регистрация клиента после успешной аутентификации; null - имя уже занято
+    public SessionRegistry.Session registerClient(String username, ClientHandler handler) {
+        int rateLimit = ServerConfig.getInstance().getRateLimitPerMinute();
+        SessionRegistry.Session session = sessions.register(username, handler, rateLimit);
+        if (session == null) {
+            // Отключенная сессия не держит имя: вход без токена закрывает ее
+            SessionRegistry.Session detached = sessions.get(username);
+            if (detached != null && detached.closeIfDetached(0)) {
+                Logger.info("Отключенная сессия " + username + " закрыта новым входом");
+                removeClient(detached);
+                session = sessions.register(username, handler, rateLimit);
+            }
+        }
+        if (session == null) {
+            Logger.info("Имя уже занято: " + username);
+            return null;
+        }
+        presence.joined(username);
+        Logger.info("Зарегистрирован пользователь: " + username + ", активных пользователей: " + sessions.size());
+        return session;
+    }
+
+    /**
+     * Восстановление отключенной сессии по токену: новое подключение получает накопленные
+     * сообщения, лимитер и имя прежней сессии без уведомления о входе, а сессия - новый токен
+     * @return сессия или null, если токен неизвестен, сессия закрыта или еще подключена
+     */
+    public SessionRegistry.Session resumeClient(String token, ClientHandler handler) {
+        SessionRegistry.Session session = sessions.getByToken(token);
+        if (session == null) return null;
+        int lost = session.attach(handler);
+        if (lost < 0) return null;
+        sessions.rotateToken(session); // увиденный однажды токен не дает доступа к сессии
+        sessionsResumed.incrementAndGet();
+        String text = "Сессия восстановлена, " + session.getUsername() + "."
+            + (lost > 0 ? " Пропущено сообщений: " + lost + "." : "");
+        handler.sendMessage(new ChatMessage(ChatMessage.MessageType.SYSTEM_MESSAGE, "Система", text));
+        Logger.info("Сессия восстановлена: " + session.getUsername() + ", пропущено сообщений: " + lost);
+        return session;
+    }
+
+    /**
+     * Обрыв соединения: сессия ждет переподключения server.session.resume.grace.ms,
+     * при остановке сервера или нулевом сроке удаляется сразу
+     */
+    public void detachClient(SessionRegistry.Session session, ClientHandler handler) {
+        long detach = session.detach(handler);
+        if (detach < 0) return; // сессию уже подхватило новое подключение
+        long grace = ServerConfig.getInstance().getSnapshot().getSessionResumeGraceMillis();
+        if (isRunning && grace > 0) {
+            try {
+                sessionExpiry.schedule(() -> expire(session, detach), grace, TimeUnit.MILLISECONDS);
+                Logger.info("Сессия " + session.getUsername() + " ждет переподключения " + grace + " мс");
+                return;
+            } catch (RejectedExecutionException e) {
+                // сервер останавливается
+            }
+        }
+        if (session.closeIfDetached(detach)) {
+            removeClient(session);
+        }
+    }
+
+    private void expire(SessionRegistry.Session session, long detach) {
+        if (session.closeIfDetached(detach)) {
+            sessionsExpired.incrementAndGet();
+            removeClient(session);
+        }
     }
 
     // Удаление клиента
-    public void removeClient(String username) {
-        if (connectedClients.remove(username) != null) {
-            messageBroker.removeClient(username);
-            broadcastSystemMessage(username + " покинул чат.");
-            Logger.info("Пользователь отключен: " + username + ", активных пользователей: " + connectedClients.size());
+    public void removeClient(SessionRegistry.Session session) {
+        if (sessions.unregister(session)) {
+            presence.left(session.getUsername());
+            Logger.info("Пользователь отключен: " + session.getUsername() + ", активных пользователей: " + sessions.size());
         }
     }
 
-    // Отправка сообщения всем клиентам
-    public void broadcastMessage(ChatMessage message) {
-        for (ClientHandler client : connectedClients.values()) {
-            client.sendMessage(message);
+    // Отправка сообщения всем клиентам (или одному адресату), возвращает число получателей
+    public int broadcastMessage(ChatMessage message) {
+        if (message.getRecipient() != null) {
+            SessionRegistry.Session recipient = sessions.get(message.getRecipient());
+            if (recipient == null) return 0;
+            recipient.deliver(message);
+            return 1;
+        }
+        int recipients = 0;
+        for (SessionRegistry.Session session : sessions.sessions()) {
+            session.deliver(message);
+            recipients++;
         }
+        return recipients;
+    }
+
+    // Рассылка части получателей: сессии, чей номер попадает в шард
+    int broadcastMessage(ChatMessage message, int shard, int shards) {
+        if (message.getRecipient() != null) {
+            SessionRegistry.Session recipient = sessions.get(message.getRecipient());
+            if (recipient == null || recipient.getId() % shards != shard) return 0;
+            recipient.deliver(message);
+            return 1;
+        }
+        int recipients = 0;
+        for (SessionRegistry.Session session : sessions.sessions()) {
+            if (session.getId() % shards == shard) {
+                session.deliver(message);
+                recipients++;
+            }
+        }
+        return recipients;
+    }
+
+    /**
+     * Клиент шарда, дольше всех висящий на записи, если она длится больше minNanos, или null
+     */
+    ClientHandler findStalledClient(int shard, int shards, long minNanos) {
+        ClientHandler stalled = null;
+        long longest = minNanos;
+        for (SessionRegistry.Session session : sessions.sessions()) {
+            ClientHandler handler = session.getHandler();
+            if (handler == null || session.getId() % shards != shard) continue;
+            long writing = handler.getStats().getStalledWriteNanos();
+            if (writing > longest) {
+                longest = writing;
+                stalled = handler;
+            }
+        }
+        return stalled;
     }
 
     // Отправка системного сообщения
@@ -83,13 +210,34 @@ public class ChatServer {
         broadcastMessage(sysMsg);
     }
 
-    // Получение списка активных пользователей
-    public String[] getActiveUsers() {
-        return connectedClients.keySet().toArray(new String[0]);
+    // Реестр сессий подключенных пользователей
+    public SessionRegistry getSessions() {
+        return sessions;
     }
     
+    // Подключенные пользователи без сессий, ждущих переподключения
     public int getActiveUserCount() {
-        return connectedClients.size();
+        return sessions.size() - sessions.countDetached();
+    }
+    
+    public long getSessionsResumed() {
+        return sessionsResumed.get();
+    }
+    
+    public long getSessionsExpired() {
+        return sessionsExpired.get();
+    }
+    
+    // Счетчики ввода-вывода подключенных клиентов
+    public List<ConnectionStats> getConnectionStats() {
+        List<ConnectionStats> stats = new ArrayList<>(sessions.size());
+        for (SessionRegistry.Session session : sessions.sessions()) {
+            ClientHandler handler = session.getHandler();
+            if (handler != null) {
+                stats.add(handler.getStats());
+            }
+        }
+        return stats;
     }
 
     // Для MessageBroker
@@ -97,6 +245,10 @@ public class ChatServer {
         return messageBroker;
     }
 
+    public PresenceCoalescer getPresence() {
+        return presence;
+    }
+
     // Graceful shutdown
     public synchronized void shutdown() {
         if (!isRunning) return;
@@ -104,9 +256,22 @@ public class ChatServer {
         
         Logger.info("Завершение работы сервера...");
         
-        // Отключаем всех клиентов
-        for (ClientHandler client : connectedClients.values()) {
-            client.disconnect();
+        // Прекращаем прием новых подключений
+        try {
+            transport.close();
+        } catch (IOException e) {
+            Logger.error("Ошибка при закрытии транспорта: " + e.getMessage(), e);
+        }
+        
+        // Отключаем всех клиентов; сессии не ждут переподключения
+        sessionExpiry.shutdownNow();
+        for (SessionRegistry.Session session : sessions.sessions()) {
+            ClientHandler handler = session.getHandler();
+            if (handler != null) {
+                handler.disconnect();
+            } else if (session.closeIfDetached(0)) {
+                removeClient(session);
+            }
         }
         
         clientThreadPool.shutdown();
@@ -119,6 +284,7 @@ public class ChatServer {
             Thread.currentThread().interrupt();
         }
         
+        presence.shutdown();
         messageBroker.shutdown(); // Останавливаем брокер
         
         Logger.info("Сервер остановлен.");
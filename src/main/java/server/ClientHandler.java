@@ -3,34 +3,45 @@ package server;
 import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStreamReader;
+import java.io.OutputStream;
 import java.io.PrintWriter;
-import java.net.Socket;
-import java.util.concurrent.ConcurrentHashMap;
 
 import common.ChatMessage;
 
 public class ClientHandler implements Runnable {
     private static final int MAX_MESSAGE_LENGTH = 1000; // Максимальная длина сообщения
-    private static final int MESSAGE_LIMIT_PER_MINUTE = 60; // Максимальное количество сообщений в минуту
-    private static final ConcurrentHashMap<String, UserRateLimiter> rateLimiters = new ConcurrentHashMap<>();
+    private static final String RESUME_COMMAND = "/resume ";
     
-    private Socket socket;
+    private Transport.Connection connection;
     private ChatServer server;
     private PrintWriter out;
     private BufferedReader in;
     private String username;
+    private SessionRegistry.Session session; // null до регистрации
     private volatile boolean isConnected;
+    private final ConnectionStats stats = new ConnectionStats();
 
-    public ClientHandler(Socket socket, ChatServer server) {
-        this.socket = socket;
+    public ClientHandler(Transport.Connection connection, ChatServer server) {
+        this.connection = connection;
         this.server = server;
         this.isConnected = true;
     }
 
+    /**
+     * Обработчик без сокета: сообщения пишутся в переданный поток (бенчмарки и тесты)
+     */
+    public ClientHandler(ChatServer server, String username, OutputStream sink) {
+        this.server = server;
+        this.username = username;
+        this.isConnected = true;
+        this.out = new PrintWriter(stats.countOutput(sink), true);
+        stats.setUser(username);
+    }
+
     @Override
     public void run() {
-        try (BufferedReader inputReader = new BufferedReader(new InputStreamReader(socket.getInputStream()));
-             PrintWriter outputWriter = new PrintWriter(socket.getOutputStream(), true)) {
+        try (BufferedReader inputReader = new BufferedReader(new InputStreamReader(stats.countInput(connection.getInputStream())));
+             PrintWriter outputWriter = new PrintWriter(stats.countOutput(connection.getOutputStream()), true)) {
             in = inputReader;
             out = outputWriter;
 
@@ -38,23 +49,48 @@ public class ClientHandler implements Runnable {
             out.println("Введите ваше имя:");
             username = in.readLine();
             
-            if (username == null || username.trim().isEmpty()) {
-                out.println("Имя не может быть пустым. Соединение закрыто.");
-                disconnect();
-                return;
+            // Регистрируем клиента на сервере; занятое имя не вытесняет существующую сессию
+            boolean resumed = false;
+            while (true) {
+                if (username == null || username.trim().isEmpty()) {
+                    out.println("Имя не может быть пустым. Соединение закрыто.");
+                    disconnect();
+                    return;
+                }
+                // Вместо имени - токен прежней сессии: переподключение без регистрации
+                if (username.startsWith(RESUME_COMMAND)) {
+                    session = server.resumeClient(username.substring(RESUME_COMMAND.length()).trim(), this);
+                    if (session != null) {
+                        username = session.getUsername();
+                        resumed = true;
+                        break;
+                    }
+                    out.println("Сессия не найдена, истекла или еще подключена. Введите ваше имя:");
+                    username = in.readLine();
+                    continue;
+                }
+                session = server.registerClient(username, this);
+                if (session != null) break;
+                out.println("Имя " + username + " уже занято. Введите другое имя:");
+                username = in.readLine();
+            }
+            stats.setUser(username);
+            ChatEvents.clientConnected(username, connection.getRemoteAddress());
+            if (!resumed) {
+                out.println("Добро пожаловать в чат, " + username + "! Для помощи введите /help");
+            }
+            // После восстановления токен новый: прежний больше не действует
+            if (ServerConfig.getInstance().getSnapshot().getSessionResumeGraceMillis() > 0) {
+                out.println("Токен сессии: " + session.getResumeToken()
+                    + " (после обрыва связи введите " + RESUME_COMMAND + "<токен> вместо имени)");
             }
-            
-            // Проверка на уникальность имени (упрощенно)
-            // В реальной системе нужна более сложная логика
-            
-            // Регистрируем клиента на сервере
-            server.registerClient(username, this);
-            out.println("Добро пожаловать в чат, " + username + "! Для помощи введите /help");
 
             // Этап 2: Основной цикл обработки сообщений
             String inputLine;
             while (isConnected && (inputLine = in.readLine()) != null) {
+                stats.messageReceived();
                 if (inputLine.trim().isEmpty()) continue;
+                session.touch();
                 
                 // Проверка длины сообщения
                 if (inputLine.length() > MAX_MESSAGE_LENGTH) {
@@ -63,11 +99,16 @@ public class ClientHandler implements Runnable {
                 }
                 
                 // Проверка рейт-лимита
-                UserRateLimiter limiter = rateLimiters.computeIfAbsent(username,
-                    k -> new UserRateLimiter(MESSAGE_LIMIT_PER_MINUTE));
+                // Лимит читается из снимка конфигурации, поэтому его изменение действует сразу
+                int limit = ServerConfig.getInstance().getRateLimitPerMinute();
+                UserRateLimiter limiter = session.getRateLimiter();
+                if (limiter.getMaxMessagesPerMinute() != limit) {
+                    limiter.setMaxMessagesPerMinute(limit);
+                }
                 
                 if (!limiter.allowRequest()) {
-                    out.println("Превышен лимит сообщений в минуту (" + MESSAGE_LIMIT_PER_MINUTE + "). Попробуйте позже.");
+                    ChatEvents.rateLimited(username, limit);
+                    out.println("Превышен лимит сообщений в минуту (" + limit + "). Попробуйте позже.");
                     continue;
                 }
                 
@@ -82,7 +123,10 @@ public class ClientHandler implements Runnable {
                 server.getMessageBroker().processIncomingMessage(message);
             }
         } catch (IOException e) {
-            Logger.error("ClientHandler", "Ошибка ввода-вывода в обработчике клиента " + username + ": " + e.getMessage(), e);
+            // После disconnect() чтение прерывается закрытием соединения - это не ошибка
+            if (isConnected) {
+                Logger.error("ClientHandler", "Ошибка ввода-вывода в обработчике клиента " + username + ": " + e.getMessage(), e);
+            }
         } catch (Exception e) {
             Logger.error("ClientHandler", "Неожиданная ошибка в обработчике клиента " + username, e);
         } finally {
@@ -101,7 +145,9 @@ public class ClientHandler implements Runnable {
             } else {
                 formattedMessage = String.format("[%s] %s", message.getUser(), message.getText());
             }
+            long writeStart = stats.beginWrite();
             out.println(formattedMessage);
+            server.getMessageBroker().getLatency().recordDuration(MessageLatency.Stage.CLIENT_WRITE, stats.endWrite(writeStart));
         }
     }
 
@@ -111,6 +157,16 @@ public class ClientHandler implements Runnable {
         
         isConnected = false;
         
+        // Сначала закрываем соединение: это прерывает readLine() в потоке обработчика,
+        // который держит блокировку BufferedReader, иначе in.close() ждал бы ее
+        try {
+            if (connection != null && !connection.isClosed()) {
+                connection.close();
+            }
+        } catch (IOException e) {
+            Logger.error("ClientHandler", "Ошибка при закрытии соединения: " + e.getMessage(), e);
+        }
+        
         // Закрываем потоки
         try {
             if (in != null) {
@@ -128,17 +184,10 @@ public class ClientHandler implements Runnable {
             Logger.error("ClientHandler", "Ошибка при закрытии выходного потока: " + e.getMessage(), e);
         }
         
-        try {
-            if (socket != null && !socket.isClosed()) {
-                socket.close();
-            }
-        } catch (IOException e) {
-            Logger.error("ClientHandler", "Ошибка при закрытии сокета: " + e.getMessage(), e);
-        }
-        
         // Удаляем клиента из сервера
-        if (username != null) {
-            server.removeClient(username);
+        if (session != null) {
+            server.detachClient(session, this);
+            ChatEvents.clientDisconnected(username, stats.getAgeMillis());
         }
         
         Logger.info("ClientHandler", "Клиент отключен: " + username);
@@ -148,6 +197,10 @@ public class ClientHandler implements Runnable {
         return username;
     }
 
+    public ConnectionStats getStats() {
+        return stats;
+    }
+
     public boolean isConnected() {
         return isConnected;
     }
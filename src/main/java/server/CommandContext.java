@@ -0,0 +1,76 @@
+package server;
+
+import java.time.Instant;
+import java.util.function.Supplier;
+
+/**
+ * Окружение, доступное командам: статистика, брокер, реестр команд и общие помощники форматирования
+ */
+public class CommandContext {
+    private final StatsCalculator statsCalculator;
+    private final MessageBroker messageBroker;
+    private final CommandRegistry registry;
+    private final ResponseCache responseCache;
+    private final Instant startTime;
+
+    public CommandContext(StatsCalculator statsCalculator, MessageBroker messageBroker, CommandRegistry registry,
+                          ResponseCache responseCache) {
+        this.statsCalculator = statsCalculator;
+        this.messageBroker = messageBroker;
+        this.registry = registry;
+        this.responseCache = responseCache;
+        this.startTime = Instant.now();
+    }
+
+    public StatsCalculator getStatsCalculator() {
+        return statsCalculator;
+    }
+
+    public MessageBroker getMessageBroker() {
+        return messageBroker;
+    }
+
+    public CommandRegistry getRegistry() {
+        return registry;
+    }
+
+    public Instant getStartTime() {
+        return startTime;
+    }
+
+    /**
+     * Часть ответа, зависящая только от статистики, из кэша ответов (см. ResponseCache).
+     * Для ответов, где есть и живые данные, вместо ChatCommand.cacheKey
+     */
+    public String cached(String key, Supplier<String> builder) {
+        return responseCache.get(key, builder);
+    }
+
+    // ================= ВСПОМОГАТЕЛЬНЫЕ МЕТОДЫ =================
+
+    public String drawProgressBar(int percentage, int length) {
+        int filledLength = (int) ((percentage / 100.0) * length);
+        if (filledLength > length) filledLength = length;
+
+        StringBuilder sb = new StringBuilder("[");
+        for (int i = 0; i < length; i++) {
+            sb.append(i < filledLength ? "█" : "░");
+        }
+        sb.append("]");
+        return sb.toString();
+    }
+
+    public String determineRank(long msgCount) {
+        if (msgCount > 500) return "Легенда";
+        if (msgCount > 200) return "Магистр";
+        if (msgCount > 100) return "Профи";
+        if (msgCount > 50)  return "Активист";
+        if (msgCount > 10)  return "Участник";
+        return "Новичок";
+    }
+
+    public String limitString(String str, int len) {
+        if (str.length() <= len) return str;
+        return str.substring(0, len - 1) + "…";
+    }
+}
@@ -0,0 +1,197 @@
+package server;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import common.ChatMessage;
+
+/**
+ * Отдельная полоса выполнения команд.
+ * Команды выполняются в ограниченном пуле потоков, поэтому медленные /top или /users
+ * не останавливают обработку аналитики. Для каждого пользователя ограничено число
+ * одновременно выполняемых команд, для каждой команды - время выполнения.
+ */
+public class CommandExecutor {
+    private final ThreadPoolExecutor executor;
+    private final ScheduledExecutorService timeoutScheduler;
+    private final ConcurrentHashMap<String, Integer> inFlightByUser = new ConcurrentHashMap<>();
+    private final ResizableBlockingQueue<Runnable> queue;
+    private volatile int maxPerUser;
+    private volatile long timeoutMillis;
+    private volatile CommandProcessor processor;
+
+    // Статистика
+    private final AtomicLong rejectedCommands = new AtomicLong(0);
+    private final AtomicLong timedOutCommands = new AtomicLong(0);
+
+    public CommandExecutor(int threads, int queueSize, int maxPerUser, long timeoutMillis) {
+        AtomicInteger threadNumber = new AtomicInteger(0);
+        this.queue = new ResizableBlockingQueue<>(queueSize);
+        this.executor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+            queue,
+            r -> new Thread(r, "CommandExecutor-" + threadNumber.getAndIncrement()),
+            new ThreadPoolExecutor.AbortPolicy());
+        this.timeoutScheduler = Executors.newSingleThreadScheduledExecutor(
+            r -> new Thread(r, "CommandExecutor-Timeouts"));
+        this.maxPerUser = maxPerUser;
+        this.timeoutMillis = timeoutMillis;
+    }
+
+    /**
+     * Размер пула, очередь, лимит на пользователя и таймаут из перезагруженной конфигурации
+     */
+    void applyConfig(ServerConfig.Snapshot config) {
+        int threads = config.getThreadPoolSize();
+        if (threads != executor.getMaximumPoolSize()) {
+            // Порядок важен: максимум не может быть меньше базового размера
+            if (threads > executor.getMaximumPoolSize()) {
+                executor.setMaximumPoolSize(threads);
+                executor.setCorePoolSize(threads);
+            } else {
+                executor.setCorePoolSize(threads);
+                executor.setMaximumPoolSize(threads);
+            }
+            Logger.info("CommandExecutor", "Потоков выполнения команд: %d", threads);
+        }
+        if (config.getCommandQueueSize() != queue.getCapacity()) {
+            queue.setCapacity(config.getCommandQueueSize());
+        }
+        maxPerUser = config.getCommandsPerUser();
+        timeoutMillis = config.getCommandTimeoutMillis();
+    }
+
+    /**
+     * Подключение обработчика команд (вызывается из AnalyticsBot)
+     */
+    public void setProcessor(CommandProcessor processor) {
+        this.processor = processor;
+    }
+
+    /**
+     * Ставит команду в очередь на выполнение. Не блокирует вызывающий поток.
+     * @return false, если команда отклонена
+     */
+    public boolean submit(ChatMessage message) {
+        CommandProcessor currentProcessor = processor;
+        if (currentProcessor == null) {
+            Logger.debug("CommandExecutor", "Обработчик команд не подключен, команда пропущена: %s", message.getText());
+            return false;
+        }
+
+        CommandProcessor.Invocation invocation = currentProcessor.parse(message);
+        if (invocation == null) {
+            return false;
+        }
+
+        // Дешевые команды выполняются сразу, без очереди и таймаута
+        String user = invocation.getUser();
+        if (invocation.isInline()) {
+            currentProcessor.reply(invocation, currentProcessor.execute(invocation));
+            return true;
+        }
+
+        if (!acquire(user)) {
+            rejectedCommands.incrementAndGet();
+            currentProcessor.sendPrivate("⏳ " + user + ", дождитесь выполнения предыдущих команд.", user);
+            return false;
+        }
+
+        CommandTask task = new CommandTask(currentProcessor, invocation);
+        try {
+            Future<?> future = executor.submit(task);
+            task.timeout = timeoutScheduler.schedule(() -> task.expire(future), timeoutMillis, TimeUnit.MILLISECONDS);
+            return true;
+        } catch (RejectedExecutionException e) {
+            release(user);
+            rejectedCommands.incrementAndGet();
+            currentProcessor.sendPrivate("⚠️ Сервер перегружен, попробуйте команду позже.", user);
+            return false;
+        }
+    }
+
+    // Счетчик выполняемых команд пользователя меняется атомарно (merge/computeIfPresent)
+    private boolean acquire(String user) {
+        int inFlight = inFlightByUser.merge(user, 1, Integer::sum);
+        if (inFlight > maxPerUser) {
+            release(user);
+            return false;
+        }
+        return true;
+    }
+
+    private void release(String user) {
+        inFlightByUser.computeIfPresent(user, (k, count) -> count > 1 ? count - 1 : null);
+    }
+
+    /**
+     * Команда в полосе выполнения: ответ отправляет либо сама команда, либо таймаут - кто первый
+     */
+    private class CommandTask implements Runnable {
+        private final CommandProcessor processor;
+        private final CommandProcessor.Invocation invocation;
+        private final AtomicBoolean finished = new AtomicBoolean(false);
+        private volatile ScheduledFuture<?> timeout;
+
+        CommandTask(CommandProcessor processor, CommandProcessor.Invocation invocation) {
+            this.processor = processor;
+            this.invocation = invocation;
+        }
+
+        @Override
+        public void run() {
+            String response = processor.execute(invocation);
+            if (finished.compareAndSet(false, true)) {
+                ScheduledFuture<?> currentTimeout = timeout;
+                if (currentTimeout != null) {
+                    currentTimeout.cancel(false);
+                }
+                release(invocation.getUser());
+                processor.reply(invocation, response);
+            }
+        }
+
+        void expire(Future<?> future) {
+            if (finished.compareAndSet(false, true)) {
+                future.cancel(true);
+                release(invocation.getUser());
+                timedOutCommands.incrementAndGet();
+                Logger.warn("CommandExecutor", "Превышено время выполнения команды: /" + invocation.getName());
+                processor.reply(invocation, "⌛ Команда выполнялась слишком долго и была прервана.");
+            }
+        }
+    }
+
+    public long getRejectedCommands() {
+        return rejectedCommands.get();
+    }
+
+    public long getTimedOutCommands() {
+        return timedOutCommands.get();
+    }
+
+    public int getQueueSize() {
+        return executor.getQueue().size();
+    }
+
+    public void shutdown() {
+        executor.shutdown();
+        timeoutScheduler.shutdownNow();
+        try {
+            if (!executor.awaitTermination(3, TimeUnit.SECONDS)) {
+                executor.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            executor.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,90 @@
+package server;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.ServiceLoader;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Реестр команд, загруженных через ServiceLoader.
+ * Таблица имен и псевдонимов строится один раз при старте; для каждой команды
+ * ведутся счетчики вызовов и гистограмма времени выполнения.
+ */
+public class CommandRegistry {
+    private final Map<String, Registration> byName = new HashMap<>();
+    private final List<Registration> registrations = new ArrayList<>();
+
+    /**
+     * Зарегистрированная команда со своей статистикой
+     */
+    public static final class Registration {
+        private final ChatCommand command;
+        private final LongAdder calls = new LongAdder();
+        private final LongAdder errors = new LongAdder();
+        private final LatencyHistogram latency = new LatencyHistogram();
+
+        private Registration(ChatCommand command) {
+            this.command = command;
+        }
+
+        void record(long elapsedNanos, boolean failed) {
+            calls.increment();
+            if (failed) {
+                errors.increment();
+            }
+            latency.record(elapsedNanos);
+        }
+
+        public ChatCommand getCommand() { return command; }
+        public long getCalls() { return calls.sum(); }
+        public long getErrors() { return errors.sum(); }
+        public LatencyHistogram getLatency() { return latency; }
+    }
+
+    public CommandRegistry() {
+        for (ChatCommand command : ServiceLoader.load(ChatCommand.class, CommandRegistry.class.getClassLoader())) {
+            register(command);
+        }
+        Logger.info("CommandRegistry", "Загружено команд: " + registrations.size() + ", имен: " + byName.size());
+    }
+
+    private void register(ChatCommand command) {
+        Registration registration = new Registration(command);
+        if (!bind(command.name(), registration)) {
+            return;
+        }
+        for (String alias : command.aliases()) {
+            bind(alias, registration);
+        }
+        registrations.add(registration);
+    }
+
+    private boolean bind(String name, Registration registration) {
+        String key = name.toLowerCase(Locale.ROOT);
+        Registration existing = byName.putIfAbsent(key, registration);
+        if (existing != null) {
+            Logger.warn("CommandRegistry", "Имя /%s уже занято командой %s и не будет привязано к %s",
+                key, existing.command.getClass().getName(), registration.command.getClass().getName());
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Поиск команды по имени или псевдониму (имя уже в нижнем регистре)
+     */
+    public Registration find(String name) {
+        return byName.get(name);
+    }
+
+    /**
+     * Все команды в порядке регистрации
+     */
+    public List<Registration> getRegistrations() {
+        return Collections.unmodifiableList(registrations);
+    }
+}
@@ -0,0 +1,180 @@
+package server;
+
+import java.io.FilterInputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.ToLongFunction;
+
+/**
+ * Счетчики ввода-вывода одного подключения: байты и сообщения в обе стороны,
+ * незавершенные записи, длительность последней и самой долгой записи, возраст.
+ * Обновляются без блокировок; байты считаются обертками над потоками сокета.
+ */
+public class ConnectionStats {
+
+    /**
+     * Критерии сортировки для /admin conns и метрик
+     */
+    public enum SortKey {
+        OUT("out", ConnectionStats::getBytesOut),
+        IN("in", ConnectionStats::getBytesIn),
+        MESSAGES("msgs", ConnectionStats::getMessagesOut),
+        BACKLOG("backlog", ConnectionStats::getPendingWrites),
+        SLOW("slow", ConnectionStats::getLastWriteNanos),
+        MAXWRITE("maxwrite", ConnectionStats::getMaxWriteNanos),
+        AGE("age", ConnectionStats::getAgeMillis);
+
+        private final String key;
+        private final ToLongFunction<ConnectionStats> value;
+
+        SortKey(String key, ToLongFunction<ConnectionStats> value) {
+            this.key = key;
+            this.value = value;
+        }
+
+        public String getKey() {
+            return key;
+        }
+
+        /**
+         * Поиск по имени, null - неизвестный критерий
+         */
+        public static SortKey parse(String key) {
+            String normalized = key.toLowerCase(Locale.ROOT);
+            for (SortKey sortKey : values()) {
+                if (sortKey.key.equals(normalized)) {
+                    return sortKey;
+                }
+            }
+            return null;
+        }
+    }
+
+    private volatile String user; // известен после регистрации
+    private final long connectedAt = System.currentTimeMillis();
+    private final LongAdder bytesIn = new LongAdder();
+    private final LongAdder bytesOut = new LongAdder();
+    private final LongAdder messagesIn = new LongAdder();
+    private final LongAdder messagesOut = new LongAdder();
+    private final AtomicInteger pendingWrites = new AtomicInteger(0);
+    private final AtomicLong maxWriteNanos = new AtomicLong(0);
+    private volatile long lastWriteNanos;
+    private volatile long writeStartedNanos; // 0 - записи сейчас нет
+
+    void setUser(String user) {
+        this.user = user;
+    }
+
+    public InputStream countInput(InputStream in) {
+        return new FilterInputStream(in) {
+            @Override
+            public int read() throws IOException {
+                int b = super.read();
+                if (b >= 0) bytesIn.increment();
+                return b;
+            }
+
+            @Override
+            public int read(byte[] buffer, int offset, int length) throws IOException {
+                int n = super.read(buffer, offset, length);
+                if (n > 0) bytesIn.add(n);
+                return n;
+            }
+        };
+    }
+
+    public OutputStream countOutput(OutputStream out) {
+        return new FilterOutputStream(out) {
+            @Override
+            public void write(int b) throws IOException {
+                out.write(b);
+                bytesOut.increment();
+            }
+
+            @Override
+            public void write(byte[] buffer, int offset, int length) throws IOException {
+                out.write(buffer, offset, length);
+                bytesOut.add(length);
+            }
+        };
+    }
+
+    public void messageReceived() {
+        messagesIn.increment();
+    }
+
+    /**
+     * Начало записи сообщения клиенту, возвращает время начала
+     */
+    public long beginWrite() {
+        pendingWrites.incrementAndGet();
+        long start = System.nanoTime();
+        writeStartedNanos = start;
+        return start;
+    }
+
+    /**
+     * Конец записи, возвращает ее длительность
+     */
+    public long endWrite(long startNanos) {
+        long elapsed = System.nanoTime() - startNanos;
+        if (pendingWrites.decrementAndGet() == 0) {
+            writeStartedNanos = 0;
+        }
+        messagesOut.increment();
+        lastWriteNanos = elapsed;
+        if (elapsed > maxWriteNanos.get()) {
+            maxWriteNanos.accumulateAndGet(elapsed, Math::max);
+        }
+        return elapsed;
+    }
+
+    public String getUser() { return user; }
+    public long getBytesIn() { return bytesIn.sum(); }
+    public long getBytesOut() { return bytesOut.sum(); }
+    public long getMessagesIn() { return messagesIn.sum(); }
+    public long getMessagesOut() { return messagesOut.sum(); }
+    public int getPendingWrites() { return pendingWrites.get(); }
+    public long getLastWriteNanos() { return lastWriteNanos; }
+    public long getMaxWriteNanos() { return maxWriteNanos.get(); }
+
+    /**
+     * Сколько длится текущая запись клиенту, нс (0 - клиент сейчас не пишется)
+     */
+    public long getStalledWriteNanos() {
+        long start = writeStartedNanos;
+        return start == 0 ? 0 : System.nanoTime() - start;
+    }
+    public long getAgeMillis() { return System.currentTimeMillis() - connectedAt; }
+
+    /**
+     * Первые limit подключений по убыванию выбранного критерия
+     */
+    public static List<ConnectionStats> top(Collection<ConnectionStats> connections, SortKey sortKey, int limit) {
+        // Счетчики меняются во время сортировки, поэтому сортируем по снятым заранее значениям
+        List<ConnectionStats> candidates = new ArrayList<>(connections);
+        long[] values = new long[candidates.size()];
+        Integer[] order = new Integer[candidates.size()];
+        for (int i = 0; i < order.length; i++) {
+            values[i] = sortKey.value.applyAsLong(candidates.get(i));
+            order[i] = i;
+        }
+        Arrays.sort(order, (a, b) -> Long.compare(values[b], values[a]));
+
+        List<ConnectionStats> result = new ArrayList<>(Math.min(limit, order.length));
+        for (int i = 0; i < order.length && i < limit; i++) {
+            result.add(candidates.get(order[i]));
+        }
+        return result;
+    }
+}
@@ -0,0 +1,276 @@
+package server;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import common.ChatMessage;
+
+/**
+ * Рассылка исходящих сообщений, разделенная на шарды по получателям.
+ * При одном шарде поток отправителя рассылает сам, как раньше. При нескольких
+ * каждый шард в своем потоке пишет только своим клиентам (по номеру сессии)
+ * в порядке очереди отправителя, поэтому порядок сообщений у каждого клиента сохраняется.
+ * Запись клиенту блокирующая, поэтому зависший клиент останавливает свой шард. Чтобы он
+ * не остановил и отправителя, ожидание места в очереди шарда ограничено server.fanout.stall.ms.
+ * Если шард за это время не освободился, действует политика server.fanout.overflow:
+ * отключить клиента, висящего на записи дольше этого срока (DISCONNECT), или пропустить
+ * сообщение для этого шарда (DROP).
+ * Число шардов меняется только между сообщениями, когда все шарды закончили работу;
+ * ожидание ограничено, и при зависшем шарде смена откладывается.
+ */
+public class FanOutSender {
+    private static final int SHARD_QUEUE_SIZE = 1024;
+    private static final long RESHARD_WAIT_MILLIS = 1000;  // ожидание завершения рассылок перед сменой шардов
+
+    /**
+     * Что делать, если очередь шарда заполнена
+     */
+    public enum OverflowPolicy {
+        DISCONNECT, DROP
+    }
+
+    private final ChatServer server;
+    private final MessageLatency latency;
+    private final AtomicInteger threadNumber = new AtomicInteger(0);
+
+    // Незавершенные рассылки; отправитель ждет нуля перед сменой числа шардов
+    private final Object idleLock = new Object();
+    private int inFlight;
+
+    private volatile int targetShards = 1;
+    private volatile Shard[] shards = new Shard[0]; // пусто - рассылка в потоке отправителя
+    private long nextReshardNanos; // только поток отправителя
+
+    // Статистика переполнений
+    private final AtomicLong droppedDeliveries = new AtomicLong(0);
+    private final AtomicLong slowDisconnects = new AtomicLong(0);
+
+    public FanOutSender(ChatServer server, MessageLatency latency) {
+        this.server = server;
+        this.latency = latency;
+        this.nextReshardNanos = System.nanoTime();
+    }
+
+    /**
+     * Разослать сообщение (вызывается только из потока отправителя)
+     */
+    public void send(ChatMessage message) throws InterruptedException {
+        int target = targetShards;
+        if (target != Math.max(1, shards.length) && System.nanoTime() - nextReshardNanos >= 0) {
+            reshard(target);
+        }
+
+        Shard[] current = shards;
+        if (current.length == 0) {
+            ChatEvents.BroadcastEvent event = new ChatEvents.BroadcastEvent();
+            event.begin();
+            long startNanos = System.nanoTime();
+            int recipients = server.broadcastMessage(message);
+            delivered(message, event, startNanos, recipients);
+            return;
+        }
+        Delivery delivery = new Delivery(message, current.length);
+        synchronized (idleLock) {
+            inFlight++;
+        }
+        for (Shard shard : current) {
+            if (!shard.queue.offer(delivery)) {
+                overflow(shard, delivery);
+            }
+        }
+    }
+
+    // Очередь шарда полна: шард отстает или какой-то его клиент не читает и запись ему висит
+    private void overflow(Shard shard, Delivery delivery) throws InterruptedException {
+        ServerConfig.Snapshot config = ServerConfig.getInstance().getSnapshot();
+        long stallMillis = config.getFanOutStallMillis();
+        // Просто медленный шард успевает освободить место - обычное обратное давление
+        if (shard.queue.offer(delivery, stallMillis, TimeUnit.MILLISECONDS)) {
+            return;
+        }
+        if (config.getFanOutOverflow() == OverflowPolicy.DISCONNECT) {
+            ClientHandler slow = server.findStalledClient(shard.index, shard.count,
+                TimeUnit.MILLISECONDS.toNanos(stallMillis));
+            if (slow != null) {
+                slowDisconnects.incrementAndGet();
+                Logger.warn("FanOutSender", "Клиент %s не читает сообщения, шард %d переполнен - отключаю",
+                    slow.getUsername(), shard.index);
+                slow.disconnect(); // закрытие соединения прерывает зависшую запись
+                if (shard.queue.offer(delivery, stallMillis, TimeUnit.MILLISECONDS)) {
+                    return;
+                }
+            }
+        }
+        // Шард пропускает это сообщение, остальные шарды рассылают его как обычно
+        droppedDeliveries.incrementAndGet();
+        finish(delivery, 0);
+    }
+
+    /**
+     * Желаемое число шардов; применяется отправителем перед следующим сообщением
+     */
+    public void setWorkers(int count) {
+        targetShards = Math.max(1, count);
+    }
+
+    public int getWorkers() {
+        return targetShards;
+    }
+
+    /**
+     * Сообщения, ожидающие рассылки в самом отстающем шарде
+     */
+    public int getBacklog() {
+        int backlog = 0;
+        for (Shard shard : shards) {
+            backlog = Math.max(backlog, shard.queue.size());
+        }
+        return backlog;
+    }
+
+    /**
+     * Возраст самого старого сообщения, ожидающего рассылки в шардах, нс
+     */
+    public long getLagNanos() {
+        long oldest = 0;
+        long now = System.nanoTime();
+        for (Shard shard : shards) {
+            Delivery head = shard.queue.peek();
+            if (head != null) {
+                oldest = Math.max(oldest, now - head.message.getCreatedNanos());
+            }
+        }
+        return oldest;
+    }
+
+    private void reshard(int count) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(RESHARD_WAIT_MILLIS);
+        synchronized (idleLock) {
+            while (inFlight > 0) {
+                long remaining = deadline - System.nanoTime();
+                if (remaining <= 0) {
+                    // Шард висит на записи: не останавливаем рассылку, попробуем позже
+                    nextReshardNanos = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(RESHARD_WAIT_MILLIS);
+                    Logger.warn("FanOutSender", "Смена числа шардов отложена: %d рассылок не завершено", inFlight);
+                    return;
+                }
+                TimeUnit.NANOSECONDS.timedWait(idleLock, remaining);
+            }
+        }
+        stopShards();
+        Shard[] next = new Shard[count > 1 ? count : 0];
+        for (int i = 0; i < next.length; i++) {
+            next[i] = new Shard(i, count);
+            next[i].thread.start();
+        }
+        shards = next;
+        Logger.info("FanOutSender", "Шардов рассылки: %d", count);
+    }
+
+    private void stopShards() {
+        for (Shard shard : shards) {
+            shard.thread.interrupt();
+        }
+        shards = new Shard[0];
+    }
+
+    public void shutdown() {
+        stopShards();
+    }
+
+    public long getDroppedDeliveries() {
+        return droppedDeliveries.get();
+    }
+
+    public long getSlowDisconnects() {
+        return slowDisconnects.get();
+    }
+
+    // Часть рассылки завершена (или пропущена); последняя часть освобождает отправителя для смены шардов
+    private void finish(Delivery delivery, int sent) {
+        if (delivery.complete(sent)) {
+            synchronized (idleLock) {
+                if (--inFlight == 0) {
+                    idleLock.notifyAll();
+                }
+            }
+        }
+    }
+
+    private void delivered(ChatMessage message, ChatEvents.BroadcastEvent event, long startNanos, int recipients) {
+        latency.recordDuration(MessageLatency.Stage.FANOUT, System.nanoTime() - startNanos);
+        event.end();
+        if (event.shouldCommit()) {
+            event.messageType = message.getType().name();
+            event.user = message.getUser();
+            event.recipients = recipients;
+            event.payloadChars = message.getText().length();
+            event.commit();
+        }
+        latency.record(MessageLatency.Stage.DELIVERED, message);
+    }
+
+    /**
+     * Рассылка одного сообщения; метрики пишет шард, закончивший последним
+     */
+    private final class Delivery {
+        private final ChatMessage message;
+        private final AtomicInteger remaining;
+        private final AtomicInteger recipients = new AtomicInteger(0);
+        private final ChatEvents.BroadcastEvent event = new ChatEvents.BroadcastEvent();
+        private final long startNanos;
+
+        Delivery(ChatMessage message, int parts) {
+            this.message = message;
+            this.remaining = new AtomicInteger(parts);
+            event.begin();
+            this.startNanos = System.nanoTime();
+        }
+
+        // true - это была последняя часть рассылки
+        boolean complete(int partRecipients) {
+            int total = recipients.addAndGet(partRecipients);
+            if (remaining.decrementAndGet() > 0) {
+                return false;
+            }
+            delivered(message, event, startNanos, total);
+            return true;
+        }
+    }
+
+    private final class Shard implements Runnable {
+        private final int index;
+        private final int count;
+        private final BlockingQueue<Delivery> queue = new ArrayBlockingQueue<>(SHARD_QUEUE_SIZE);
+        private final Thread thread;
+
+        Shard(int index, int count) {
+            this.index = index;
+            this.count = count;
+            this.thread = new Thread(this, "MessageBroker-FanOut-" + threadNumber.getAndIncrement());
+            this.thread.setDaemon(true);
+        }
+
+        @Override
+        public void run() {
+            while (true) {
+                Delivery delivery;
+                try {
+                    delivery = queue.take();
+                } catch (InterruptedException e) {
+                    break; // Шард остановлен: очередь уже пуста (см. reshard) или сервер завершается
+                }
+                int sent = 0;
+                try {
+                    sent = server.broadcastMessage(delivery.message, index, count);
+                } catch (Exception e) {
+                    Logger.error("FanOutSender", "Ошибка при рассылке сообщения: " + e.getMessage(), e);
+                }
+                finish(delivery, sent);
+            }
+        }
+    }
+}
@@ -0,0 +1,89 @@
+package server;
+
+/**
+ * Вероятностный счетчик уникальных элементов (HyperLogLog).
+ * Занимает фиксированные 2^PRECISION байт независимо от числа слов,
+ * стандартная ошибка оценки ~1.04 / sqrt(2^PRECISION) (около 1.6%).
+ */
+public class HyperLogLog {
+    private static final int PRECISION = 12;
+    static final int REGISTER_COUNT = 1 << PRECISION; // 4096 регистров = 4 КБ
+    private static final double ALPHA = 0.7213 / (1 + 1.079 / REGISTER_COUNT);
+
+    private final byte[] registers;
+
+    public HyperLogLog() {
+        this.registers = new byte[REGISTER_COUNT];
+    }
+
+    /**
+     * Восстановление из сохраненных регистров (см. StatsCheckpoint)
+     */
+    HyperLogLog(byte[] registers) {
+        if (registers.length != REGISTER_COUNT) {
+            throw new IllegalArgumentException("Ожидается " + REGISTER_COUNT + " регистров, получено " + registers.length);
+        }
+        this.registers = registers.clone();
+    }
+
+    /**
+     * Учитывает элемент в оценке
+     */
+    public void offer(String value) {
+        long hash = hash64(value);
+        int index = (int) (hash >>> (Long.SIZE - PRECISION));
+        // Ранг = позиция первой единицы в оставшихся битах (сторожевой бит ограничивает ранг)
+        long rest = (hash << PRECISION) | (1L << (PRECISION - 1));
+        byte rank = (byte) (Long.numberOfLeadingZeros(rest) + 1);
+
+        synchronized (this) {
+            if (rank > registers[index]) {
+                registers[index] = rank;
+            }
+        }
+    }
+
+    /**
+     * Оценка количества уникальных элементов
+     */
+    public synchronized long cardinality() {
+        double sum = 0;
+        int zeroRegisters = 0;
+        for (byte register : registers) {
+            sum += 1.0 / (1L << register);
+            if (register == 0) {
+                zeroRegisters++;
+            }
+        }
+
+        double estimate = ALPHA * REGISTER_COUNT * REGISTER_COUNT / sum;
+
+        // Коррекция для малых значений (linear counting)
+        if (estimate <= 2.5 * REGISTER_COUNT && zeroRegisters > 0) {
+            estimate = REGISTER_COUNT * Math.log((double) REGISTER_COUNT / zeroRegisters);
+        }
+        return Math.round(estimate);
+    }
+
+    /**
+     * Копия регистров для сохранения снимка
+     */
+    synchronized byte[] toByteArray() {
+        return registers.clone();
+    }
+
+    // 64-битный FNV-1a с финализатором MurmurHash3 для равномерного распределения битов
+    private static long hash64(String value) {
+        long h = 0xcbf29ce484222325L;
+        for (int i = 0; i < value.length(); i++) {
+            h ^= value.charAt(i);
+            h *= 0x100000001b3L;
+        }
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+}
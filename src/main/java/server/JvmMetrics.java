@@ -0,0 +1,147 @@
+package server;
+
+import java.lang.management.BufferPoolMXBean;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.lang.management.ThreadInfo;
+
+import com.sun.management.OperatingSystemMXBean;
+import com.sun.management.ThreadMXBean;
+import com.sun.management.UnixOperatingSystemMXBean;
+
+/**
+ * Метрики процесса и JVM: CPU, сборка мусора, скорость выделения памяти,
+ * CPU именованных потоков сервера, direct-буферы и файловые дескрипторы.
+ */
+public class JvmMetrics {
+    // Потоки, для которых ведется учет CPU (клиентские потоки не входят - их слишком много)
+    private static final String[] TRACKED_THREAD_PREFIXES = {
+        "ChatServer-Acceptor", "MessageBroker-", "AnalyticsBot-", "CommandExecutor-"
+    };
+
+    private final OperatingSystemMXBean os;
+    private final ThreadMXBean threads;
+    private final MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+
+    // Скорость выделения памяти считается по разнице между замерами
+    private long lastAllocatedBytes;
+    private long lastAllocationSampleNanos;
+    private volatile double allocationRate;
+
+    public JvmMetrics() {
+        this.os = (OperatingSystemMXBean) ManagementFactory.getOperatingSystemMXBean();
+        this.threads = (ThreadMXBean) ManagementFactory.getThreadMXBean();
+        if (threads.isThreadCpuTimeSupported() && !threads.isThreadCpuTimeEnabled()) {
+            threads.setThreadCpuTimeEnabled(true);
+        }
+        if (threads.isThreadAllocatedMemorySupported() && !threads.isThreadAllocatedMemoryEnabled()) {
+            threads.setThreadAllocatedMemoryEnabled(true);
+        }
+        this.lastAllocatedBytes = getAllocatedBytes();
+        this.lastAllocationSampleNanos = System.nanoTime();
+    }
+
+    @SuppressWarnings("deprecation") // getCpuLoad() появился только в Java 14
+    public void register(MetricsRegistry registry) {
+        // CPU
+        registry.gauge("process_cpu_usage", "Загрузка CPU процессом (0..1)", os::getProcessCpuLoad);
+        registry.gauge("system_cpu_usage", "Загрузка CPU системы (0..1)", os::getSystemCpuLoad);
+        registry.counter("process_cpu_seconds_total", "Процессорное время процесса, с",
+            () -> os.getProcessCpuTime() / 1e9);
+
+        // Память
+        registry.gauge("jvm_memory_used_bytes", MetricsRegistry.label("area", "heap"), "Занятая память JVM",
+            () -> memory.getHeapMemoryUsage().getUsed());
+        registry.gauge("jvm_memory_used_bytes", MetricsRegistry.label("area", "nonheap"), "Занятая память JVM",
+            () -> memory.getNonHeapMemoryUsage().getUsed());
+        registry.gauge("jvm_memory_max_bytes", MetricsRegistry.label("area", "heap"), "Максимальный размер кучи",
+            () -> memory.getHeapMemoryUsage().getMax());
+        registry.gauge("jvm_allocation_rate_bytes_per_second", "Скорость выделения памяти в куче",
+            () -> allocationRate);
+
+        // Сборка мусора
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            String labels = MetricsRegistry.label("gc", gc.getName());
+            registry.counter("jvm_gc_collections_total", labels, "Число сборок мусора", gc::getCollectionCount);
+            registry.counter("jvm_gc_collection_seconds_total", labels, "Суммарное время сборок мусора, с",
+                () -> gc.getCollectionTime() / 1000.0);
+        }
+
+        // Потоки
+        registry.gauge("jvm_threads_current", "Число живых потоков", threads::getThreadCount);
+        registry.gauge("jvm_threads_daemon", "Число потоков-демонов", threads::getDaemonThreadCount);
+        registry.gauge("jvm_threads_peak", "Максимальное число потоков", threads::getPeakThreadCount);
+        if (threads.isThreadCpuTimeSupported()) {
+            registry.register("jvm_thread_cpu_seconds_total", "Процессорное время потоков сервера, с",
+                MetricsRegistry.Type.COUNTER, this::collectThreadCpu);
+        }
+
+        // Буферы вне кучи
+        for (BufferPoolMXBean pool : ManagementFactory.getPlatformMXBeans(BufferPoolMXBean.class)) {
+            String labels = MetricsRegistry.label("pool", pool.getName());
+            registry.gauge("jvm_buffer_pool_used_bytes", labels, "Занято буферами", pool::getMemoryUsed);
+            registry.gauge("jvm_buffer_pool_capacity_bytes", labels, "Емкость буферов", pool::getTotalCapacity);
+            registry.gauge("jvm_buffer_pool_count", labels, "Число буферов", pool::getCount);
+        }
+
+        // Файловые дескрипторы (только Unix)
+        if (os instanceof UnixOperatingSystemMXBean) {
+            UnixOperatingSystemMXBean unix = (UnixOperatingSystemMXBean) os;
+            registry.gauge("process_open_fds", "Открытые файловые дескрипторы", unix::getOpenFileDescriptorCount);
+            registry.gauge("process_max_fds", "Лимит файловых дескрипторов", unix::getMaxFileDescriptorCount);
+        }
+    }
+
+    private void collectThreadCpu(String name, MetricsRegistry.SampleSink sink) {
+        long[] ids = threads.getAllThreadIds();
+        ThreadInfo[] infos = threads.getThreadInfo(ids);
+        for (int i = 0; i < ids.length; i++) {
+            ThreadInfo info = infos[i];
+            if (info == null || !isTracked(info.getThreadName())) {
+                continue;
+            }
+            long cpuNanos = threads.getThreadCpuTime(ids[i]);
+            if (cpuNanos >= 0) {
+                sink.sample(name, MetricsRegistry.label("thread", info.getThreadName()), cpuNanos / 1e9);
+            }
+        }
+    }
+
+    private static boolean isTracked(String threadName) {
+        for (String prefix : TRACKED_THREAD_PREFIXES) {
+            if (threadName.startsWith(prefix)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Обновляет скорость выделения памяти (вызывается периодически из PerformanceMonitor).
+     * Выделения завершившихся потоков пропадают из суммы, поэтому отрицательная разница считается нулем.
+     */
+    public synchronized void sampleAllocationRate() {
+        long now = System.nanoTime();
+        long allocated = getAllocatedBytes();
+        long elapsed = now - lastAllocationSampleNanos;
+        if (elapsed > 0) {
+            allocationRate = Math.max(0, allocated - lastAllocatedBytes) * 1e9 / elapsed;
+        }
+        lastAllocatedBytes = allocated;
+        lastAllocationSampleNanos = now;
+    }
+
+    private long getAllocatedBytes() {
+        if (!threads.isThreadAllocatedMemorySupported()) {
+            return 0;
+        }
+        long total = 0;
+        for (long value : threads.getThreadAllocatedBytes(threads.getAllThreadIds())) {
+            if (value > 0) {
+                total += value;
+            }
+        }
+        return total;
+    }
+}
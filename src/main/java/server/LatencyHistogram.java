@@ -0,0 +1,122 @@
+package server;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Гистограмма задержек с большим динамическим диапазоном (в стиле HdrHistogram).
+ * Каждая степень двойки делится на 32 поддиапазона, поэтому относительная ошибка
+ * перцентилей не превышает ~3% на всем диапазоне от наносекунд до часов.
+ * Запись - одна атомарная операция без блокировок и выделения памяти.
+ */
+public class LatencyHistogram {
+    private static final int SUB_BUCKET_BITS = 5;
+    private static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+    private static final int BUCKET_COUNT = (Long.SIZE - SUB_BUCKET_BITS) * SUB_BUCKET_COUNT;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKET_COUNT);
+    private final LongAdder totalCount = new LongAdder();
+    private final LongAdder totalValue = new LongAdder();
+    private final AtomicLong maxValue = new AtomicLong(0);
+
+    /**
+     * Записывает значение (обычно в наносекундах). Отрицательные значения считаются нулем.
+     */
+    public void record(long value) {
+        if (value < 0) value = 0;
+        counts.incrementAndGet(bucketIndex(value));
+        totalCount.increment();
+        totalValue.add(value);
+        if (value > maxValue.get()) {
+            maxValue.accumulateAndGet(value, Math::max);
+        }
+    }
+
+    public long getCount() {
+        return totalCount.sum();
+    }
+
+    public long getMax() {
+        return maxValue.get();
+    }
+
+    public long getSum() {
+        return totalValue.sum();
+    }
+
+    public double getMean() {
+        long count = totalCount.sum();
+        return count > 0 ? (double) totalValue.sum() / count : 0;
+    }
+
+    /**
+     * Значение перцентиля (верхняя граница соответствующего поддиапазона)
+     * @param percentile от 0 до 100, например 99.9
+     */
+    public long getValueAtPercentile(double percentile) {
+        long[] snapshot = new long[BUCKET_COUNT];
+        long total = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            snapshot[i] = counts.get(i);
+            total += snapshot[i];
+        }
+        if (total == 0) return 0;
+
+        long target = Math.max(1, (long) Math.ceil(percentile / 100.0 * total));
+        long cumulative = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            cumulative += snapshot[i];
+            if (cumulative >= target) {
+                return Math.min(bucketUpperBound(i), maxValue.get());
+            }
+        }
+        return maxValue.get();
+    }
+
+    /**
+     * Несколько перцентилей за один проход без копирования счетчиков (для частого экспорта)
+     * @param percentiles перцентили по возрастанию, от 0 до 100
+     * @param values массив для результатов той же длины
+     */
+    public void getValuesAtPercentiles(double[] percentiles, long[] values) {
+        long total = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            total += counts.get(i);
+        }
+        long max = maxValue.get();
+        int next = 0;
+        if (total > 0) {
+            long cumulative = 0;
+            for (int i = 0; i < BUCKET_COUNT && next < percentiles.length; i++) {
+                cumulative += counts.get(i);
+                while (next < percentiles.length
+                        && cumulative >= Math.max(1, (long) Math.ceil(percentiles[next] / 100.0 * total))) {
+                    values[next++] = Math.min(bucketUpperBound(i), max);
+                }
+            }
+        }
+        // Пустая гистограмма или записи, появившиеся между проходами
+        while (next < percentiles.length) {
+            values[next++] = total > 0 ? max : 0;
+        }
+    }
+
+    private static int bucketIndex(long value) {
+        if (value < SUB_BUCKET_COUNT) {
+            return (int) value;
+        }
+        int shift = (Long.SIZE - 1 - Long.numberOfLeadingZeros(value)) - SUB_BUCKET_BITS;
+        int subBucket = (int) (value >>> shift) & (SUB_BUCKET_COUNT - 1);
+        return (shift + 1) * SUB_BUCKET_COUNT + subBucket;
+    }
+
+    private static long bucketUpperBound(int index) {
+        if (index < SUB_BUCKET_COUNT) {
+            return index;
+        }
+        int shift = index / SUB_BUCKET_COUNT - 1;
+        long subBucket = index % SUB_BUCKET_COUNT;
+        return ((SUB_BUCKET_COUNT + subBucket + 1) << shift) - 1;
+    }
+}
@@ -0,0 +1,115 @@
+package server;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+
+/**
+ * Счетчики по ключам с постоянно поддерживаемым рейтингом.
+ * Рейтинг хранится в skip-list, упорядоченном по убыванию счетчика, поэтому
+ * обновление стоит O(log n), а чтение топ-K - O(K) без копирования и сортировки всей карты.
+ */
+public class Leaderboard {
+    private static final Comparator<Entry> BY_COUNT_DESC = Comparator
+        .comparingLong(Entry::getCount).reversed()
+        .thenComparing(Entry::getKey);
+
+    private final ConcurrentHashMap<String, Entry> entries = new ConcurrentHashMap<>();
+    private final ConcurrentSkipListSet<Entry> ranking = new ConcurrentSkipListSet<>(BY_COUNT_DESC);
+
+    /**
+     * Неизменяемая позиция рейтинга
+     */
+    public static final class Entry {
+        private final String key;
+        private final long count;
+
+        private Entry(String key, long count) {
+            this.key = key;
+            this.count = count;
+        }
+
+        public String getKey() { return key; }
+        public long getCount() { return count; }
+    }
+
+    /**
+     * Увеличивает счетчик ключа и переставляет его в рейтинге
+     * @return новое значение счетчика
+     */
+    public long increment(String key, long delta) {
+        // compute атомарен для ключа, поэтому рейтинг и карта всегда согласованы по этому ключу
+        Entry updated = entries.compute(key, (k, old) -> {
+            Entry entry = new Entry(k, old != null ? old.count + delta : delta);
+            if (old != null) {
+                ranking.remove(old);
+            }
+            ranking.add(entry);
+            return entry;
+        });
+        return updated.count;
+    }
+
+    /**
+     * Массовая загрузка (восстановление из снимка). Записи сортируются заранее,
+     * так как вставка в skip-list по порядку в несколько раз быстрее случайной.
+     */
+    public void load(String[] keys, long[] counts) {
+        Entry[] loaded = new Entry[keys.length];
+        for (int i = 0; i < keys.length; i++) {
+            loaded[i] = new Entry(keys[i], counts[i]);
+        }
+        Arrays.parallelSort(loaded, BY_COUNT_DESC);
+
+        for (Entry entry : loaded) {
+            Entry previous = entries.put(entry.key, entry);
+            if (previous != null) {
+                ranking.remove(previous);
+            }
+            ranking.add(entry);
+        }
+    }
+
+    public void remove(String key) {
+        entries.computeIfPresent(key, (k, old) -> {
+            ranking.remove(old);
+            return null;
+        });
+    }
+
+    public long get(String key) {
+        Entry entry = entries.get(key);
+        return entry != null ? entry.count : 0;
+    }
+
+    public boolean contains(String key) {
+        return entries.containsKey(key);
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    /**
+     * Первые limit позиций рейтинга
+     */
+    public List<Entry> top(int limit) {
+        List<Entry> result = new ArrayList<>(Math.min(limit, 16));
+        Iterator<Entry> iterator = ranking.iterator();
+        while (result.size() < limit && iterator.hasNext()) {
+            result.add(iterator.next());
+        }
+        return result;
+    }
+
+    /**
+     * Копия всех позиций в произвольном порядке (без сортировки)
+     */
+    public List<Entry> entries() {
+        return new ArrayList<>(entries.values());
+    }
+}
@@ -1,30 +1,137 @@
 package server;
 
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.nio.file.Paths;
+import java.time.Instant;
 import java.time.LocalDateTime;
+import java.time.ZoneId;
 import java.time.format.DateTimeFormatter;
+import java.util.IllegalFormatException;
 
+/**
+ * Логгер сервера.
+ * Проверка уровня - чтение одного volatile-поля; сообщение с аргументами
+ * (Logger.debug(context, "формат %d", value)) форматируется только если уровень включен.
+ * После startAsync() записи форматирует и выводит фоновый поток AsyncLogWriter,
+ * поэтому аргументы не должны меняться после вызова. До startAsync() лог пишется синхронно.
+ */
 public class Logger {
     private static final DateTimeFormatter formatter = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+    private static final Object[] NO_ARGS = new Object[0];
     
     public enum LogLevel {
         DEBUG, INFO, WARN, ERROR
     }
     
-    private static LogLevel currentLogLevel = LogLevel.INFO;
+    private static volatile LogLevel currentLogLevel = LogLevel.INFO;
+    private static volatile boolean enabled = true;
+    private static volatile int threshold = LogLevel.INFO.ordinal();
+    private static volatile AsyncLogWriter asyncWriter;
     
-    public static void setLogLevel(LogLevel level) {
+    public static synchronized void setLogLevel(LogLevel level) {
         currentLogLevel = level;
+        threshold = enabled ? level.ordinal() : Integer.MAX_VALUE;
+    }
+    
+    /**
+     * Полностью включает или выключает логирование (server.logging.enabled)
+     */
+    public static synchronized void setEnabled(boolean value) {
+        enabled = value;
+        threshold = value ? currentLogLevel.ordinal() : Integer.MAX_VALUE;
     }
     
     public static LogLevel getLogLevel() {
         return currentLogLevel;
     }
     
+    public static boolean isEnabled(LogLevel level) {
+        return level.ordinal() >= threshold;
+    }
+    
+    public static boolean isDebugEnabled() {
+        return LogLevel.DEBUG.ordinal() >= threshold;
+    }
+    
+    /**
+     * Переключает логгер на асинхронную запись (вызывается из Main после загрузки конфигурации)
+     * @param logFile файл лога, пустая строка - только консоль
+     */
+    public static synchronized void startAsync(int bufferSize, AsyncLogWriter.OverflowPolicy policy,
+                                               String logFile, long maxFileBytes, int maxFiles) {
+        if (asyncWriter != null) return;
+        RollingFileAppender fileAppender = null;
+        if (!logFile.isEmpty()) {
+            try {
+                fileAppender = new RollingFileAppender(Paths.get(logFile), maxFileBytes, maxFiles);
+            } catch (IOException e) {
+                error("Logger", "Не удалось открыть файл лога " + logFile + ", запись только в консоль", e);
+            }
+        }
+        asyncWriter = new AsyncLogWriter(bufferSize, policy, System.out, fileAppender);
+    }
+    
+    /**
+     * Дописывает буфер и возвращает логгер в синхронный режим
+     */
+    public static synchronized void shutdown() {
+        AsyncLogWriter writer = asyncWriter;
+        if (writer != null) {
+            asyncWriter = null;
+            writer.shutdown();
+        }
+    }
+    
+    public static long getDroppedRecords() {
+        AsyncLogWriter writer = asyncWriter;
+        return writer == null ? 0 : writer.getDropped();
+    }
+    
     public static void log(LogLevel level, String message) {
-        if (level.compareTo(currentLogLevel) >= 0) {
-            String timestamp = LocalDateTime.now().format(formatter);
-            String threadName = Thread.currentThread().getName();
-            System.out.printf("[%s] [%s] %s: %s%n", timestamp, threadName, level, message);
+        if (isEnabled(level)) {
+            dispatch(level, null, message, NO_ARGS, null);
+        }
+    }
+    
+    private static void dispatch(LogLevel level, String context, String message, Object[] args, Throwable throwable) {
+        AsyncLogWriter writer = asyncWriter;
+        if (writer != null) {
+            writer.publish(level, context, message, args, throwable);
+            return;
+        }
+        StringBuilder line = new StringBuilder(128);
+        formatLine(line, level, System.currentTimeMillis(), Thread.currentThread().getName(), context, message, args, throwable);
+        System.out.print(line);
+    }
+    
+    /**
+     * Формирует строку лога: [время] [поток] УРОВЕНЬ: [контекст] сообщение
+     */
+    static void formatLine(StringBuilder sb, LogLevel level, long timestamp, String thread,
+                           String context, String message, Object[] args, Throwable throwable) {
+        sb.append('[').append(formatter.format(LocalDateTime.ofInstant(Instant.ofEpochMilli(timestamp), ZoneId.systemDefault())))
+          .append("] [").append(thread).append("] ").append(level).append(": ");
+        if (context != null) {
+            sb.append('[').append(context).append("] ");
+        }
+        if (args.length == 0) {
+            sb.append(message);
+        } else {
+            try {
+                sb.append(String.format(message, args));
+            } catch (IllegalFormatException e) {
+                sb.append(message).append(" (ошибка форматирования: ").append(e.getMessage()).append(')');
+            }
+        }
+        if (throwable != null) {
+            sb.append(" - ").append(throwable.getMessage()).append(System.lineSeparator());
+            StringWriter trace = new StringWriter();
+            throwable.printStackTrace(new PrintWriter(trace));
+            sb.append(trace);
+        } else {
+            sb.append(System.lineSeparator());
         }
     }
     
@@ -33,7 +140,11 @@ public class Logger {
     }
     
     public static void debug(String context, String message) {
-        log(LogLevel.DEBUG, String.format("[%s] %s", context, message));
+        if (isEnabled(LogLevel.DEBUG)) dispatch(LogLevel.DEBUG, context, message, NO_ARGS, null);
+    }
+    
+    public static void debug(String context, String format, Object... args) {
+        if (isEnabled(LogLevel.DEBUG)) dispatch(LogLevel.DEBUG, context, format, args, null);
     }
     
     public static void info(String message) {
@@ -41,7 +152,11 @@ public class Logger {
     }
     
     public static void info(String context, String message) {
-        log(LogLevel.INFO, String.format("[%s] %s", context, message));
+        if (isEnabled(LogLevel.INFO)) dispatch(LogLevel.INFO, context, message, NO_ARGS, null);
+    }
+    
+    public static void info(String context, String format, Object... args) {
+        if (isEnabled(LogLevel.INFO)) dispatch(LogLevel.INFO, context, format, args, null);
     }
     
     public static void warn(String message) {
@@ -49,14 +164,15 @@ public class Logger {
     }
     
     public static void warn(String context, String message) {
-        log(LogLevel.WARN, String.format("[%s] %s", context, message));
+        if (isEnabled(LogLevel.WARN)) dispatch(LogLevel.WARN, context, message, NO_ARGS, null);
+    }
+    
+    public static void warn(String context, String format, Object... args) {
+        if (isEnabled(LogLevel.WARN)) dispatch(LogLevel.WARN, context, format, args, null);
     }
     
     public static void warn(String message, Throwable throwable) {
-        log(LogLevel.WARN, message + " - " + throwable.getMessage());
-        if (throwable != null) {
-            throwable.printStackTrace();
-        }
+        if (isEnabled(LogLevel.WARN)) dispatch(LogLevel.WARN, null, message, NO_ARGS, throwable);
     }
     
     public static void error(String message) {
@@ -64,18 +180,18 @@ public class Logger {
     }
     
     public static void error(String message, Throwable throwable) {
-        log(LogLevel.ERROR, message + " - " + throwable.getMessage());
-        throwable.printStackTrace();
+        if (isEnabled(LogLevel.ERROR)) dispatch(LogLevel.ERROR, null, message, NO_ARGS, throwable);
     }
     
     public static void error(String context, String message) {
-        log(LogLevel.ERROR, String.format("[%s] %s", context, message));
+        if (isEnabled(LogLevel.ERROR)) dispatch(LogLevel.ERROR, context, message, NO_ARGS, null);
     }
     
     public static void error(String context, String message, Throwable throwable) {
-        log(LogLevel.ERROR, String.format("[%s] %s - %s", context, message, throwable.getMessage()));
-        if (throwable != null) {
-            throwable.printStackTrace();
-        }
+        if (isEnabled(LogLevel.ERROR)) dispatch(LogLevel.ERROR, context, message, NO_ARGS, throwable);
+    }
+    
+    public static void error(String context, String format, Object... args) {
+        if (isEnabled(LogLevel.ERROR)) dispatch(LogLevel.ERROR, context, format, args, null);
     }
-}
\ No newline at end of file
+}
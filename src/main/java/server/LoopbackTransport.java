@@ -0,0 +1,249 @@
+package server;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * Транспорт в памяти: connect() возвращает клиентскую сторону соединения, серверная
+ * попадает в ChatServer как обычное подключение. Регистрация, рейт-лимит, брокер и рассылка
+ * работают как с сокетами, но без ядра и сетевого стека.
+ * Буферы каналов ограничены, поэтому медленный читатель тормозит запись, как и в TCP.
+ */
+public class LoopbackTransport implements Transport {
+    public static final int DEFAULT_BUFFER_SIZE = 64 * 1024;
+
+    private static final Connection POISON = new Endpoint("закрыто", null, null);
+
+    private final BlockingQueue<Connection> pending = new LinkedBlockingQueue<>();
+    private final AtomicInteger connectionCounter = new AtomicInteger(0);
+    private final int bufferSize;
+    private volatile boolean closed;
+
+    public LoopbackTransport() {
+        this(DEFAULT_BUFFER_SIZE);
+    }
+
+    public LoopbackTransport(int bufferSize) {
+        this.bufferSize = bufferSize;
+    }
+
+    /**
+     * Новое подключение к серверу
+     * @return клиентская сторона соединения
+     */
+    public Connection connect() throws IOException {
+        if (closed) {
+            throw new IOException("Транспорт закрыт");
+        }
+        Pipe toServer = new Pipe(bufferSize);
+        Pipe toClient = new Pipe(bufferSize);
+        String address = "loopback-" + connectionCounter.incrementAndGet();
+        pending.add(new Endpoint(address, toServer, toClient));
+        return new Endpoint(address, toClient, toServer);
+    }
+
+    @Override
+    public void serve(Consumer<Connection> acceptor) throws IOException {
+        try {
+            while (!closed) {
+                Connection connection = pending.take();
+                if (connection == POISON) break;
+                acceptor.accept(connection);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Прием подключений прерван");
+        }
+    }
+
+    @Override
+    public String describe() {
+        return "loopback в памяти";
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        pending.add(POISON);
+    }
+
+    /**
+     * Одна сторона соединения: читает из одного канала, пишет в другой
+     */
+    private static final class Endpoint implements Connection {
+        private final String address;
+        private final Pipe in;
+        private final Pipe out;
+        private final InputStream inputStream;
+        private final OutputStream outputStream;
+        private volatile boolean closed;
+
+        Endpoint(String address, Pipe in, Pipe out) {
+            this.address = address;
+            this.in = in;
+            this.out = out;
+            this.inputStream = in == null ? null : new PipeInputStream(in);
+            this.outputStream = out == null ? null : new PipeOutputStream(out);
+        }
+
+        @Override
+        public InputStream getInputStream() {
+            return inputStream;
+        }
+
+        @Override
+        public OutputStream getOutputStream() {
+            return outputStream;
+        }
+
+        @Override
+        public String getRemoteAddress() {
+            return address;
+        }
+
+        @Override
+        public boolean isClosed() {
+            return closed;
+        }
+
+        @Override
+        public void close() {
+            closed = true;
+            in.closeRead();
+            out.closeWrite();
+        }
+    }
+
+    /**
+     * Ограниченный кольцевой буфер байтов между двумя потоками
+     */
+    private static final class Pipe {
+        private final byte[] buffer;
+        private int readPosition;
+        private int size;
+        private boolean writeClosed;
+        private boolean readClosed;
+
+        Pipe(int capacity) {
+            this.buffer = new byte[capacity];
+        }
+
+        synchronized void write(byte[] data, int offset, int length) throws IOException {
+            while (length > 0) {
+                while (size == buffer.length && !readClosed && !writeClosed) {
+                    await();
+                }
+                if (readClosed || writeClosed) {
+                    throw new IOException("Соединение закрыто");
+                }
+                int writePosition = (readPosition + size) % buffer.length;
+                int chunk = Math.min(length, Math.min(buffer.length - size, buffer.length - writePosition));
+                System.arraycopy(data, offset, buffer, writePosition, chunk);
+                size += chunk;
+                offset += chunk;
+                length -= chunk;
+                notifyAll();
+            }
+        }
+
+        synchronized int read(byte[] data, int offset, int length) throws IOException {
+            if (length == 0) return 0;
+            while (size == 0 && !writeClosed && !readClosed) {
+                await();
+            }
+            if (readClosed) {
+                throw new IOException("Соединение закрыто");
+            }
+            if (size == 0) {
+                return -1;
+            }
+            int chunk = Math.min(length, Math.min(size, buffer.length - readPosition));
+            System.arraycopy(buffer, readPosition, data, offset, chunk);
+            readPosition = (readPosition + chunk) % buffer.length;
+            size -= chunk;
+            notifyAll();
+            return chunk;
+        }
+
+        synchronized int available() {
+            return size;
+        }
+
+        synchronized void closeRead() {
+            readClosed = true;
+            notifyAll();
+        }
+
+        synchronized void closeWrite() {
+            writeClosed = true;
+            notifyAll();
+        }
+
+        private void await() throws InterruptedIOException {
+            try {
+                wait();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Ожидание канала прервано");
+            }
+        }
+    }
+
+    private static final class PipeInputStream extends InputStream {
+        private final Pipe pipe;
+        private final byte[] single = new byte[1];
+
+        PipeInputStream(Pipe pipe) {
+            this.pipe = pipe;
+        }
+
+        @Override
+        public int read() throws IOException {
+            return pipe.read(single, 0, 1) < 0 ? -1 : single[0] & 0xFF;
+        }
+
+        @Override
+        public int read(byte[] data, int offset, int length) throws IOException {
+            return pipe.read(data, offset, length);
+        }
+
+        @Override
+        public int available() {
+            return pipe.available();
+        }
+
+        @Override
+        public void close() {
+            pipe.closeRead();
+        }
+    }
+
+    private static final class PipeOutputStream extends OutputStream {
+        private final Pipe pipe;
+
+        PipeOutputStream(Pipe pipe) {
+            this.pipe = pipe;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            pipe.write(new byte[] {(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] data, int offset, int length) throws IOException {
+            pipe.write(data, offset, length);
+        }
+
+        @Override
+        public void close() {
+            pipe.closeWrite();
+        }
+    }
+}
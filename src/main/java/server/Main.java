@@ -1,26 +1,50 @@
 package server;
 
+import java.io.IOException;
+
 public class Main {
     private static ChatServer server;
     private static AnalyticsBot analyticsBot;
+    private static MetricsHttpServer metricsServer;
+    private static AdaptiveScaler scaler;
     
     public static void main(String[] args) {
+        boolean train = args.length > 0 && args[0].equals("--train");
         try {
             ServerConfig config = ServerConfig.getInstance();
             
             // Установка уровня логирования из конфигурации
             Logger.setLogLevel(Logger.LogLevel.valueOf(config.getLogLevel()));
+            Logger.setEnabled(config.isLoggingEnabled());
+            Logger.startAsync(config.getLogBufferSize(),
+                AsyncLogWriter.OverflowPolicy.valueOf(config.getLogOverflowPolicy()),
+                config.getLogFile(), config.getLogFileMaxBytes(), config.getLogFileMaxFiles());
             
             Logger.info("=".repeat(50));
             Logger.info("Запуск " + config.getServerName());
             Logger.info("Порт: " + config.getPort() + ", Максимум клиентов: " + config.getMaxClients());
             Logger.info("=".repeat(50));
             
+            // Тренировочный прогон: нагрузка и выход, архив классов пишет JVM
+            // (java -XX:ArchiveClassesAtExit=netchat.jsa ... server.Main --train)
+            if (train) {
+                int messages = config.getWarmupMessages() > 0 ? config.getWarmupMessages() : Warmup.DEFAULT_MESSAGES;
+                Logger.info("Тренировочный прогон: " + messages + " сообщений");
+                Warmup.run(messages);
+                return;
+            }
+            
+            // Прогрев рабочего пути до того, как слушатель начнет принимать подключения
+            if (config.getWarmupMessages() > 0) {
+                Warmup.run(config.getWarmupMessages());
+            }
+            
             // Создаем сервер с использованием конфигурации
             server = new ChatServer(config.getPort(), config.getMaxClients());
             
             // Получаем MessageBroker из сервера
             MessageBroker messageBroker = server.getMessageBroker();
+            messageBroker.getLatency().trackStartup();
             
             // Создаем и запускаем AnalyticsBot (если включен)
             if (config.isAnalyticsEnabled()) {
@@ -36,11 +60,35 @@ public class Main {
             monitor.start();
             Logger.info("PerformanceMonitor запущен");
             
+            // Размер пулов отправителя и аналитики подстраивается под нагрузку
+            scaler = new AdaptiveScaler();
+            scaler.addSender(messageBroker);
+            if (analyticsBot != null) {
+                scaler.addAnalytics(analyticsBot, messageBroker);
+            }
+            scaler.start();
+            
+            // HTTP-эндпоинт метрик (если включен); без него сервер продолжает работу
+            if (config.isMetricsEnabled()) {
+                try {
+                    metricsServer = new MetricsHttpServer(config.getMetricsHost(), config.getMetricsPort(), monitor.getMetrics());
+                    metricsServer.start();
+                } catch (IOException e) {
+                    Logger.error("Не удалось запустить эндпоинт метрик на " + config.getMetricsHost() + ":" + config.getMetricsPort(), e);
+                }
+            }
+            
+            // Изменения внешнего файла конфигурации применяются без перезапуска
+            config.addListener((previous, current) -> {
+                Logger.setLogLevel(current.getLogLevel());
+                Logger.setEnabled(current.isLoggingEnabled());
+            });
+            config.startWatching();
+            
             // Запускаем сервер в отдельном потоке
-            Thread serverThread = new Thread(() -> server.start(), "ChatServer-MainThread");
+            Thread serverThread = new Thread(() -> server.start(), "ChatServer-Acceptor");
             serverThread.setDaemon(false); // Поток не является демоном, чтобы приложение не завершилось
-            serverThread.start();
-            Logger.info("Сервер запущен и слушает порт " + config.getPort());
+            serverThread.start(); // время готовности пишет ChatServer после привязки порта
             
             // Ожидаем завершения
             serverThread.join();
@@ -53,12 +101,20 @@ public class Main {
     
     public static void shutdown() {
         System.out.println("\nИнициировано завершение работы...");
+        ServerConfig.getInstance().stopWatching();
+        if (metricsServer != null) {
+            metricsServer.shutdown();
+        }
+        if (scaler != null) {
+            scaler.shutdown();
+        }
         if (analyticsBot != null) {
             analyticsBot.shutdown();
         }
         if (server != null) {
             server.shutdown();
         }
+        Logger.shutdown();
     }
     
     static {
@@ -3,49 +3,70 @@ package server;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
-import java.util.concurrent.LinkedBlockingQueue;
-import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
 
 import common.ChatMessage;
 
 public class MessageBroker implements Runnable {
+    /**
+     * Что делать, если очередь аналитики заполнена
+     */
+    public enum AnalyticsOverflow {
+        BLOCK, DROP
+    }
+    
     // Ссылка на сервер (для broadcast)
     private final ChatServer server;
     
     // ОЧЕРЕДИ (паттерн Producer-Consumer):
-    private final BlockingQueue<ChatMessage> incomingQueue;  // Входящие сообщения от клиентов
-    private final BlockingQueue<ChatMessage> outgoingQueue;  // Исходящие сообщения клиентам
-    private final BlockingQueue<ChatMessage> analyticsQueue; // Сообщения для анализа ботом
+    // Емкость очередей меняется на ходу при перезагрузке конфигурации
+    private final ResizableBlockingQueue<ChatMessage> incomingQueue;  // Входящие сообщения от клиентов
+    private final ResizableBlockingQueue<ChatMessage> outgoingQueue;  // Исходящие сообщения клиентам
+    private final ResizableBlockingQueue<ChatMessage> analyticsQueue; // Сообщения для анализа ботом
+    
+    // Отдельная полоса выполнения команд
+    private final CommandExecutor commandExecutor;
     
-    // Менеджер клиентов
-    private final ClientManager clientManager;
+    // Рассылка исходящих сообщений, число шардов меняет AdaptiveScaler
+    private final FanOutSender fanOut;
     
     // Пул потоков для обработки очередей
     private final ExecutorService executor;
     
-    // Планировщик для периодических задач
-    private final ScheduledExecutorService scheduler;
-    
     // Флаг работы
     private volatile boolean isRunning;
     
     // Статистика
     private final AtomicLong messagesProcessed = new AtomicLong(0);
+    private final AtomicLong analyticsShed = new AtomicLong(0);
+    private final AtomicLong analyticsBlockedPuts = new AtomicLong(0);
+    private final AtomicLong analyticsBlockedNanos = new AtomicLong(0);
+    private final MessageLatency latency = new MessageLatency();
+    private final ServerConfig.Listener configListener = this::applyConfig;
     
     public MessageBroker(ChatServer server) {
         this.server = server;
         
+        ServerConfig config = ServerConfig.getInstance();
+        
         // Создаем очереди с разной емкостью
-        this.incomingQueue = new LinkedBlockingQueue<>(1000);  // Ограничиваем, чтобы не переполнить память
-        this.outgoingQueue = new LinkedBlockingQueue<>(1000);
-        this.analyticsQueue = new LinkedBlockingQueue<>(500);
+        this.incomingQueue = new ResizableBlockingQueue<>(config.getMessageQueueSize());  // Ограничиваем, чтобы не переполнить память
+        this.outgoingQueue = new ResizableBlockingQueue<>(config.getMessageQueueSize());
+        this.analyticsQueue = new ResizableBlockingQueue<>(config.getAnalyticsQueueSize());
         
-        this.clientManager = new ClientManager();
-        this.executor = Executors.newFixedThreadPool(3); // 3 потока для обработки
-        this.scheduler = Executors.newSingleThreadScheduledExecutor();
+        this.commandExecutor = new CommandExecutor(
+            config.getThreadPoolSize(),
+            config.getCommandQueueSize(),
+            config.getCommandsPerUser(),
+            config.getCommandTimeoutMillis());
+        this.fanOut = new FanOutSender(server, latency);
+        AtomicInteger workerNumber = new AtomicInteger(0);
+        this.executor = Executors.newFixedThreadPool(3, // 3 потока для обработки
+            r -> new Thread(r, "MessageBroker-Worker-" + workerNumber.getAndIncrement()));
         this.isRunning = true;
+        config.addListener(configListener);
         
         Logger.info("MessageBroker", "[MessageBroker] Инициализирован");
     }
@@ -60,11 +81,7 @@ public class MessageBroker implements Runnable {
         executor.execute(this::processAnalyticsMessages);  // Поток 3: Для аналитики
         
         // Мониторинг очередей в отдельном потоке
-        new Thread(this::monitorQueues, "QueueMonitor").start();
-        
-        // Очистка неактивных клиентов каждые 30 секунд
-        scheduler.scheduleAtFixedRate(() -> 
-            clientManager.cleanupInactiveUsers(30000), 30, 30, TimeUnit.SECONDS);
+        new Thread(this::monitorQueues, "MessageBroker-QueueMonitor").start();
         
         System.out.println("[MessageBroker] Все обработчики запущены");
     }
@@ -82,15 +99,13 @@ public class MessageBroker implements Runnable {
         }
         
         try {
-            // Обновляем активность пользователя
-            clientManager.updateActivity(message.getUser());
-            
             // Кладем сообщение во входящую очередь
             incomingQueue.put(message);
+            ChatEvents.enqueued("incoming", message, incomingQueue, true);
             
             // Статистика
             if (messagesProcessed.incrementAndGet() % 100 == 0) {
-                Logger.info("MessageBroker", String.format("[MessageBroker] Обработано %d сообщений", messagesProcessed.get()));
+                Logger.info("MessageBroker", "[MessageBroker] Обработано %d сообщений", messagesProcessed.get());
             }
             
         } catch (InterruptedException e) {
@@ -100,24 +115,10 @@ public class MessageBroker implements Runnable {
     }
     
     /**
-     * Добавить нового клиента (вызывается из ChatServer)
+     * Подключить обработчик команд (вызывается из AnalyticsBot)
      */
-    public void addClient(String username) {
-        clientManager.addClient(username);
-    }
-    
-    /**
-     * Удалить клиента (вызывается из ChatServer)
-     */
-    public void removeClient(String username) {
-        clientManager.removeClient(username);
-    }
-    
-    /**
-     * Получить список активных пользователей (для команды /users)
-     */
-    public String[] getActiveUsers() {
-        return clientManager.getActiveUsers();
+    public void registerCommandProcessor(CommandProcessor commandProcessor) {
+        commandExecutor.setProcessor(commandProcessor);
     }
     
     // ========== PRIVATE МЕТОДЫ ОБРАБОТКИ ==========
@@ -132,28 +133,30 @@ public class MessageBroker implements Runnable {
         while (isRunning) {
             try {
                 ChatMessage message = incomingQueue.take();
+                latency.record(MessageLatency.Stage.ROUTER, message);
+                ChatEvents.dequeued("incoming", message, incomingQueue);
  
                 // Маршрутизация по типу сообщения
                 switch (message.getType()) {
                     case USER_MESSAGE:
                         // Обычное сообщение: отправляем всем и анализируем
-                        outgoingQueue.put(message);      // → всем клиентам
-                        analyticsQueue.put(message);     // → боту для анализа
+                        enqueueOutgoing(message);        // → всем клиентам
+                        enqueueAnalytics(message);       // → боту для анализа
                         break;
                         
                     case COMMAND:
-                        // Команда: только боту
-                        analyticsQueue.put(message);     // → боту для обработки
+                        // Команда: в отдельную полосу выполнения, не блокирует маршрутизатор
+                        commandExecutor.submit(message);
                         break;
                         
                     case SYSTEM_MESSAGE:
                         // Системное сообщение: только клиентам
-                        outgoingQueue.put(message);      // → всем клиентам
+                        enqueueOutgoing(message);        // → всем клиентам
                         break;
                         
                     case STATISTICS:
                         // Статистика от бота: только клиентам
-                        outgoingQueue.put(message);      // → всем клиентам
+                        enqueueOutgoing(message);        // → всем клиентам
                         break;
                         
                     default:
@@ -173,6 +176,33 @@ public class MessageBroker implements Runnable {
         Logger.info("MessageBroker", "[MessageBroker] Поток маршрутизатора остановлен");
     }
     
+    private void enqueueOutgoing(ChatMessage message) throws InterruptedException {
+        outgoingQueue.put(message);
+        ChatEvents.enqueued("outgoing", message, outgoingQueue, true);
+    }
+    
+    /**
+     * Передать сообщение аналитике. По умолчанию (server.analytics.overflow=BLOCK) маршрутизатор
+     * ждет места в очереди, чтобы статистика учла каждое сообщение; время ожидания учитывается.
+     * При DROP сообщение при переполнении пропускается и считается сброшенным.
+     */
+    private void enqueueAnalytics(ChatMessage message) throws InterruptedException {
+        if (analyticsQueue.offer(message)) {
+            ChatEvents.enqueued("analytics", message, analyticsQueue, true);
+            return;
+        }
+        if (ServerConfig.getInstance().getSnapshot().getAnalyticsOverflow() == AnalyticsOverflow.DROP) {
+            analyticsShed.incrementAndGet();
+            ChatEvents.enqueued("analytics", message, analyticsQueue, false);
+            return;
+        }
+        long start = System.nanoTime();
+        analyticsQueue.put(message);
+        analyticsBlockedNanos.addAndGet(System.nanoTime() - start);
+        analyticsBlockedPuts.incrementAndGet();
+        ChatEvents.enqueued("analytics", message, analyticsQueue, true);
+    }
+    
     /**
      * Поток 2: ОТПРАВИТЕЛЬ
      * Берет сообщения из outgoingQueue и отправляет всем клиентам
@@ -183,12 +213,16 @@ public class MessageBroker implements Runnable {
         while (isRunning) {
             try {
                 ChatMessage message = outgoingQueue.take();
+                latency.record(MessageLatency.Stage.SENDER, message);
+                ChatEvents.dequeued("outgoing", message, outgoingQueue);
                 
                 // Логируем
-                Logger.debug("MessageBroker", String.format("[Отправитель] Отправляю: [%s] %s", message.getType(), message.getUser()));
+                if (Logger.isDebugEnabled()) {
+                    Logger.debug("MessageBroker", "[Отправитель] Отправляю: [%s] %s", message.getType(), message.getUser());
+                }
                 
-                // Отправляем сообщение через сервер (broadcast)
-                server.broadcastMessage(message);
+                // Рассылка всем клиентам: в этом потоке или по шардам (см. FanOutSender)
+                fanOut.send(message);
                 
             } catch (InterruptedException e) {
                 Thread.currentThread().interrupt();
@@ -239,8 +273,10 @@ public class MessageBroker implements Runnable {
         while (isRunning) {
             try {
                 Thread.sleep(50);
-                Logger.debug("MessageBroker", String.format("[Мониторинг] Очереди: входящая=%d, исходящая=%d, аналитика=%d",
-                    incomingQueue.size(), outgoingQueue.size(), analyticsQueue.size()));
+                if (Logger.isDebugEnabled()) {
+                    Logger.debug("MessageBroker", "[Мониторинг] Очереди: входящая=%d, исходящая=%d, аналитика=%d",
+                        incomingQueue.size(), outgoingQueue.size(), analyticsQueue.size());
+                }
             } catch (InterruptedException e) {
                 break;
             }
@@ -249,34 +285,43 @@ public class MessageBroker implements Runnable {
         Logger.info("MessageBroker", "[MessageBroker] Мониторинг остановлен");
     }
     
+    /**
+     * Применение перезагруженной конфигурации: емкости очередей и параметры полосы команд
+     */
+    private void applyConfig(ServerConfig.Snapshot previous, ServerConfig.Snapshot current) {
+        if (previous.getMessageQueueSize() != current.getMessageQueueSize()) {
+            incomingQueue.setCapacity(current.getMessageQueueSize());
+            outgoingQueue.setCapacity(current.getMessageQueueSize());
+            Logger.info("MessageBroker", "Емкость входящей и исходящей очередей: %d", current.getMessageQueueSize());
+        }
+        if (previous.getAnalyticsQueueSize() != current.getAnalyticsQueueSize()) {
+            analyticsQueue.setCapacity(current.getAnalyticsQueueSize());
+            Logger.info("MessageBroker", "Емкость очереди аналитики: %d", current.getAnalyticsQueueSize());
+        }
+        commandExecutor.applyConfig(current);
+    }
+    
     /**
      * Graceful shutdown
      */
     public void shutdown() {
         Logger.info("MessageBroker", "[MessageBroker] Остановка...");
         isRunning = false;
+        ServerConfig.getInstance().removeListener(configListener);
         int analyticsSize = analyticsQueue.size();
         if (analyticsSize > 0) {
-            Logger.info("MessageBroker", String.format("[MessageBroker] Очищаем analytics очередь: %d сообщений", analyticsSize));
+            Logger.info("MessageBroker", "[MessageBroker] Очищаем analytics очередь: %d сообщений", analyticsSize);
             analyticsQueue.clear();
         }
-        // Останавливаем scheduler
-        scheduler.shutdown();
-        try {
-            if (!scheduler.awaitTermination(5, TimeUnit.SECONDS)) {
-                scheduler.shutdownNow();
-            }
-        } catch (InterruptedException e) {
-            scheduler.shutdownNow();
-        }
-        // Останавливаем executor
-        executor.shutdown();
+        commandExecutor.shutdown();
+        fanOut.shutdown();
+        
+        // Останавливаем executor: обработчики ждут в take(), без прерывания они не увидят isRunning
+        executor.shutdownNow();
         try {
-            if (!executor.awaitTermination(5, TimeUnit.SECONDS)) {
-                executor.shutdownNow();
-            }
+            executor.awaitTermination(5, TimeUnit.SECONDS);
         } catch (InterruptedException e) {
-            executor.shutdownNow();
+            Thread.currentThread().interrupt();
         }
         Logger.info("MessageBroker", "MessageBroker остановлен");
     }
@@ -293,4 +338,61 @@ public class MessageBroker implements Runnable {
     public BlockingQueue<ChatMessage> getAnalyticsQueue() {
         return analyticsQueue;
     }
+    
+    public ChatServer getServer() {
+        return server;
+    }
+    
+    public long getMessagesProcessed() {
+        return messagesProcessed.get();
+    }
+    
+    /**
+     * Сообщения, не попавшие в аналитику из-за переполнения очереди
+     */
+    public long getAnalyticsShed() {
+        return analyticsShed.get();
+    }
+    
+    /**
+     * Сколько раз маршрутизатор ждал места в очереди аналитики
+     */
+    public long getAnalyticsBlockedPuts() {
+        return analyticsBlockedPuts.get();
+    }
+    
+    /**
+     * Суммарное время ожидания места в очереди аналитики, нс
+     */
+    public long getAnalyticsBlockedNanos() {
+        return analyticsBlockedNanos.get();
+    }
+    
+    /**
+     * Отставание аналитики: возраст самого старого необработанного сообщения, нс
+     */
+    public long getAnalyticsLagNanos() {
+        ChatMessage oldest = analyticsQueue.peek();
+        return oldest == null ? 0 : System.nanoTime() - oldest.getCreatedNanos();
+    }
+    
+    public MessageLatency getLatency() {
+        return latency;
+    }
+    
+    /**
+     * Возраст самого старого сообщения в исходящей очереди, нс
+     */
+    public long getOutgoingLagNanos() {
+        ChatMessage oldest = outgoingQueue.peek();
+        return oldest == null ? 0 : System.nanoTime() - oldest.getCreatedNanos();
+    }
+    
+    public FanOutSender getFanOutSender() {
+        return fanOut;
+    }
+    
+    public CommandExecutor getCommandExecutor() {
+        return commandExecutor;
+    }
 }
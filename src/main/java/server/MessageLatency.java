@@ -0,0 +1,137 @@
+package server;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import common.ChatMessage;
+
+/**
+ * Гистограммы задержек на пути сообщения: от чтения в ClientHandler
+ * до маршрутизатора, отправителя, записи последнему клиенту и аналитики.
+ * Запись стоит один вызов System.nanoTime() и несколько атомарных инкрементов.
+ */
+public class MessageLatency {
+
+    public enum Stage {
+        ROUTER("клиент → маршрутизатор"),
+        SENDER("клиент → отправитель"),
+        DELIVERED("клиент → последний получатель"),
+        ANALYTICS("клиент → аналитика"),
+        FANOUT("рассылка всем клиентам"),
+        CLIENT_WRITE("запись одному клиенту");
+
+        private final String description;
+
+        Stage(String description) {
+            this.description = description;
+        }
+
+        public String getDescription() {
+            return description;
+        }
+    }
+
+    /**
+     * Сколько первых доставленных сообщений попадает в отчет о запуске
+     */
+    public static final int STARTUP_MESSAGES = 10_000;
+
+    private final LatencyHistogram[] histograms = new LatencyHistogram[Stage.values().length];
+
+    // Задержка доставки первых сообщений после запуска (холодная JVM, JIT еще не прогрет)
+    private final LatencyHistogram startup = new LatencyHistogram();
+    private final AtomicInteger startupRecorded = new AtomicInteger(STARTUP_MESSAGES); // отчет выключен
+    private volatile long firstDeliveryUptimeMillis = -1;
+
+    public MessageLatency() {
+        for (int i = 0; i < histograms.length; i++) {
+            histograms[i] = new LatencyHistogram();
+        }
+    }
+
+    /**
+     * Записывает время от создания сообщения пользователя до текущего момента.
+     * Сообщения сервера и бота не учитываются: у них нет клиентского входа.
+     */
+    public void record(Stage stage, ChatMessage message) {
+        if (message.getType() == ChatMessage.MessageType.USER_MESSAGE) {
+            long nanos = System.nanoTime() - message.getCreatedNanos();
+            histograms[stage.ordinal()].record(nanos);
+            if (stage == Stage.DELIVERED && startupRecorded.get() < STARTUP_MESSAGES) {
+                recordStartup(nanos);
+            }
+        }
+    }
+
+    /**
+     * Включить отчет о запуске: время до первой доставки и задержки первых STARTUP_MESSAGES сообщений
+     */
+    public void trackStartup() {
+        startupRecorded.set(0);
+    }
+
+    private void recordStartup(long nanos) {
+        int recorded = startupRecorded.incrementAndGet();
+        if (recorded > STARTUP_MESSAGES) return;
+        startup.record(nanos);
+        if (recorded == 1) {
+            firstDeliveryUptimeMillis = ManagementFactory.getRuntimeMXBean().getUptime();
+            Logger.info("MessageLatency", "Первое сообщение доставлено через %d мс после запуска JVM (задержка %.2f мс)",
+                firstDeliveryUptimeMillis, toMillis(nanos));
+        } else if (recorded == STARTUP_MESSAGES) {
+            Logger.info("MessageLatency", "Первые %d сообщений после запуска: p50=%.2f мс, p99=%.2f мс, p999=%.2f мс, max=%.2f мс",
+                STARTUP_MESSAGES,
+                toMillis(startup.getValueAtPercentile(50)),
+                toMillis(startup.getValueAtPercentile(99)),
+                toMillis(startup.getValueAtPercentile(99.9)),
+                toMillis(startup.getMax()));
+        }
+    }
+
+    /**
+     * Задержки доставки первых STARTUP_MESSAGES сообщений после запуска
+     */
+    public LatencyHistogram getStartupLatency() {
+        return startup;
+    }
+
+    /**
+     * Время от запуска JVM до первой доставки, мс; -1 - сообщений еще не было
+     */
+    public long getFirstDeliveryUptimeMillis() {
+        return firstDeliveryUptimeMillis;
+    }
+
+    /**
+     * Записывает длительность этапа, измеренную вызывающим кодом
+     */
+    public void recordDuration(Stage stage, long nanos) {
+        histograms[stage.ordinal()].record(nanos);
+    }
+
+    public LatencyHistogram get(Stage stage) {
+        return histograms[stage.ordinal()];
+    }
+
+    /**
+     * Сводка p50/p99/p999 по всем этапам
+     */
+    public String formatSummary() {
+        StringBuilder sb = new StringBuilder();
+        for (Stage stage : Stage.values()) {
+            LatencyHistogram histogram = get(stage);
+            sb.append(String.format("%s: n=%d, p50=%.2f мс, p99=%.2f мс, p999=%.2f мс, max=%.2f мс\n",
+                stage.getDescription(),
+                histogram.getCount(),
+                toMillis(histogram.getValueAtPercentile(50)),
+                toMillis(histogram.getValueAtPercentile(99)),
+                toMillis(histogram.getValueAtPercentile(99.9)),
+                toMillis(histogram.getMax())));
+        }
+        return sb.toString();
+    }
+
+    private static double toMillis(long nanos) {
+        return nanos / 1_000_000.0;
+    }
+}
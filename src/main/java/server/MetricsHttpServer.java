@@ -0,0 +1,157 @@
+package server;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * Встроенный HTTP-эндпоинт /metrics в текстовом формате Prometheus (только JDK).
+ * Запросы обслуживает один поток, поэтому текст и байты ответа собираются
+ * в переиспользуемых буферах и частый опрос почти не создает мусора.
+ */
+public class MetricsHttpServer {
+    private static final String CONTENT_TYPE = "text/plain; version=0.0.4; charset=utf-8";
+
+    private final HttpServer httpServer;
+    private final ExecutorService executor;
+    private final MetricsRegistry registry;
+    private final StringBuilder text = new StringBuilder(16 * 1024);
+    private final MetricsRegistry.SampleSink sink = this::appendSample;
+    private byte[] bytes = new byte[16 * 1024];
+
+    /**
+     * @param host адрес для прослушивания; по умолчанию loopback, так как в выгрузке есть
+     *             имена пользователей и счетчики подключений
+     */
+    public MetricsHttpServer(String host, int port, MetricsRegistry registry) throws IOException {
+        this.registry = registry;
+        this.httpServer = HttpServer.create(new InetSocketAddress(host, port), 0);
+        this.executor = Executors.newSingleThreadExecutor(r -> {
+            Thread thread = new Thread(r, "MetricsHttpServer");
+            thread.setDaemon(true);
+            return thread;
+        });
+        httpServer.setExecutor(executor);
+        httpServer.createContext("/metrics", this::handle);
+    }
+
+    public void start() {
+        httpServer.start();
+        InetSocketAddress address = httpServer.getAddress();
+        Logger.info("MetricsHttpServer", "Метрики доступны на http://" + address.getHostString() + ":" + address.getPort() + "/metrics");
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try {
+            String method = exchange.getRequestMethod();
+            if (!"GET".equals(method) && !"HEAD".equals(method)) {
+                exchange.sendResponseHeaders(405, -1);
+                return;
+            }
+            synchronized (this) {
+                int length = render();
+                exchange.getResponseHeaders().set("Content-Type", CONTENT_TYPE);
+                if ("HEAD".equals(method)) {
+                    exchange.sendResponseHeaders(200, -1);
+                    return;
+                }
+                exchange.sendResponseHeaders(200, length);
+                try (OutputStream body = exchange.getResponseBody()) {
+                    body.write(bytes, 0, length);
+                }
+            }
+        } catch (RuntimeException e) {
+            Logger.error("MetricsHttpServer", "Ошибка при формировании метрик: " + e.getMessage(), e);
+            exchange.sendResponseHeaders(500, -1);
+        } finally {
+            exchange.close();
+        }
+    }
+
+    /**
+     * Собирает ответ в буферы, возвращает длину в байтах
+     */
+    private int render() {
+        text.setLength(0);
+        for (MetricsRegistry.Family family : registry.getFamilies()) {
+            text.append("# HELP ").append(family.getName()).append(' ');
+            appendEscaped(family.getHelp());
+            text.append("\n# TYPE ").append(family.getName()).append(' ')
+                .append(family.getType().getExposition()).append('\n');
+            family.collect(sink);
+        }
+        return encodeUtf8();
+    }
+
+    private void appendSample(String name, String labels, double value) {
+        text.append(name);
+        if (labels != null) {
+            text.append('{').append(labels).append('}');
+        }
+        text.append(' ');
+        if (Double.isNaN(value)) {
+            text.append("NaN");
+        } else if (Double.isInfinite(value)) {
+            text.append(value > 0 ? "+Inf" : "-Inf");
+        } else if (value == (long) value) {
+            text.append((long) value);
+        } else {
+            text.append(value);
+        }
+        text.append('\n');
+    }
+
+    private void appendEscaped(String help) {
+        for (int i = 0; i < help.length(); i++) {
+            char c = help.charAt(i);
+            if (c == '\\') {
+                text.append("\\\\");
+            } else if (c == '\n') {
+                text.append("\\n");
+            } else {
+                text.append(c);
+            }
+        }
+    }
+
+    // Кодирование в UTF-8 без промежуточной строки
+    private int encodeUtf8() {
+        int maxLength = text.length() * 3;
+        if (bytes.length < maxLength) {
+            bytes = new byte[maxLength];
+        }
+        int pos = 0;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c < 0x80) {
+                bytes[pos++] = (byte) c;
+            } else if (c < 0x800) {
+                bytes[pos++] = (byte) (0xC0 | (c >> 6));
+                bytes[pos++] = (byte) (0x80 | (c & 0x3F));
+            } else if (Character.isHighSurrogate(c) && i + 1 < text.length()
+                    && Character.isLowSurrogate(text.charAt(i + 1))) {
+                int codePoint = Character.toCodePoint(c, text.charAt(++i));
+                bytes[pos++] = (byte) (0xF0 | (codePoint >> 18));
+                bytes[pos++] = (byte) (0x80 | ((codePoint >> 12) & 0x3F));
+                bytes[pos++] = (byte) (0x80 | ((codePoint >> 6) & 0x3F));
+                bytes[pos++] = (byte) (0x80 | (codePoint & 0x3F));
+            } else {
+                bytes[pos++] = (byte) (0xE0 | (c >> 12));
+                bytes[pos++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+                bytes[pos++] = (byte) (0x80 | (c & 0x3F));
+            }
+        }
+        return pos;
+    }
+
+    public void shutdown() {
+        httpServer.stop(0);
+        executor.shutdownNow();
+        Logger.info("MetricsHttpServer", "MetricsHttpServer остановлен");
+    }
+}
@@ -0,0 +1,184 @@
+package server;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.DoubleSupplier;
+
+/**
+ * Реестр метрик сервера.
+ * Метрика хранит не значение, а источник: значения читаются только при обходе реестра
+ * (экспорт, периодический лог), поэтому регистрация ничего не стоит горячему пути.
+ * Имена и типы следуют соглашениям Prometheus.
+ */
+public class MetricsRegistry {
+    private static final MetricsRegistry INSTANCE = new MetricsRegistry();
+
+    private static final double[] SUMMARY_QUANTILES = {0.5, 0.99, 0.999};
+    private static final double[] SUMMARY_PERCENTILES = {50, 99, 99.9};
+
+    public enum Type {
+        COUNTER("counter"),
+        GAUGE("gauge"),
+        SUMMARY("summary");
+
+        private final String exposition;
+
+        Type(String exposition) {
+            this.exposition = exposition;
+        }
+
+        public String getExposition() {
+            return exposition;
+        }
+    }
+
+    /**
+     * Получатель значений при обходе реестра
+     * @param labels метки в формате Prometheus без фигурных скобок, null - без меток
+     */
+    public interface SampleSink {
+        void sample(String name, String labels, double value);
+    }
+
+    /**
+     * Источник значений метрики, вызывается при каждом чтении
+     */
+    public interface Collector {
+        void collect(String name, SampleSink sink);
+    }
+
+    /**
+     * Семейство метрик: одно имя, тип и описание, несколько источников с разными метками
+     */
+    public static final class Family {
+        private final String name;
+        private final String help;
+        private final Type type;
+        private final List<Collector> collectors = new CopyOnWriteArrayList<>();
+
+        private Family(String name, String help, Type type) {
+            this.name = name;
+            this.help = help;
+            this.type = type;
+        }
+
+        public String getName() { return name; }
+        public String getHelp() { return help; }
+        public Type getType() { return type; }
+
+        public void collect(SampleSink sink) {
+            for (Collector collector : collectors) {
+                try {
+                    collector.collect(name, sink);
+                } catch (RuntimeException e) {
+                    Logger.debug("MetricsRegistry", "Не удалось прочитать метрику " + name + ": " + e.getMessage());
+                }
+            }
+        }
+    }
+
+    private final ConcurrentHashMap<String, Family> families = new ConcurrentHashMap<>();
+    private final List<Family> ordered = new CopyOnWriteArrayList<>();
+
+    public static MetricsRegistry getInstance() {
+        return INSTANCE;
+    }
+
+    public void gauge(String name, String help, DoubleSupplier value) {
+        gauge(name, null, help, value);
+    }
+
+    public void gauge(String name, String labels, String help, DoubleSupplier value) {
+        register(name, help, Type.GAUGE, (n, sink) -> sink.sample(n, labels, value.getAsDouble()));
+    }
+
+    public void counter(String name, String help, DoubleSupplier value) {
+        counter(name, null, help, value);
+    }
+
+    public void counter(String name, String labels, String help, DoubleSupplier value) {
+        register(name, help, Type.COUNTER, (n, sink) -> sink.sample(n, labels, value.getAsDouble()));
+    }
+
+    /**
+     * Сводка по гистограмме задержек (наносекунды), экспортируется в секундах
+     */
+    public void summary(String name, String labels, String help, LatencyHistogram histogram) {
+        String prefix = labels == null ? "" : labels + ",";
+        String[] quantileLabels = new String[SUMMARY_QUANTILES.length];
+        for (int i = 0; i < SUMMARY_QUANTILES.length; i++) {
+            quantileLabels[i] = prefix + "quantile=\"" + SUMMARY_QUANTILES[i] + "\"";
+        }
+        String sumName = name + "_sum";
+        String countName = name + "_count";
+        register(name, help, Type.SUMMARY, (n, sink) -> {
+            long[] values = new long[SUMMARY_PERCENTILES.length];
+            histogram.getValuesAtPercentiles(SUMMARY_PERCENTILES, values);
+            for (int i = 0; i < values.length; i++) {
+                sink.sample(n, quantileLabels[i], values[i] / 1e9);
+            }
+            sink.sample(sumName, labels, histogram.getSum() / 1e9);
+            sink.sample(countName, labels, histogram.getCount());
+        });
+    }
+
+    /**
+     * Добавляет источник в семейство; семейство создается при первой регистрации имени
+     */
+    public void register(String name, String help, Type type, Collector collector) {
+        Family family = families.computeIfAbsent(name, k -> {
+            Family created = new Family(name, help, type);
+            ordered.add(created);
+            return created;
+        });
+        if (family.type != type) {
+            throw new IllegalArgumentException("Метрика " + name + " уже зарегистрирована с типом " + family.type);
+        }
+        family.collectors.add(collector);
+    }
+
+    /**
+     * Семейства в порядке регистрации
+     */
+    public List<Family> getFamilies() {
+        return Collections.unmodifiableList(ordered);
+    }
+
+    /**
+     * Первое значение семейства (для логов), NaN - если метрики нет
+     */
+    public double value(String name) {
+        Family family = families.get(name);
+        if (family == null) {
+            return Double.NaN;
+        }
+        double[] first = {Double.NaN};
+        family.collect((n, labels, value) -> {
+            if (Double.isNaN(first[0])) {
+                first[0] = value;
+            }
+        });
+        return first[0];
+    }
+
+    /**
+     * Метка в формате Prometheus с экранированием значения
+     */
+    public static String label(String key, String value) {
+        StringBuilder sb = new StringBuilder(key.length() + value.length() + 3);
+        sb.append(key).append("=\"");
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '\\' || c == '"') {
+                sb.append('\\').append(c);
+            } else if (c == '\n') {
+                sb.append("\\n");
+            } else {
+                sb.append(c);
+            }
+        }
+        return sb.append('"').toString();
+    }
+}
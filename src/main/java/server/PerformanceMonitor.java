@@ -1,75 +1,162 @@
 package server;
 
-import java.lang.management.ManagementFactory;
-import java.lang.management.MemoryMXBean;
+import java.util.Locale;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
+import java.util.function.ToDoubleFunction;
 
 public class PerformanceMonitor {
+    private static final int TOP_CONNECTIONS = 10;
+    
     private final ChatServer server;
     private final MessageBroker messageBroker;
     private final ScheduledExecutorService scheduler;
+    private final MetricsRegistry metrics = MetricsRegistry.getInstance();
+    private final JvmMetrics jvmMetrics = new JvmMetrics();
+    private ScheduledFuture<?> sampling;
     private long startTime;
     
     public PerformanceMonitor(ChatServer server, MessageBroker messageBroker) {
         this.server = server;
         this.messageBroker = messageBroker;
-        this.scheduler = Executors.newScheduledThreadPool(1);
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(r -> new Thread(r, "PerformanceMonitor"));
         this.startTime = System.currentTimeMillis();
+        registerMetrics();
     }
     
     public void start() {
         Logger.info("PerformanceMonitor", "PerformanceMonitor запущен");
         
-        scheduler.scheduleAtFixedRate(() -> {
+        schedule(5, ServerConfig.getInstance().getMonitorIntervalSeconds());
+        ServerConfig.getInstance().addListener((previous, current) -> {
+            if (previous.getMonitorIntervalSeconds() != current.getMonitorIntervalSeconds()) {
+                schedule(current.getMonitorIntervalSeconds(), current.getMonitorIntervalSeconds());
+                Logger.info("PerformanceMonitor", "Интервал мониторинга: %d с", current.getMonitorIntervalSeconds());
+            }
+        });
+    }
+    
+    // Перепланирование при смене интервала в конфигурации
+    private synchronized void schedule(long initialDelaySeconds, long intervalSeconds) {
+        if (sampling != null) {
+            sampling.cancel(false);
+        }
+        sampling = scheduler.scheduleAtFixedRate(() -> {
             try {
+                jvmMetrics.sampleAllocationRate();
                 printMetrics();
             } catch (Exception e) {
                 Logger.error("PerformanceMonitor", "Ошибка в PerformanceMonitor: " + e.getMessage(), e);
             }
-        }, 5, ServerConfig.getInstance().getMonitorIntervalSeconds(), TimeUnit.SECONDS);
+        }, initialDelaySeconds, intervalSeconds, TimeUnit.SECONDS);
     }
     
-    private void printMetrics() {
-        MemoryMXBean memoryBean = ManagementFactory.getMemoryMXBean();
-        long uptime = System.currentTimeMillis() - startTime;
-        
-        Logger.debug("PerformanceMonitor", "=".repeat(60));
-        Logger.debug("PerformanceMonitor", "МОНИТОРИНГ ПРОИЗВОДИТЕЛЬНОСТИ");
-        Logger.debug("PerformanceMonitor", "=".repeat(60));
-        
-        Logger.debug("PerformanceMonitor", String.format("Время работы: %s", formatUptime(uptime)));
-        
-        // Активные подключения
-        Logger.debug("PerformanceMonitor", String.format("Активные подключения: %d", server.getActiveUserCount()));
-        
-        // Использование памяти
-        long usedMemory = memoryBean.getHeapMemoryUsage().getUsed() / (1024 * 1024);
-        long maxMemory = memoryBean.getHeapMemoryUsage().getMax() / (1024 * 1024);
-        Logger.debug("PerformanceMonitor", String.format("Память: %dMB / %dMB (%.1f%%)",
-            usedMemory, maxMemory, (usedMemory * 100.0 / maxMemory)));
-        
-        // Статистика потоков
-        ThreadGroup rootGroup = Thread.currentThread().getThreadGroup();
-        while (rootGroup.getParent() != null) {
-            rootGroup = rootGroup.getParent();
-        }
-        Logger.debug("PerformanceMonitor", String.format("Активные потоки: %d", rootGroup.activeCount()));
-        
-        // Загрузка CPU
-        Logger.debug("PerformanceMonitor", String.format("Загрузка CPU: %.1f%%", getProcessCpuLoad()));
+    public MetricsRegistry getMetrics() {
+        return metrics;
+    }
+    
+    /**
+     * Метрики сервера и JVM в реестре; значения читаются при обходе реестра
+     */
+    private void registerMetrics() {
+        jvmMetrics.register(metrics);
+        metrics.gauge("chat_uptime_seconds", "Время работы сервера, с",
+            () -> (System.currentTimeMillis() - startTime) / 1000.0);
+        metrics.gauge("chat_connected_clients", "Активные подключения", server::getActiveUserCount);
+        metrics.counter("chat_presence_events_total", "События входа и выхода пользователей",
+            () -> server.getPresence().getEventsReceived());
+        metrics.counter("chat_presence_messages_total", "Разосланные уведомления о входе и выходе",
+            () -> server.getPresence().getMessagesSent());
+        metrics.gauge("chat_sessions_detached", "Сессии, ждущие переподключения",
+            () -> server.getSessions().countDetached());
+        metrics.counter("chat_sessions_resumed_total", "Сессии, восстановленные по токену", server::getSessionsResumed);
+        metrics.counter("chat_sessions_expired_total", "Сессии, закрытые без переподключения", server::getSessionsExpired);
+        registerConnectionMetrics("chat_connection_bytes_out", "Отправлено клиенту байт (топ подключений)",
+            MetricsRegistry.Type.COUNTER, ConnectionStats.SortKey.OUT, stats -> stats.getBytesOut());
+        registerConnectionMetrics("chat_connection_pending_writes", "Незавершенные записи клиенту (топ подключений)",
+            MetricsRegistry.Type.GAUGE, ConnectionStats.SortKey.BACKLOG, stats -> stats.getPendingWrites());
+        registerConnectionMetrics("chat_connection_last_write_seconds", "Длительность последней записи клиенту (топ подключений)",
+            MetricsRegistry.Type.GAUGE, ConnectionStats.SortKey.SLOW, stats -> stats.getLastWriteNanos() / 1e9);
         
-        // Статистика MessageBroker
-        if (messageBroker != null) {
-            Logger.debug("PerformanceMonitor", String.format("Очередь входящих: %d", messageBroker.getIncomingQueue().size()));
-            Logger.debug("PerformanceMonitor", String.format("Очередь исходящих: %d", messageBroker.getOutgoingQueue().size()));
-            Logger.debug("PerformanceMonitor", String.format("Очередь аналитики: %d", messageBroker.getAnalyticsQueue().size()));
-        } else {
+        if (messageBroker == null) {
             Logger.warn("PerformanceMonitor", "MessageBroker недоступен для мониторинга");
+            return;
         }
+        metrics.gauge("chat_queue_size", MetricsRegistry.label("queue", "incoming"), "Размер очереди",
+            () -> messageBroker.getIncomingQueue().size());
+        metrics.gauge("chat_queue_size", MetricsRegistry.label("queue", "outgoing"), "Размер очереди",
+            () -> messageBroker.getOutgoingQueue().size());
+        metrics.gauge("chat_queue_size", MetricsRegistry.label("queue", "analytics"), "Размер очереди",
+            () -> messageBroker.getAnalyticsQueue().size());
+        metrics.gauge("chat_queue_size", MetricsRegistry.label("queue", "commands"), "Размер очереди",
+            () -> messageBroker.getCommandExecutor().getQueueSize());
+        metrics.counter("chat_messages_received_total", "Принято сообщений от клиентов",
+            messageBroker::getMessagesProcessed);
+        metrics.counter("chat_messages_shed_total", MetricsRegistry.label("queue", "analytics"),
+            "Сообщения, сброшенные при перегрузке", messageBroker::getAnalyticsShed);
+        metrics.counter("chat_analytics_blocked_puts_total", "Ожидания маршрутизатора при полной очереди аналитики",
+            messageBroker::getAnalyticsBlockedPuts);
+        metrics.counter("chat_analytics_blocked_seconds_total", "Время ожидания места в очереди аналитики, с",
+            () -> messageBroker.getAnalyticsBlockedNanos() / 1e9);
+        metrics.counter("chat_rate_limited_total", "Сообщения, отклоненные рейт-лимитом",
+            UserRateLimiter::getTotalRejected);
+        metrics.gauge("chat_analytics_lag_seconds", "Возраст самого старого сообщения в очереди аналитики, с",
+            () -> messageBroker.getAnalyticsLagNanos() / 1e9);
+        // Отклоненные команды - только здесь, а не в chat_messages_shed_total: иначе сумма по нему удваивается
+        metrics.counter("chat_commands_rejected_total", "Отклонено команд (лимиты и переполнение)",
+            () -> messageBroker.getCommandExecutor().getRejectedCommands());
+        metrics.counter("chat_commands_timed_out_total", "Прервано команд по таймауту",
+            () -> messageBroker.getCommandExecutor().getTimedOutCommands());
+        metrics.counter("chat_fanout_dropped_total", "Сообщения, пропущенные шардом рассылки при переполнении",
+            () -> messageBroker.getFanOutSender().getDroppedDeliveries());
+        metrics.counter("chat_fanout_slow_disconnects_total", "Клиенты, отключенные за зависшую запись",
+            () -> messageBroker.getFanOutSender().getSlowDisconnects());
         
-        Logger.debug("PerformanceMonitor", "=".repeat(60));
+        MessageLatency latency = messageBroker.getLatency();
+        for (MessageLatency.Stage stage : MessageLatency.Stage.values()) {
+            metrics.summary("chat_message_latency_seconds",
+                MetricsRegistry.label("stage", stage.name().toLowerCase(Locale.ROOT)),
+                "Задержки на пути сообщения", latency.get(stage));
+        }
+        metrics.summary("chat_startup_latency_seconds", null,
+            "Задержка доставки первых " + MessageLatency.STARTUP_MESSAGES + " сообщений после запуска",
+            latency.getStartupLatency());
+        metrics.gauge("chat_time_to_first_message_seconds", "Время от запуска JVM до первой доставки, с",
+            () -> latency.getFirstDeliveryUptimeMillis() / 1000.0);
+    }
+    
+    /**
+     * Метрика по самым тяжелым подключениям; число подключений в выгрузке ограничено,
+     * чтобы не плодить временные ряды на каждого клиента
+     */
+    private void registerConnectionMetrics(String name, String help, MetricsRegistry.Type type,
+                                           ConnectionStats.SortKey sortKey, ToDoubleFunction<ConnectionStats> value) {
+        metrics.register(name, help, type, (n, sink) -> {
+            for (ConnectionStats stats : ConnectionStats.top(server.getConnectionStats(), sortKey, TOP_CONNECTIONS)) {
+                String user = stats.getUser();
+                if (user != null) {
+                    sink.sample(n, MetricsRegistry.label("user", user), value.applyAsDouble(stats));
+                }
+            }
+        });
+    }
+    
+    private void printMetrics() {
+        if (!Logger.isDebugEnabled()) {
+            return;
+        }
+        long uptime = System.currentTimeMillis() - startTime;
+        Logger.debug("PerformanceMonitor", 
+            "Время работы %s | подключений %d | CPU процесс %.1f%%, система %.1f%% | куча %dMB | выделение %.1fMB/с | потоков %d",
+            formatUptime(uptime),
+            server.getActiveUserCount(),
+            metrics.value("process_cpu_usage") * 100,
+            metrics.value("system_cpu_usage") * 100,
+            (long) metrics.value("jvm_memory_used_bytes") / (1024 * 1024),
+            metrics.value("jvm_allocation_rate_bytes_per_second") / (1024 * 1024),
+            (long) metrics.value("jvm_threads_current"));
     }
     
     private String formatUptime(long millis) {
@@ -80,11 +167,6 @@ public class PerformanceMonitor {
         return String.format("%02d:%02d:%02d", hours, minutes, secs);
     }
     
-    private double getProcessCpuLoad() {
-        // Упрощенная версия - в реальной системе используйте OperatingSystemMXBean
-        return Math.random() * 30 + 10; // Заглушка для демонстрации
-    }
-    
     public void shutdown() {
         scheduler.shutdown();
         try {
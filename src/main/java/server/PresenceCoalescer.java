@@ -0,0 +1,162 @@
+package server;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import common.ChatMessage;
+
+/**
+ * Объединение уведомлений о входе и выходе пользователей.
+ * События копятся в течение такта и уходят одним системным сообщением
+ * "Присоединились: a, b, c (+N) / Покинули: ...", а при большом числе событий - только счетчиками.
+ * Вход и выход одного пользователя в пределах такта (переподключение) взаимно гасятся.
+ * Поэтому волна из N переподключений стоит O(N) записей вместо O(N²).
+ */
+public class PresenceCoalescer {
+    private final MessageBroker messageBroker;
+    private final ScheduledExecutorService scheduler;
+    private final ServerConfig.Listener configListener = this::applyConfig;
+
+    // Пользователь -> true (вошел) / false (вышел) с начала такта, в порядке событий
+    private final Map<String, Boolean> pending = new LinkedHashMap<>();
+    private ScheduledFuture<?> ticks;
+
+    // Статистика
+    private final AtomicLong eventsReceived = new AtomicLong(0);
+    private final AtomicLong messagesSent = new AtomicLong(0);
+
+    public PresenceCoalescer(MessageBroker messageBroker) {
+        this.messageBroker = messageBroker;
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "PresenceCoalescer");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    public void start() {
+        schedule(ServerConfig.getInstance().getSnapshot().getPresenceTickMillis());
+        ServerConfig.getInstance().addListener(configListener);
+    }
+
+    public void joined(String username) {
+        record(username, true);
+    }
+
+    public void left(String username) {
+        record(username, false);
+    }
+
+    private void record(String username, boolean joined) {
+        eventsReceived.incrementAndGet();
+        synchronized (pending) {
+            Boolean previous = pending.remove(username);
+            // Противоположное событие в том же такте: пользователь переподключился или зашел ненадолго
+            if (previous == null || previous == joined) {
+                pending.put(username, joined);
+            }
+        }
+        if (ServerConfig.getInstance().getSnapshot().getPresenceTickMillis() == 0) {
+            flush();
+        }
+    }
+
+    // Перепланирование при смене такта в конфигурации; 0 - без объединения, рассылка сразу
+    private synchronized void schedule(long tickMillis) {
+        if (ticks != null) {
+            ticks.cancel(false);
+            ticks = null;
+        }
+        if (tickMillis > 0) {
+            ticks = scheduler.scheduleAtFixedRate(() -> {
+                try {
+                    flush();
+                } catch (Exception e) {
+                    Logger.error("PresenceCoalescer", "Ошибка при рассылке уведомлений: " + e.getMessage(), e);
+                }
+            }, tickMillis, tickMillis, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private void applyConfig(ServerConfig.Snapshot previous, ServerConfig.Snapshot current) {
+        if (previous.getPresenceTickMillis() != current.getPresenceTickMillis()) {
+            schedule(current.getPresenceTickMillis());
+            if (current.getPresenceTickMillis() == 0) {
+                flush();
+            }
+        }
+    }
+
+    /**
+     * Отправить накопленные события одним сообщением
+     */
+    void flush() {
+        List<String> joined = new ArrayList<>();
+        List<String> left = new ArrayList<>();
+        synchronized (pending) {
+            if (pending.isEmpty()) return;
+            for (Map.Entry<String, Boolean> event : pending.entrySet()) {
+                (event.getValue() ? joined : left).add(event.getKey());
+            }
+            pending.clear();
+        }
+
+        ChatMessage message = new ChatMessage(ChatMessage.MessageType.SYSTEM_MESSAGE, "Система",
+            format(joined, left, ServerConfig.getInstance().getSnapshot()));
+        try {
+            messageBroker.getOutgoingQueue().put(message);
+            messagesSent.incrementAndGet();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    static String format(List<String> joined, List<String> left, ServerConfig.Snapshot config) {
+        // Одно событие - прежний текст уведомления
+        if (joined.size() + left.size() == 1) {
+            return joined.isEmpty() ? left.get(0) + " покинул чат." : joined.get(0) + " присоединился к чату.";
+        }
+        boolean countsOnly = joined.size() + left.size() > config.getPresenceCountsThreshold();
+        StringBuilder text = new StringBuilder();
+        append(text, "Присоединились", joined, countsOnly, config.getPresenceNamesShown());
+        append(text, "Покинули", left, countsOnly, config.getPresenceNamesShown());
+        return text.toString();
+    }
+
+    private static void append(StringBuilder text, String title, List<String> names, boolean countsOnly, int shown) {
+        if (names.isEmpty()) return;
+        if (text.length() > 0) {
+            text.append(" / ");
+        }
+        text.append(title).append(": ");
+        if (countsOnly) {
+            text.append(names.size());
+            return;
+        }
+        int listed = Math.min(shown, names.size());
+        text.append(String.join(", ", names.subList(0, listed)));
+        if (names.size() > listed) {
+            text.append(" (+").append(names.size() - listed).append(')');
+        }
+    }
+
+    public long getEventsReceived() {
+        return eventsReceived.get();
+    }
+
+    public long getMessagesSent() {
+        return messagesSent.get();
+    }
+
+    public void shutdown() {
+        ServerConfig.getInstance().removeListener(configListener);
+        scheduler.shutdownNow();
+    }
+}
@@ -0,0 +1,353 @@
+package server;
+
+import java.util.AbstractQueue;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Ограниченная блокирующая очередь, емкость которой можно менять на ходу (горячая перезагрузка
+ * конфигурации). Устроена как LinkedBlockingQueue: связный список и две блокировки,
+ * поэтому производители и потребитель не мешают друг другу, а число элементов хранится
+ * в AtomicInteger и size()/remainingCapacity() не берут блокировок.
+ * Уменьшение емкости не выбрасывает элементы: производители ждут, пока очередь
+ * не опустится ниже нового предела.
+ */
+public class ResizableBlockingQueue<E> extends AbstractQueue<E> implements BlockingQueue<E> {
+
+    private static final class Node<E> {
+        E item;
+        Node<E> next;
+
+        Node(E item) {
+            this.item = item;
+        }
+    }
+
+    private final AtomicInteger count = new AtomicInteger(0);
+    private volatile int capacity;
+
+    // Голова - пустой узел, первый элемент в head.next; меняется только под takeLock
+    private Node<E> head;
+    // Последний узел; меняется только под putLock
+    private Node<E> last;
+
+    private final ReentrantLock takeLock = new ReentrantLock();
+    private final Condition notEmpty = takeLock.newCondition();
+    private final ReentrantLock putLock = new ReentrantLock();
+    private final Condition notFull = putLock.newCondition();
+
+    public ResizableBlockingQueue(int capacity) {
+        if (capacity <= 0) throw new IllegalArgumentException("Емкость очереди должна быть положительной: " + capacity);
+        this.capacity = capacity;
+        this.last = this.head = new Node<>(null);
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * Меняет емкость; ожидающие производители будятся, если места стало больше
+     */
+    public void setCapacity(int newCapacity) {
+        if (newCapacity <= 0) throw new IllegalArgumentException("Емкость очереди должна быть положительной: " + newCapacity);
+        putLock.lock();
+        try {
+            capacity = newCapacity;
+            notFull.signalAll();
+        } finally {
+            putLock.unlock();
+        }
+    }
+
+    @Override
+    public boolean offer(E e) {
+        Objects.requireNonNull(e);
+        if (count.get() >= capacity) return false;
+        int c;
+        putLock.lock();
+        try {
+            if (count.get() >= capacity) return false;
+            enqueue(new Node<>(e));
+            c = count.getAndIncrement();
+            if (c + 1 < capacity) notFull.signal();
+        } finally {
+            putLock.unlock();
+        }
+        if (c == 0) signalNotEmpty();
+        return true;
+    }
+
+    @Override
+    public void put(E e) throws InterruptedException {
+        Objects.requireNonNull(e);
+        int c;
+        putLock.lockInterruptibly();
+        try {
+            while (count.get() >= capacity) {
+                notFull.await();
+            }
+            enqueue(new Node<>(e));
+            c = count.getAndIncrement();
+            if (c + 1 < capacity) notFull.signal();
+        } finally {
+            putLock.unlock();
+        }
+        if (c == 0) signalNotEmpty();
+    }
+
+    @Override
+    public boolean offer(E e, long timeout, TimeUnit unit) throws InterruptedException {
+        Objects.requireNonNull(e);
+        long nanos = unit.toNanos(timeout);
+        int c;
+        putLock.lockInterruptibly();
+        try {
+            while (count.get() >= capacity) {
+                if (nanos <= 0) return false;
+                nanos = notFull.awaitNanos(nanos);
+            }
+            enqueue(new Node<>(e));
+            c = count.getAndIncrement();
+            if (c + 1 < capacity) notFull.signal();
+        } finally {
+            putLock.unlock();
+        }
+        if (c == 0) signalNotEmpty();
+        return true;
+    }
+
+    @Override
+    public E take() throws InterruptedException {
+        E e;
+        int c;
+        takeLock.lockInterruptibly();
+        try {
+            while (count.get() == 0) {
+                notEmpty.await();
+            }
+            e = dequeue();
+            c = count.getAndDecrement();
+            if (c > 1) notEmpty.signal();
+        } finally {
+            takeLock.unlock();
+        }
+        if (c >= capacity) signalNotFull();
+        return e;
+    }
+
+    @Override
+    public E poll(long timeout, TimeUnit unit) throws InterruptedException {
+        long nanos = unit.toNanos(timeout);
+        E e;
+        int c;
+        takeLock.lockInterruptibly();
+        try {
+            while (count.get() == 0) {
+                if (nanos <= 0) return null;
+                nanos = notEmpty.awaitNanos(nanos);
+            }
+            e = dequeue();
+            c = count.getAndDecrement();
+            if (c > 1) notEmpty.signal();
+        } finally {
+            takeLock.unlock();
+        }
+        if (c >= capacity) signalNotFull();
+        return e;
+    }
+
+    @Override
+    public E poll() {
+        if (count.get() == 0) return null;
+        E e;
+        int c;
+        takeLock.lock();
+        try {
+            if (count.get() == 0) return null;
+            e = dequeue();
+            c = count.getAndDecrement();
+            if (c > 1) notEmpty.signal();
+        } finally {
+            takeLock.unlock();
+        }
+        if (c >= capacity) signalNotFull();
+        return e;
+    }
+
+    @Override
+    public E peek() {
+        if (count.get() == 0) return null;
+        takeLock.lock();
+        try {
+            Node<E> first = head.next;
+            return first == null ? null : first.item;
+        } finally {
+            takeLock.unlock();
+        }
+    }
+
+    @Override
+    public int size() {
+        return count.get();
+    }
+
+    @Override
+    public int remainingCapacity() {
+        return Math.max(0, capacity - count.get());
+    }
+
+    @Override
+    public boolean remove(Object o) {
+        if (o == null) return false;
+        fullyLock();
+        try {
+            for (Node<E> prev = head, node = prev.next; node != null; prev = node, node = node.next) {
+                if (o.equals(node.item)) {
+                    unlink(node, prev);
+                    return true;
+                }
+            }
+            return false;
+        } finally {
+            fullyUnlock();
+        }
+    }
+
+    @Override
+    public boolean contains(Object o) {
+        if (o == null) return false;
+        fullyLock();
+        try {
+            for (Node<E> node = head.next; node != null; node = node.next) {
+                if (o.equals(node.item)) return true;
+            }
+            return false;
+        } finally {
+            fullyUnlock();
+        }
+    }
+
+    @Override
+    public void clear() {
+        fullyLock();
+        try {
+            for (Node<E> node = head.next; node != null; node = node.next) {
+                node.item = null;
+            }
+            head.next = null;
+            last = head;
+            count.set(0);
+            notFull.signalAll();
+        } finally {
+            fullyUnlock();
+        }
+    }
+
+    @Override
+    public int drainTo(Collection<? super E> c) {
+        return drainTo(c, Integer.MAX_VALUE);
+    }
+
+    @Override
+    public int drainTo(Collection<? super E> c, int maxElements) {
+        Objects.requireNonNull(c);
+        if (c == this) throw new IllegalArgumentException();
+        if (maxElements <= 0) return 0;
+        int n = 0;
+        boolean wasFull = false;
+        takeLock.lock();
+        try {
+            int available = Math.min(maxElements, count.get());
+            while (n < available) {
+                c.add(dequeue());
+                n++;
+            }
+            if (n > 0) {
+                wasFull = count.getAndAdd(-n) >= capacity;
+            }
+        } finally {
+            takeLock.unlock();
+        }
+        if (wasFull) signalNotFull();
+        return n;
+    }
+
+    /**
+     * Итератор по снимку содержимого (удаление через итератор не поддерживается)
+     */
+    @Override
+    public Iterator<E> iterator() {
+        fullyLock();
+        try {
+            List<E> snapshot = new ArrayList<>(count.get());
+            for (Node<E> node = head.next; node != null; node = node.next) {
+                snapshot.add(node.item);
+            }
+            return Collections.unmodifiableList(snapshot).iterator();
+        } finally {
+            fullyUnlock();
+        }
+    }
+
+    // Только под putLock
+    private void enqueue(Node<E> node) {
+        last = last.next = node;
+    }
+
+    // Только под takeLock, очередь не пуста
+    private E dequeue() {
+        Node<E> oldHead = head;
+        Node<E> first = oldHead.next;
+        oldHead.next = oldHead; // помогает сборщику мусора
+        head = first;
+        E e = first.item;
+        first.item = null;
+        return e;
+    }
+
+    // Под обеими блокировками
+    private void unlink(Node<E> node, Node<E> prev) {
+        node.item = null;
+        prev.next = node.next;
+        if (last == node) last = prev;
+        if (count.getAndDecrement() >= capacity) notFull.signal();
+    }
+
+    private void signalNotEmpty() {
+        takeLock.lock();
+        try {
+            notEmpty.signal();
+        } finally {
+            takeLock.unlock();
+        }
+    }
+
+    private void signalNotFull() {
+        putLock.lock();
+        try {
+            notFull.signal();
+        } finally {
+            putLock.unlock();
+        }
+    }
+
+    private void fullyLock() {
+        putLock.lock();
+        takeLock.lock();
+    }
+
+    private void fullyUnlock() {
+        takeLock.unlock();
+        putLock.unlock();
+    }
+}
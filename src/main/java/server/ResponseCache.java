@@ -0,0 +1,62 @@
+package server;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+
+/**
+ * Кэш ответов команд, доступных только для чтения.
+ * Ответ считается актуальным, пока не изменилась версия данных (см. StatsCalculator.getVersion)
+ * или пока он не старше допустимого окна устаревания - это позволяет отвечать из кэша
+ * даже тогда, когда версия меняется с каждым сообщением.
+ */
+public class ResponseCache {
+    private static final int MAX_ENTRIES = 1024;
+
+    private final ConcurrentHashMap<String, CachedResponse> cache = new ConcurrentHashMap<>();
+    private final LongSupplier versionSource;
+    private volatile long maxStalenessNanos;
+
+    private static final class CachedResponse {
+        private final long version;
+        private final long createdAt;
+        private final String text;
+
+        private CachedResponse(long version, long createdAt, String text) {
+            this.version = version;
+            this.createdAt = createdAt;
+            this.text = text;
+        }
+    }
+
+    public ResponseCache(LongSupplier versionSource, long maxStalenessMillis) {
+        this.versionSource = versionSource;
+        this.maxStalenessNanos = TimeUnit.MILLISECONDS.toNanos(maxStalenessMillis);
+    }
+
+    public void setMaxStalenessMillis(long maxStalenessMillis) {
+        this.maxStalenessNanos = TimeUnit.MILLISECONDS.toNanos(maxStalenessMillis);
+    }
+
+    /**
+     * Возвращает актуальный ответ из кэша или строит новый
+     */
+    public String get(String key, Supplier<String> builder) {
+        // Версию читаем до построения ответа: изменения во время построения сделают его устаревшим
+        long version = versionSource.getAsLong();
+        long now = System.nanoTime();
+
+        CachedResponse cached = cache.get(key);
+        if (cached != null && (cached.version == version || now - cached.createdAt <= maxStalenessNanos)) {
+            return cached.text;
+        }
+
+        String text = builder.get();
+        if (cache.size() >= MAX_ENTRIES) {
+            cache.clear(); // Простое ограничение размера: ключи - команды и имена пользователей
+        }
+        cache.put(key, new CachedResponse(version, now, text));
+        return text;
+    }
+}
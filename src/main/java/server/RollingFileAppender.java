@@ -0,0 +1,74 @@
+package server;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Запись лога в файл с ротацией по размеру: server.log → server.log.1 → ... → server.log.N.
+ * Используется только потоком AsyncLogWriter, поэтому не синхронизирован.
+ */
+public class RollingFileAppender {
+    private final Path file;
+    private final long maxBytes;
+    private final int maxFiles;
+    private OutputStream out;
+    private long size;
+
+    public RollingFileAppender(Path file, long maxBytes, int maxFiles) throws IOException {
+        this.file = file;
+        this.maxBytes = maxBytes;
+        this.maxFiles = Math.max(1, maxFiles);
+        Path parent = file.toAbsolutePath().getParent();
+        if (parent != null) {
+            Files.createDirectories(parent);
+        }
+        open();
+    }
+
+    private void open() throws IOException {
+        out = new BufferedOutputStream(Files.newOutputStream(file,
+            StandardOpenOption.CREATE, StandardOpenOption.APPEND), 64 * 1024);
+        size = Files.size(file);
+    }
+
+    public void write(CharSequence text) throws IOException {
+        byte[] bytes = text.toString().getBytes(StandardCharsets.UTF_8);
+        if (size > 0 && size + bytes.length > maxBytes) {
+            roll();
+        }
+        out.write(bytes);
+        size += bytes.length;
+    }
+
+    public void flush() throws IOException {
+        out.flush();
+    }
+
+    private void roll() throws IOException {
+        out.close();
+        Path oldest = archive(maxFiles);
+        Files.deleteIfExists(oldest);
+        for (int i = maxFiles - 1; i >= 1; i--) {
+            Path source = archive(i);
+            if (Files.exists(source)) {
+                Files.move(source, archive(i + 1), StandardCopyOption.REPLACE_EXISTING);
+            }
+        }
+        Files.move(file, archive(1), StandardCopyOption.REPLACE_EXISTING);
+        open();
+    }
+
+    private Path archive(int index) {
+        return file.resolveSibling(file.getFileName() + "." + index);
+    }
+
+    public void close() throws IOException {
+        out.close();
+    }
+}
@@ -2,38 +2,120 @@ package server;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Properties;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.CopyOnWriteArrayList;
 
+/**
+ * Конфигурация сервера.
+ * Значения берутся из server.properties в classpath, затем из внешнего файла
+ * (-Dserver.config.file=путь) и системных свойств -Dserver.*. Разобранные значения хранятся
+ * в неизменяемом снимке, геттеры только читают его поля.
+ *
+ * Внешний файл отслеживается через WatchService: новая версия проверяется целиком и
+ * либо применяется, либо отклоняется с сохранением прежних значений. Компоненты узнают
+ * об изменениях через Listener; ключи, которые нельзя применить на ходу, требуют перезапуска.
+ */
 public class ServerConfig {
-    private static ServerConfig instance;
-    private final Properties properties = new Properties();
-    
+    private static volatile ServerConfig instance;
+
     // Параметры по умолчанию
     private static final int DEFAULT_PORT = 12345;
     private static final int DEFAULT_MAX_CLIENTS = 100;
     private static final int DEFAULT_MESSAGE_QUEUE_SIZE = 1000;
-    private static final int DEFAULT_THREAD_POOL_SIZE = 50;
+    private static final int DEFAULT_ANALYTICS_QUEUE_SIZE = 500;
+    private static final int DEFAULT_THREAD_POOL_SIZE = 4;
     private static final long DEFAULT_CLIENT_TIMEOUT = 300000; // 5 минут
     private static final boolean DEFAULT_LOGGING_ENABLED = true;
+    private static final int DEFAULT_RATE_LIMIT_PER_MINUTE = 60;
     private static final int DEFAULT_REPORT_INTERVAL_MINUTES = 1;
     private static final int DEFAULT_MONITOR_INTERVAL_SECONDS = 5;
-    
+    private static final int DEFAULT_CHECKPOINT_INTERVAL_SECONDS = 60;
+    private static final long DEFAULT_RESPONSE_CACHE_STALENESS_MS = 1000;
+    private static final int DEFAULT_COMMAND_QUEUE_SIZE = 100;
+    private static final int DEFAULT_COMMANDS_PER_USER = 2;
+    private static final long DEFAULT_COMMAND_TIMEOUT_MS = 2000;
+    private static final int DEFAULT_METRICS_PORT = 9100;
+    private static final String DEFAULT_METRICS_HOST = "127.0.0.1";
+    private static final int DEFAULT_LOG_BUFFER_SIZE = 8192;
+    private static final int DEFAULT_LOG_FILE_MAX_SIZE_MB = 10;
+    private static final int DEFAULT_LOG_FILE_MAX_FILES = 5;
+    private static final long DEFAULT_ADAPTIVE_INTERVAL_MS = 500;
+    private static final long DEFAULT_PRESENCE_TICK_MS = 1000;
+    private static final int DEFAULT_PRESENCE_NAMES_SHOWN = 5;
+    private static final int DEFAULT_PRESENCE_COUNTS_THRESHOLD = 50;
+    private static final long DEFAULT_SESSION_RESUME_GRACE_MS = 30000;
+    private static final int DEFAULT_SESSION_BACKLOG = 100;
+    private static final long DEFAULT_FANOUT_STALL_MS = 1000;
+    private static final int DEFAULT_SENDER_WORKERS_MAX = 4;
+    private static final int DEFAULT_ADAPTIVE_GROW_DEPTH = 100;
+    private static final int DEFAULT_ADAPTIVE_SHRINK_DEPTH = 10;
+    private static final long DEFAULT_ADAPTIVE_GROW_LAG_MS = 50;
+    private static final int DEFAULT_ADAPTIVE_GROW_TICKS = 2;
+    private static final int DEFAULT_ADAPTIVE_SHRINK_TICKS = 20;
+
+    /**
+     * Ключи, которые читаются только при старте: их изменение требует перезапуска
+     */
+    private static final Set<String> RESTART_REQUIRED = Collections.unmodifiableSet(new HashSet<>(Arrays.asList(
+        "server.name", "server.port", "server.max.clients",
+        "server.analytics.enabled", "server.analytics.workers",
+        "server.analytics.checkpoint.file", "server.analytics.checkpoint.interval.seconds",
+        "server.command.processor.enabled", "server.metrics.enabled", "server.metrics.host", "server.metrics.port",
+        "server.logging.buffer.size", "server.logging.overflow", "server.logging.file",
+        "server.logging.file.max.size.mb", "server.logging.file.max.files", "server.warmup.messages")));
+
+    /**
+     * Подписчик на изменения конфигурации (вызывается в потоке наблюдателя)
+     */
+    public interface Listener {
+        void configChanged(Snapshot previous, Snapshot current);
+    }
+
+    private final Path configFile; // null - только classpath и системные свойства
+    private final List<Listener> listeners = new CopyOnWriteArrayList<>();
+    private volatile Snapshot snapshot;
+    private Thread watcherThread;
+    private WatchService watchService;
+
     private ServerConfig() {
-        loadConfiguration();
+        String external = System.getProperty("server.config.file", "").trim();
+        this.configFile = external.isEmpty() ? null : Paths.get(external).toAbsolutePath();
+        this.snapshot = new Snapshot(loadProperties());
     }
-    
+
     public static ServerConfig getInstance() {
-        if (instance == null) {
+        ServerConfig config = instance;
+        if (config == null) {
             synchronized (ServerConfig.class) {
-                if (instance == null) {
-                    instance = new ServerConfig();
+                config = instance;
+                if (config == null) {
+                    config = new ServerConfig();
+                    instance = config;
                 }
             }
         }
-        return instance;
+        return config;
     }
-    
-    private void loadConfiguration() {
+
+    private Properties loadProperties() {
+        Properties properties = new Properties();
         try (InputStream input = getClass().getClassLoader().getResourceAsStream("server.properties")) {
             if (input != null) {
                 properties.load(input);
@@ -44,53 +126,577 @@ public class ServerConfig {
             Logger.warn("Ошибка при загрузке конфигурации, используются значения по умолчанию");
             Logger.error("IOException при загрузке конфигурации", e);
         }
+
+        // Внешний файл переопределяет значения из classpath
+        if (configFile != null) {
+            if (Files.exists(configFile)) {
+                try (InputStream input = Files.newInputStream(configFile)) {
+                    properties.load(input);
+                } catch (IOException e) {
+                    Logger.error("Ошибка при чтении файла конфигурации " + configFile, e);
+                }
+            } else {
+                Logger.warn("Файл конфигурации " + configFile + " не найден");
+            }
+        }
+
+        // Системные свойства -Dserver.* переопределяют файл (запуск тестов и профилей Maven)
+        for (String key : System.getProperties().stringPropertyNames()) {
+            if (key.startsWith("server.")) {
+                properties.setProperty(key, System.getProperty(key));
+            }
+        }
+        return properties;
+    }
+
+    // ================= ГОРЯЧАЯ ПЕРЕЗАГРУЗКА =================
+
+    public void addListener(Listener listener) {
+        listeners.add(listener);
+    }
+
+    public void removeListener(Listener listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * Перечитывает конфигурацию. Некорректная конфигурация отклоняется целиком.
+     * @return true, если значения изменились и были применены
+     */
+    public synchronized boolean reload() {
+        Snapshot next;
+        try {
+            next = new Snapshot(loadProperties());
+        } catch (IllegalArgumentException e) {
+            Logger.warn("ServerConfig", "Новая конфигурация отклонена, действуют прежние значения: " + e.getMessage());
+            return false;
+        }
+
+        Snapshot previous = snapshot;
+        Set<String> changed = previous.changedKeys(next);
+        if (changed.isEmpty()) {
+            return false;
+        }
+        snapshot = next;
+
+        Set<String> restart = new TreeSet<>(changed);
+        restart.retainAll(RESTART_REQUIRED);
+        changed.removeAll(RESTART_REQUIRED);
+        if (!changed.isEmpty()) {
+            Logger.info("ServerConfig", "Применены изменения конфигурации: " + changed);
+        }
+        if (!restart.isEmpty()) {
+            Logger.warn("ServerConfig", "Изменения вступят в силу после перезапуска: " + restart);
+        }
+        for (Listener listener : listeners) {
+            try {
+                listener.configChanged(previous, next);
+            } catch (RuntimeException e) {
+                Logger.error("ServerConfig", "Ошибка при применении конфигурации", e);
+            }
+        }
+        return true;
     }
-    
+
+    /**
+     * Запускает наблюдение за внешним файлом конфигурации (если он задан)
+     */
+    public synchronized void startWatching() {
+        if (configFile == null || watcherThread != null) return;
+        Path directory = configFile.getParent();
+        try {
+            watchService = directory.getFileSystem().newWatchService();
+            directory.register(watchService, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
+        } catch (IOException e) {
+            Logger.error("ServerConfig", "Не удалось отслеживать файл конфигурации " + configFile, e);
+            return;
+        }
+        watcherThread = new Thread(this::watch, "ServerConfig-Watcher");
+        watcherThread.setDaemon(true);
+        watcherThread.start();
+        Logger.info("ServerConfig", "Отслеживаются изменения " + configFile);
+    }
+
+    public synchronized void stopWatching() {
+        if (watchService != null) {
+            try {
+                watchService.close();
+            } catch (IOException e) {
+                Logger.error("ServerConfig", "Ошибка при остановке наблюдения за конфигурацией", e);
+            }
+            watchService = null;
+            watcherThread = null;
+        }
+    }
+
+    private void watch() {
+        WatchService service = watchService;
+        Path fileName = configFile.getFileName();
+        try {
+            while (true) {
+                WatchKey key = service.take();
+                boolean relevant = false;
+                for (WatchEvent<?> event : key.pollEvents()) {
+                    relevant |= fileName.equals(event.context());
+                }
+                key.reset();
+                if (!relevant) continue;
+
+                // Редакторы сохраняют файл в несколько шагов - ждем, пока запись закончится
+                Thread.sleep(200);
+                WatchKey pending;
+                while ((pending = service.poll()) != null) {
+                    pending.pollEvents();
+                    pending.reset();
+                }
+                reload();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ClosedWatchServiceException e) {
+            // наблюдение остановлено
+        }
+    }
+
+    public Snapshot getSnapshot() {
+        return snapshot;
+    }
+
+    /**
+     * Внешний файл конфигурации, null - не задан
+     */
+    public Path getConfigFile() {
+        return configFile;
+    }
+
+    // ================= ГЕТТЕРЫ =================
+
     public int getPort() {
-        return Integer.parseInt(properties.getProperty("server.port", String.valueOf(DEFAULT_PORT)));
+        return snapshot.getPort();
     }
-    
+
     public int getMaxClients() {
-        return Integer.parseInt(properties.getProperty("server.max.clients", String.valueOf(DEFAULT_MAX_CLIENTS)));
+        return snapshot.getMaxClients();
     }
-    
+
+    /**
+     * Емкость входящей и исходящей очередей брокера
+     */
     public int getMessageQueueSize() {
-        return Integer.parseInt(properties.getProperty("server.message.queue.size", String.valueOf(DEFAULT_MESSAGE_QUEUE_SIZE)));
+        return snapshot.getMessageQueueSize();
+    }
+
+    public int getAnalyticsQueueSize() {
+        return snapshot.getAnalyticsQueueSize();
     }
-    
+
+    /**
+     * Количество потоков полосы выполнения команд
+     */
     public int getThreadPoolSize() {
-        return Integer.parseInt(properties.getProperty("server.thread.pool.size", String.valueOf(DEFAULT_THREAD_POOL_SIZE)));
+        return snapshot.getThreadPoolSize();
     }
-    
+
+    /**
+     * Время неактивности пользователя (мс), после которого он не считается активным
+     */
     public long getClientTimeout() {
-        return Long.parseLong(properties.getProperty("server.client.timeout", String.valueOf(DEFAULT_CLIENT_TIMEOUT)));
+        return snapshot.getClientTimeout();
     }
-    
+
     public boolean isLoggingEnabled() {
-        return Boolean.parseBoolean(properties.getProperty("server.logging.enabled", String.valueOf(DEFAULT_LOGGING_ENABLED)));
+        return snapshot.isLoggingEnabled();
     }
-    
+
+    /**
+     * Сообщений в минуту от одного пользователя
+     */
+    public int getRateLimitPerMinute() {
+        return snapshot.getRateLimitPerMinute();
+    }
+
     public int getReportIntervalMinutes() {
-        return Integer.parseInt(properties.getProperty("server.report.interval.minutes", String.valueOf(DEFAULT_REPORT_INTERVAL_MINUTES)));
+        return snapshot.getReportIntervalMinutes();
     }
-    
+
     public int getMonitorIntervalSeconds() {
-        return Integer.parseInt(properties.getProperty("server.monitor.interval.seconds", String.valueOf(DEFAULT_MONITOR_INTERVAL_SECONDS)));
+        return snapshot.getMonitorIntervalSeconds();
     }
-    
+
     public String getServerName() {
-        return properties.getProperty("server.name", "NetChat Server");
+        return snapshot.getServerName();
     }
-    
+
     public boolean isAnalyticsEnabled() {
-        return Boolean.parseBoolean(properties.getProperty("server.analytics.enabled", "true"));
+        return snapshot.isAnalyticsEnabled();
+    }
+
+    /**
+     * Количество воркеров аналитики, 0 - по числу доступных ядер
+     */
+    public int getAnalyticsWorkers() {
+        return snapshot.getAnalyticsWorkers();
     }
-    
+
+    /**
+     * Файл снимка статистики, пустая строка - снимки отключены
+     */
+    public String getCheckpointFile() {
+        return snapshot.getCheckpointFile();
+    }
+
+    public int getCheckpointIntervalSeconds() {
+        return snapshot.getCheckpointIntervalSeconds();
+    }
+
+    /**
+     * Сколько миллисекунд ответ команды может отдаваться из кэша после изменения статистики
+     */
+    public long getResponseCacheStalenessMillis() {
+        return snapshot.getResponseCacheStalenessMillis();
+    }
+
+    public int getCommandQueueSize() {
+        return snapshot.getCommandQueueSize();
+    }
+
+    public int getCommandsPerUser() {
+        return snapshot.getCommandsPerUser();
+    }
+
+    public long getCommandTimeoutMillis() {
+        return snapshot.getCommandTimeoutMillis();
+    }
+
+    /**
+     * HTTP-эндпоинт /metrics в формате Prometheus
+     */
+    public boolean isMetricsEnabled() {
+        return snapshot.isMetricsEnabled();
+    }
+
+    public String getMetricsHost() {
+        return snapshot.getMetricsHost();
+    }
+
+    public int getMetricsPort() {
+        return snapshot.getMetricsPort();
+    }
+
+    /**
+     * Пользователи с доступом к /admin (через запятую)
+     */
+    public Set<String> getAdminUsers() {
+        return snapshot.getAdminUsers();
+    }
+
+    /**
+     * Пароль для /admin login; пустой - команда /admin отключена
+     */
+    public String getAdminSecret() {
+        return snapshot.getAdminSecret();
+    }
+
     public boolean isCommandProcessorEnabled() {
-        return Boolean.parseBoolean(properties.getProperty("server.command.processor.enabled", "true"));
+        return snapshot.isCommandProcessorEnabled();
     }
-    
+
     public String getLogLevel() {
-        return properties.getProperty("server.logging.level", "INFO");
+        return snapshot.getLogLevel().name();
+    }
+
+    /**
+     * Размер кольцевого буфера асинхронного лога (записей)
+     */
+    public int getLogBufferSize() {
+        return snapshot.getLogBufferSize();
+    }
+
+    /**
+     * Поведение при заполненном буфере лога: DROP - отбросить запись, BLOCK - ждать
+     */
+    public String getLogOverflowPolicy() {
+        return snapshot.getLogOverflowPolicy().name();
+    }
+
+    /**
+     * Файл лога, пустая строка - только консоль
+     */
+    public String getLogFile() {
+        return snapshot.getLogFile();
+    }
+
+    public long getLogFileMaxBytes() {
+        return snapshot.getLogFileMaxBytes();
+    }
+
+    public int getLogFileMaxFiles() {
+        return snapshot.getLogFileMaxFiles();
+    }
+
+    /**
+     * Сообщений синтетической нагрузки перед приемом подключений, 0 - без прогрева
+     */
+    public int getWarmupMessages() {
+        return snapshot.getWarmupMessages();
+    }
+
+    /**
+     * Неизменяемый разобранный и проверенный набор значений
+     */
+    public static final class Snapshot {
+        private final Map<String, String> values;
+        private final int port;
+        private final int maxClients;
+        private final int messageQueueSize;
+        private final int analyticsQueueSize;
+        private final int threadPoolSize;
+        private final long clientTimeout;
+        private final boolean loggingEnabled;
+        private final int rateLimitPerMinute;
+        private final int reportIntervalMinutes;
+        private final int monitorIntervalSeconds;
+        private final String serverName;
+        private final boolean analyticsEnabled;
+        private final int analyticsWorkers;
+        private final String checkpointFile;
+        private final int checkpointIntervalSeconds;
+        private final long responseCacheStalenessMillis;
+        private final int commandQueueSize;
+        private final int commandsPerUser;
+        private final long commandTimeoutMillis;
+        private final boolean metricsEnabled;
+        private final String metricsHost;
+        private final int metricsPort;
+        private final Set<String> adminUsers;
+        private final String adminSecret;
+        private final boolean commandProcessorEnabled;
+        private final Logger.LogLevel logLevel;
+        private final int logBufferSize;
+        private final AsyncLogWriter.OverflowPolicy logOverflowPolicy;
+        private final String logFile;
+        private final long logFileMaxBytes;
+        private final int logFileMaxFiles;
+        private final int warmupMessages;
+        private final long presenceTickMillis;
+        private final int presenceNamesShown;
+        private final int presenceCountsThreshold;
+        private final long sessionResumeGraceMillis;
+        private final int sessionBacklog;
+        private final FanOutSender.OverflowPolicy fanOutOverflow;
+        private final MessageBroker.AnalyticsOverflow analyticsOverflow;
+        private final long fanOutStallMillis;
+        private final boolean adaptiveEnabled;
+        private final long adaptiveIntervalMillis;
+        private final int senderWorkersMin;
+        private final int senderWorkersMax;
+        private final int analyticsWorkersMin;
+        private final int analyticsWorkersMax;
+        private final int adaptiveGrowDepth;
+        private final int adaptiveShrinkDepth;
+        private final long adaptiveGrowLagMillis;
+        private final int adaptiveGrowTicks;
+        private final int adaptiveShrinkTicks;
+
+        /**
+         * @throws IllegalArgumentException если значение некорректно (сообщение называет ключ)
+         */
+        Snapshot(Properties properties) {
+            Map<String, String> raw = new TreeMap<>();
+            for (String key : properties.stringPropertyNames()) {
+                raw.put(key, properties.getProperty(key).trim());
+            }
+            this.values = Collections.unmodifiableMap(raw);
+
+            this.port = intValue("server.port", DEFAULT_PORT, 1, 65535);
+            this.maxClients = intValue("server.max.clients", DEFAULT_MAX_CLIENTS, 1, 100_000);
+            this.messageQueueSize = intValue("server.message.queue.size", DEFAULT_MESSAGE_QUEUE_SIZE, 1, 10_000_000);
+            this.analyticsQueueSize = intValue("server.analytics.queue.size", DEFAULT_ANALYTICS_QUEUE_SIZE, 1, 10_000_000);
+            this.threadPoolSize = intValue("server.thread.pool.size", DEFAULT_THREAD_POOL_SIZE, 1, 1024);
+            this.clientTimeout = longValue("server.client.timeout", DEFAULT_CLIENT_TIMEOUT, 1000);
+            this.loggingEnabled = booleanValue("server.logging.enabled", DEFAULT_LOGGING_ENABLED);
+            this.rateLimitPerMinute = intValue("server.rate.limit.per.minute", DEFAULT_RATE_LIMIT_PER_MINUTE, 1, 1_000_000);
+            this.reportIntervalMinutes = intValue("server.report.interval.minutes", DEFAULT_REPORT_INTERVAL_MINUTES, 1, 24 * 60);
+            this.monitorIntervalSeconds = intValue("server.monitor.interval.seconds", DEFAULT_MONITOR_INTERVAL_SECONDS, 1, 3600);
+            this.serverName = raw.getOrDefault("server.name", "NetChat Server");
+            this.analyticsEnabled = booleanValue("server.analytics.enabled", true);
+            int workers = intValue("server.analytics.workers", 0, 0, 1024);
+            this.analyticsWorkers = workers > 0 ? workers : Runtime.getRuntime().availableProcessors();
+            this.checkpointFile = raw.getOrDefault("server.analytics.checkpoint.file", "data/stats.bin");
+            this.checkpointIntervalSeconds = intValue("server.analytics.checkpoint.interval.seconds",
+                DEFAULT_CHECKPOINT_INTERVAL_SECONDS, 1, 24 * 3600);
+            this.responseCacheStalenessMillis = longValue("server.commands.cache.staleness.ms", DEFAULT_RESPONSE_CACHE_STALENESS_MS, 0);
+            this.commandQueueSize = intValue("server.commands.queue.size", DEFAULT_COMMAND_QUEUE_SIZE, 1, 1_000_000);
+            this.commandsPerUser = intValue("server.commands.per.user", DEFAULT_COMMANDS_PER_USER, 1, 1000);
+            this.commandTimeoutMillis = longValue("server.commands.timeout.ms", DEFAULT_COMMAND_TIMEOUT_MS, 1);
+            this.metricsEnabled = booleanValue("server.metrics.enabled", false);
+            String host = raw.getOrDefault("server.metrics.host", "").trim();
+            this.metricsHost = host.isEmpty() ? DEFAULT_METRICS_HOST : host;
+            this.metricsPort = intValue("server.metrics.port", DEFAULT_METRICS_PORT, 1, 65535);
+            Set<String> admins = new HashSet<>();
+            for (String name : raw.getOrDefault("server.admin.users", "").split(",")) {
+                if (!name.trim().isEmpty()) {
+                    admins.add(name.trim());
+                }
+            }
+            this.adminUsers = Collections.unmodifiableSet(admins);
+            this.adminSecret = raw.getOrDefault("server.admin.secret", "").trim();
+            this.commandProcessorEnabled = booleanValue("server.command.processor.enabled", true);
+            this.logLevel = enumValue("server.logging.level", Logger.LogLevel.class, Logger.LogLevel.INFO);
+            this.logBufferSize = intValue("server.logging.buffer.size", DEFAULT_LOG_BUFFER_SIZE, 2, 1 << 24);
+            this.logOverflowPolicy = enumValue("server.logging.overflow", AsyncLogWriter.OverflowPolicy.class,
+                AsyncLogWriter.OverflowPolicy.DROP);
+            this.logFile = raw.getOrDefault("server.logging.file", "");
+            this.logFileMaxBytes = intValue("server.logging.file.max.size.mb", DEFAULT_LOG_FILE_MAX_SIZE_MB, 1, 1 << 20) * 1024L * 1024;
+            this.logFileMaxFiles = intValue("server.logging.file.max.files", DEFAULT_LOG_FILE_MAX_FILES, 1, 1000);
+            this.warmupMessages = intValue("server.warmup.messages", 0, 0, 10_000_000);
+            this.presenceTickMillis = longValue("server.presence.tick.ms", DEFAULT_PRESENCE_TICK_MS, 0, 60_000);
+            this.presenceNamesShown = intValue("server.presence.names.shown", DEFAULT_PRESENCE_NAMES_SHOWN, 1, 1000);
+            this.presenceCountsThreshold = intValue("server.presence.counts.threshold",
+                DEFAULT_PRESENCE_COUNTS_THRESHOLD, 1, 1_000_000);
+            this.sessionResumeGraceMillis = longValue("server.session.resume.grace.ms",
+                DEFAULT_SESSION_RESUME_GRACE_MS, 0, 3_600_000);
+            this.sessionBacklog = intValue("server.session.backlog", DEFAULT_SESSION_BACKLOG, 0, 100_000);
+            this.fanOutOverflow = enumValue("server.fanout.overflow", FanOutSender.OverflowPolicy.class,
+                FanOutSender.OverflowPolicy.DISCONNECT);
+            this.fanOutStallMillis = longValue("server.fanout.stall.ms", DEFAULT_FANOUT_STALL_MS, 10, 60_000);
+            this.analyticsOverflow = enumValue("server.analytics.overflow", MessageBroker.AnalyticsOverflow.class,
+                MessageBroker.AnalyticsOverflow.BLOCK);
+            this.adaptiveEnabled = booleanValue("server.adaptive.enabled", true);
+            this.adaptiveIntervalMillis = longValue("server.adaptive.interval.ms", DEFAULT_ADAPTIVE_INTERVAL_MS, 50, 60_000);
+            this.senderWorkersMin = intValue("server.sender.workers.min", 1, 1, 256);
+            this.senderWorkersMax = intValue("server.sender.workers.max", DEFAULT_SENDER_WORKERS_MAX, 1, 256);
+            requireOrdered("server.sender.workers.min", senderWorkersMin, "server.sender.workers.max", senderWorkersMax);
+            this.analyticsWorkersMin = intValue("server.analytics.workers.min", 1, 1, 1024);
+            int maxWorkers = intValue("server.analytics.workers.max", 0, 0, 1024);
+            this.analyticsWorkersMax = maxWorkers > 0 ? maxWorkers : Math.max(analyticsWorkers, analyticsWorkersMin);
+            requireOrdered("server.analytics.workers.min", analyticsWorkersMin, "server.analytics.workers.max", analyticsWorkersMax);
+            this.adaptiveShrinkDepth = intValue("server.adaptive.shrink.depth", DEFAULT_ADAPTIVE_SHRINK_DEPTH, 0, 10_000_000);
+            this.adaptiveGrowDepth = intValue("server.adaptive.grow.depth", DEFAULT_ADAPTIVE_GROW_DEPTH, 1, 10_000_000);
+            if (adaptiveShrinkDepth >= adaptiveGrowDepth) {
+                throw new IllegalArgumentException("server.adaptive.shrink.depth (" + adaptiveShrinkDepth
+                    + ") должен быть меньше server.adaptive.grow.depth (" + adaptiveGrowDepth + ")");
+            }
+            this.adaptiveGrowLagMillis = longValue("server.adaptive.grow.lag.ms", DEFAULT_ADAPTIVE_GROW_LAG_MS, 1);
+            this.adaptiveGrowTicks = intValue("server.adaptive.grow.ticks", DEFAULT_ADAPTIVE_GROW_TICKS, 1, 1000);
+            this.adaptiveShrinkTicks = intValue("server.adaptive.shrink.ticks", DEFAULT_ADAPTIVE_SHRINK_TICKS, 1, 100_000);
+        }
+
+        private static void requireOrdered(String minKey, int min, String maxKey, int max) {
+            if (min > max) {
+                throw new IllegalArgumentException(minKey + " (" + min + ") больше " + maxKey + " (" + max + ")");
+            }
+        }
+
+        private int intValue(String key, int defaultValue, int min, int max) {
+            return (int) longValue(key, defaultValue, min, max);
+        }
+
+        private long longValue(String key, long defaultValue, long min) {
+            return longValue(key, defaultValue, min, Long.MAX_VALUE);
+        }
+
+        private long longValue(String key, long defaultValue, long min, long max) {
+            String value = values.get(key);
+            if (value == null || value.isEmpty()) return defaultValue;
+            long parsed;
+            try {
+                parsed = Long.parseLong(value);
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException(key + ": ожидается число, получено '" + value + "'");
+            }
+            if (parsed < min || parsed > max) {
+                throw new IllegalArgumentException(key + ": значение " + parsed + " вне диапазона ["
+                    + min + ", " + (max == Long.MAX_VALUE ? "∞" : String.valueOf(max)) + "]");
+            }
+            return parsed;
+        }
+
+        private boolean booleanValue(String key, boolean defaultValue) {
+            String value = values.get(key);
+            if (value == null || value.isEmpty()) return defaultValue;
+            if (!value.equalsIgnoreCase("true") && !value.equalsIgnoreCase("false")) {
+                throw new IllegalArgumentException(key + ": ожидается true или false, получено '" + value + "'");
+            }
+            return Boolean.parseBoolean(value);
+        }
+
+        private <E extends Enum<E>> E enumValue(String key, Class<E> type, E defaultValue) {
+            String value = values.get(key);
+            if (value == null || value.isEmpty()) return defaultValue;
+            try {
+                return Enum.valueOf(type, value.toUpperCase());
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException(key + ": недопустимое значение '" + value + "', ожидается одно из "
+                    + Arrays.toString(type.getEnumConstants()));
+            }
+        }
+
+        /**
+         * Ключи, значения которых отличаются в двух снимках
+         */
+        Set<String> changedKeys(Snapshot other) {
+            Set<String> keys = new TreeSet<>(values.keySet());
+            keys.addAll(other.values.keySet());
+            Set<String> changed = new TreeSet<>();
+            for (String key : keys) {
+                if (!Objects.equals(values.get(key), other.values.get(key))) {
+                    changed.add(key);
+                }
+            }
+            return changed;
+        }
+
+        public int getPort() { return port; }
+        public int getMaxClients() { return maxClients; }
+        public int getMessageQueueSize() { return messageQueueSize; }
+        public int getAnalyticsQueueSize() { return analyticsQueueSize; }
+        public int getThreadPoolSize() { return threadPoolSize; }
+        public long getClientTimeout() { return clientTimeout; }
+        public boolean isLoggingEnabled() { return loggingEnabled; }
+        public int getRateLimitPerMinute() { return rateLimitPerMinute; }
+        public int getReportIntervalMinutes() { return reportIntervalMinutes; }
+        public int getMonitorIntervalSeconds() { return monitorIntervalSeconds; }
+        public String getServerName() { return serverName; }
+        public boolean isAnalyticsEnabled() { return analyticsEnabled; }
+        public int getAnalyticsWorkers() { return analyticsWorkers; }
+        public String getCheckpointFile() { return checkpointFile; }
+        public int getCheckpointIntervalSeconds() { return checkpointIntervalSeconds; }
+        public long getResponseCacheStalenessMillis() { return responseCacheStalenessMillis; }
+        public int getCommandQueueSize() { return commandQueueSize; }
+        public int getCommandsPerUser() { return commandsPerUser; }
+        public long getCommandTimeoutMillis() { return commandTimeoutMillis; }
+        public boolean isMetricsEnabled() { return metricsEnabled; }
+        public String getMetricsHost() { return metricsHost; }
+        public int getMetricsPort() { return metricsPort; }
+        public Set<String> getAdminUsers() { return adminUsers; }
+        public String getAdminSecret() { return adminSecret; }
+        public boolean isCommandProcessorEnabled() { return commandProcessorEnabled; }
+        public Logger.LogLevel getLogLevel() { return logLevel; }
+        public int getLogBufferSize() { return logBufferSize; }
+        public AsyncLogWriter.OverflowPolicy getLogOverflowPolicy() { return logOverflowPolicy; }
+        public String getLogFile() { return logFile; }
+        public long getLogFileMaxBytes() { return logFileMaxBytes; }
+        public int getLogFileMaxFiles() { return logFileMaxFiles; }
+        public int getWarmupMessages() { return warmupMessages; }
+        public long getPresenceTickMillis() { return presenceTickMillis; }
+        public int getPresenceNamesShown() { return presenceNamesShown; }
+        public int getPresenceCountsThreshold() { return presenceCountsThreshold; }
+        public long getSessionResumeGraceMillis() { return sessionResumeGraceMillis; }
+        public int getSessionBacklog() { return sessionBacklog; }
+        public FanOutSender.OverflowPolicy getFanOutOverflow() { return fanOutOverflow; }
+        public long getFanOutStallMillis() { return fanOutStallMillis; }
+        public MessageBroker.AnalyticsOverflow getAnalyticsOverflow() { return analyticsOverflow; }
+        public boolean isAdaptiveEnabled() { return adaptiveEnabled; }
+        public long getAdaptiveIntervalMillis() { return adaptiveIntervalMillis; }
+        public int getSenderWorkersMin() { return senderWorkersMin; }
+        public int getSenderWorkersMax() { return senderWorkersMax; }
+        public int getAnalyticsWorkersMin() { return analyticsWorkersMin; }
+        public int getAnalyticsWorkersMax() { return analyticsWorkersMax; }
+        public int getAdaptiveGrowDepth() { return adaptiveGrowDepth; }
+        public int getAdaptiveShrinkDepth() { return adaptiveShrinkDepth; }
+        public long getAdaptiveGrowLagMillis() { return adaptiveGrowLagMillis; }
+        public int getAdaptiveGrowTicks() { return adaptiveGrowTicks; }
+        public int getAdaptiveShrinkTicks() { return adaptiveShrinkTicks; }
     }
-}
\ No newline at end of file
+}
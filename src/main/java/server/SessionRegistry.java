@@ -0,0 +1,287 @@
+package server;
+
+import java.security.SecureRandom;
+import java.util.ArrayDeque;
+import java.util.Base64;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import common.ChatMessage;
+
+/**
+ * Единый реестр сессий пользователей: имя -> сессия и компактный номер -> сессия.
+ * Имена уникальны: второй вход под занятым именем отклоняется, а не затирает
+ * существующую сессию. Номера сессий переиспользуются после выхода, поэтому
+ * остаются маленькими и годятся как индексы (например, для шардов рассылки).
+ * Поиск и обход без блокировок; регистрация и удаление - короткая блокировка, O(1).
+ * Каждая сессия получает случайный токен восстановления: после обрыва связи сессия
+ * остается "отключенной" и копит сообщения, пока клиент не вернется с токеном.
+ * Токен действует только для отключенной сессии и заменяется новым после каждого восстановления.
+ */
+public class SessionRegistry {
+    private static final int INITIAL_CAPACITY = 64;
+    private static final int TOKEN_BYTES = 18; // 24 символа в base64
+    private static final SecureRandom TOKEN_RANDOM = new SecureRandom();
+
+    /**
+     * Сессия пользователя. Переживает обрыв соединения: без обработчика (handler == null)
+     * сообщения копятся в небольшом буфере и отдаются новому подключению по порядку.
+     */
+    public static final class Session {
+        private final int id;
+        private final String username;
+        private volatile String resumeToken; // меняется под блокировкой реестра (rotateToken)
+        private final UserRateLimiter rateLimiter;
+        private volatile ClientHandler handler; // null - сессия отключена и ждет переподключения
+        private volatile long lastActivityMillis;
+        private volatile boolean admin; // подтвердила server.admin.secret командой /admin login
+
+        // Состояние отключенной сессии, под блокировкой сессии
+        private final ArrayDeque<ChatMessage> backlog = new ArrayDeque<>();
+        private int dropped;     // вытеснено из буфера с момента отключения
+        private long detaches;   // номер отключения, чтобы устаревший таймер не закрыл сессию
+        private boolean closed;  // сессия удалена, восстановить нельзя
+
+        private Session(int id, String username, String resumeToken, ClientHandler handler, UserRateLimiter rateLimiter) {
+            this.id = id;
+            this.username = username;
+            this.resumeToken = resumeToken;
+            this.handler = handler;
+            this.rateLimiter = rateLimiter;
+            this.lastActivityMillis = System.currentTimeMillis();
+        }
+
+        /**
+         * Доставить сообщение: подключенному клиенту сразу, отключенной сессии - в буфер
+         * (при переполнении вытесняется самое старое)
+         */
+        public void deliver(ChatMessage message) {
+            ClientHandler current = handler;
+            if (current == null) {
+                synchronized (this) {
+                    current = handler;
+                    if (current == null) {
+                        if (closed) return;
+                        int limit = ServerConfig.getInstance().getSnapshot().getSessionBacklog();
+                        backlog.addLast(message);
+                        while (backlog.size() > limit) {
+                            backlog.pollFirst();
+                            dropped++;
+                        }
+                        return;
+                    }
+                }
+            }
+            current.sendMessage(message);
+        }
+
+        /**
+         * Отключить обработчик; сессия, уже подхваченная другим подключением, не меняется
+         * @return номер отключения или -1, если handler уже не обработчик этой сессии
+         */
+        synchronized long detach(ClientHandler from) {
+            if (closed || handler != from) return -1;
+            handler = null;
+            dropped = 0;
+            return ++detaches;
+        }
+
+        /**
+         * Подключить новый обработчик к отключенной сессии и отдать ему накопленные сообщения
+         * @return число вытесненных из буфера сообщений или -1, если сессия закрыта или подключена
+         */
+        synchronized int attach(ClientHandler to) {
+            if (closed || handler != null) return -1; // живую сессию токеном не перехватить
+            // Пока держим блокировку, новые сообщения ждут и придут после накопленных
+            for (ChatMessage message : backlog) {
+                to.sendMessage(message);
+            }
+            backlog.clear();
+            int lost = dropped;
+            dropped = 0;
+            handler = to;
+            lastActivityMillis = System.currentTimeMillis();
+            return lost;
+        }
+
+        /**
+         * Закрыть сессию, если она все еще отключена с тем же номером (истек срок ожидания)
+         * @param detach номер отключения из detach(), 0 - при любом отключении
+         */
+        synchronized boolean closeIfDetached(long detach) {
+            if (closed || handler != null || (detach != 0 && detach != detaches)) return false;
+            closed = true;
+            backlog.clear();
+            return true;
+        }
+
+        synchronized void close() {
+            closed = true;
+            backlog.clear();
+        }
+
+        /**
+         * Отметить активность пользователя (отправка сообщения или команды)
+         */
+        public void touch() {
+            lastActivityMillis = System.currentTimeMillis();
+        }
+
+        /**
+         * Отметить сессию как администраторскую; действует до закрытия сессии,
+         * новый вход под тем же именем создает сессию без этой отметки
+         */
+        public void grantAdmin() {
+            admin = true;
+        }
+
+        public int getId() { return id; }
+        public String getUsername() { return username; }
+        public String getResumeToken() { return resumeToken; }
+        public ClientHandler getHandler() { return handler; }
+        public boolean isDetached() { return handler == null; }
+        public UserRateLimiter getRateLimiter() { return rateLimiter; }
+        public long getLastActivityMillis() { return lastActivityMillis; }
+        public boolean isAdmin() { return admin; }
+    }
+
+    private final ConcurrentHashMap<String, Session> byName = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, Session> byToken = new ConcurrentHashMap<>();
+    private final Collection<Session> sessionsView = Collections.unmodifiableCollection(byName.values());
+    private final Set<String> usernamesView = Collections.unmodifiableSet(byName.keySet());
+
+    // Номера сессий: массив растет и свободные номера переиспользуются под блокировкой
+    private final Object idLock = new Object();
+    private volatile AtomicReferenceArray<Session> byId = new AtomicReferenceArray<>(INITIAL_CAPACITY);
+    private int[] freeIds = new int[INITIAL_CAPACITY];
+    private int freeCount;
+    private int nextId;
+
+    /**
+     * Зарегистрировать сессию
+     * @return новая сессия или null, если имя уже занято
+     */
+    public Session register(String username, ClientHandler handler, int messagesPerMinute) {
+        if (byName.containsKey(username)) return null;
+        String token = newToken();
+        synchronized (idLock) {
+            if (byName.containsKey(username)) return null;
+            int id = freeCount > 0 ? freeIds[--freeCount] : nextId++;
+            AtomicReferenceArray<Session> slots = byId;
+            if (id >= slots.length()) {
+                AtomicReferenceArray<Session> grown = new AtomicReferenceArray<>(slots.length() * 2);
+                for (int i = 0; i < slots.length(); i++) {
+                    grown.set(i, slots.get(i));
+                }
+                byId = slots = grown;
+            }
+            Session session = new Session(id, username, token, handler, new UserRateLimiter(messagesPerMinute));
+            slots.set(id, session);
+            byName.put(username, session);
+            byToken.put(token, session);
+            return session;
+        }
+    }
+
+    /**
+     * Удалить сессию; сессия, которая уже заменена новой с тем же именем, не трогает новую
+     * @return true, если сессия была зарегистрирована
+     */
+    public boolean unregister(Session session) {
+        synchronized (idLock) {
+            if (!byName.remove(session.username, session)) return false;
+            byToken.remove(session.resumeToken, session);
+            byId.set(session.id, null);
+            if (freeCount == freeIds.length) {
+                int[] grown = new int[freeIds.length * 2];
+                System.arraycopy(freeIds, 0, grown, 0, freeCount);
+                freeIds = grown;
+            }
+            freeIds[freeCount++] = session.id;
+            return true;
+        }
+    }
+
+    public Session get(String username) {
+        return byName.get(username);
+    }
+
+    /**
+     * Сессия по токену восстановления
+     */
+    public Session getByToken(String token) {
+        return byToken.get(token);
+    }
+
+    /**
+     * Выдать сессии новый токен; прежний перестает действовать
+     */
+    public void rotateToken(Session session) {
+        String token = newToken();
+        synchronized (idLock) {
+            if (byName.get(session.username) != session) return; // сессия уже удалена
+            byToken.remove(session.resumeToken, session);
+            session.resumeToken = token;
+            byToken.put(token, session);
+        }
+    }
+
+    public Session get(int id) {
+        AtomicReferenceArray<Session> slots = byId;
+        return id >= 0 && id < slots.length() ? slots.get(id) : null;
+    }
+
+    public int size() {
+        return byName.size();
+    }
+
+    /**
+     * Все сессии: живое представление без копирования (слабо согласованный обход)
+     */
+    public Collection<Session> sessions() {
+        return sessionsView;
+    }
+
+    /**
+     * Имена подключенных пользователей: живое представление без копирования
+     */
+    public Set<String> usernames() {
+        return usernamesView;
+    }
+
+    /**
+     * Сколько подключенных пользователей отправляли сообщения за последние timeoutMillis
+     */
+    public int countActive(long timeoutMillis) {
+        long since = System.currentTimeMillis() - timeoutMillis;
+        int active = 0;
+        for (Session session : byName.values()) {
+            if (session.handler != null && session.lastActivityMillis >= since) {
+                active++;
+            }
+        }
+        return active;
+    }
+
+    /**
+     * Сколько сессий отключено и ждет переподключения
+     */
+    public int countDetached() {
+        int detached = 0;
+        for (Session session : byName.values()) {
+            if (session.handler == null) {
+                detached++;
+            }
+        }
+        return detached;
+    }
+
+    private static String newToken() {
+        byte[] bytes = new byte[TOKEN_BYTES];
+        TOKEN_RANDOM.nextBytes(bytes);
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
+    }
+}
@@ -0,0 +1,72 @@
+package server;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Точный счетчик событий в скользящем окне до 15 минут с посекундной гранулярностью.
+ * Хранит кольцо накопленных итогов на начало каждой секунды, поэтому количество
+ * событий за любое окно считается за O(1) как разность двух значений.
+ * Кольцо сдвигается лениво при записи или чтении, отдельная задача сброса не нужна.
+ */
+public class SlidingWindowCounter {
+    public static final int MAX_WINDOW_SECONDS = 15 * 60;
+    private static final int SLOTS = MAX_WINDOW_SECONDS + 1;
+
+    // Общий итог (полосатый счетчик, не создает конкуренции между потоками)
+    private final LongAdder total = new LongAdder();
+
+    // Значение total на начало каждой секунды из последних SLOTS
+    private final long[] totalAtSecondStart = new long[SLOTS];
+    private final long startSecond;
+    private volatile long currentSecond;
+
+    public SlidingWindowCounter() {
+        this.startSecond = System.currentTimeMillis() / 1000;
+        this.currentSecond = startSecond;
+    }
+
+    public void increment() {
+        advance(System.currentTimeMillis() / 1000);
+        total.increment();
+    }
+
+    /**
+     * Количество событий за последние windowSeconds секунд (включая текущую)
+     */
+    public long count(int windowSeconds) {
+        if (windowSeconds <= 0 || windowSeconds > MAX_WINDOW_SECONDS) {
+            throw new IllegalArgumentException("Окно должно быть от 1 до " + MAX_WINDOW_SECONDS + " секунд");
+        }
+        advance(System.currentTimeMillis() / 1000);
+
+        synchronized (this) {
+            long windowStart = currentSecond - windowSeconds + 1;
+            long base = windowStart <= startSecond ? 0 : totalAtSecondStart[slot(windowStart)];
+            return total.sum() - base;
+        }
+    }
+
+    public long getTotal() {
+        return total.sum();
+    }
+
+    // Заполняет слоты пропущенных секунд текущим итогом
+    private void advance(long second) {
+        if (second <= currentSecond) return;
+
+        synchronized (this) {
+            long from = currentSecond;
+            if (second <= from) return;
+
+            long base = total.sum();
+            for (long s = Math.max(from + 1, second - SLOTS + 1); s <= second; s++) {
+                totalAtSecondStart[slot(s)] = base;
+            }
+            currentSecond = second;
+        }
+    }
+
+    private static int slot(long second) {
+        return (int) (second % SLOTS);
+    }
+}
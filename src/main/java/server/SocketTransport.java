@@ -0,0 +1,88 @@
+package server;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.function.Consumer;
+
+/**
+ * TCP-транспорт на блокирующих сокетах
+ */
+public class SocketTransport implements Transport {
+    private final int port;
+    private volatile ServerSocket serverSocket;
+    private volatile boolean closed;
+
+    public SocketTransport(int port) {
+        this.port = port;
+    }
+
+    @Override
+    public synchronized void bind() throws IOException {
+        if (serverSocket == null) {
+            serverSocket = new ServerSocket(port);
+        }
+    }
+
+    @Override
+    public void serve(Consumer<Connection> acceptor) throws IOException {
+        bind();
+        try (ServerSocket socket = serverSocket) {
+            while (!closed) {
+                acceptor.accept(new SocketConnection(socket.accept()));
+            }
+        } catch (IOException e) {
+            // Закрытие транспорта прерывает accept() - это штатное завершение
+            if (!closed) throw e;
+        }
+    }
+
+    @Override
+    public String describe() {
+        return "TCP-порт " + port;
+    }
+
+    @Override
+    public void close() throws IOException {
+        closed = true;
+        ServerSocket socket = serverSocket;
+        if (socket != null) {
+            socket.close();
+        }
+    }
+
+    private static final class SocketConnection implements Connection {
+        private final Socket socket;
+
+        SocketConnection(Socket socket) {
+            this.socket = socket;
+        }
+
+        @Override
+        public InputStream getInputStream() throws IOException {
+            return socket.getInputStream();
+        }
+
+        @Override
+        public OutputStream getOutputStream() throws IOException {
+            return socket.getOutputStream();
+        }
+
+        @Override
+        public String getRemoteAddress() {
+            return String.valueOf(socket.getRemoteSocketAddress());
+        }
+
+        @Override
+        public boolean isClosed() {
+            return socket.isClosed();
+        }
+
+        @Override
+        public void close() throws IOException {
+            socket.close();
+        }
+    }
+}
@@ -2,68 +2,71 @@ package server;
 
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
-import java.util.HashMap;
 import java.util.HashSet;
-import java.util.Map;
+import java.util.List;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.regex.Pattern;
 
 import common.ChatMessage;
 
 public class StatsCalculator {
-    // Основные счетчики
-    private final AtomicLong totalMessages = new AtomicLong(0);
-    private final AtomicLong totalWords = new AtomicLong(0);
+    private static final Pattern NON_WORD_CHARS = Pattern.compile("[^a-zа-яё0-9\\s]");
+    private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+    
+    // Основные счетчики (LongAdder - несколько воркеров аналитики пишут параллельно)
+    private final LongAdder totalMessages = new LongAdder();
+    private final LongAdder totalWords = new LongAdder();
     
     // Статистика по пользователям
-    private final ConcurrentHashMap<String, AtomicLong> userMessageCount = new ConcurrentHashMap<>();
-    private final ConcurrentHashMap<String, AtomicLong> userWordCount = new ConcurrentHashMap<>();
-    private final ConcurrentHashMap<String, Set<String>> userUniqueWords = new ConcurrentHashMap<>();
+    private final Leaderboard userMessageCount = new Leaderboard();
+    private final ConcurrentHashMap<String, LongAdder> userWordCount = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, HyperLogLog> userUniqueWords = new ConcurrentHashMap<>();
     private final ConcurrentHashMap<String, Long> lastActivityTime = new ConcurrentHashMap<>();
     
     // Популярные слова (общие)
-    private final ConcurrentHashMap<String, AtomicInteger> wordFrequency = new ConcurrentHashMap<>();
+    private final Leaderboard wordFrequency = new Leaderboard();
+    
+    // Временная статистика (скользящие окна 1/5/15 минут)
+    private final SlidingWindowCounter messageRate = new SlidingWindowCounter();
+    private final ConcurrentHashMap<String, SlidingWindowCounter> userMessageRate = new ConcurrentHashMap<>();
     
-    // Временная статистика
-    private final AtomicInteger messagesLastMinute = new AtomicInteger(0);
-    private long lastMinuteResetTime = System.currentTimeMillis();
+    // Версия данных для кэширования ответов: увеличивается при каждом изменении
+    private final AtomicLong version = new AtomicLong(0);
+    private final ResponseCache reportCache = new ResponseCache(version::get, 0);
     
     public void processUserMessage(ChatMessage message) {
         String user = message.getUser();
         String text = message.getText();
         
         // Обновляем общую статистику
-        totalMessages.incrementAndGet();
-        messagesLastMinute.incrementAndGet();
-        
-        // Сбрасываем счетчик минуты каждые 60 секунд
-        if (System.currentTimeMillis() - lastMinuteResetTime > 60000) {
-            messagesLastMinute.set(0);
-            lastMinuteResetTime = System.currentTimeMillis();
-        }
+        totalMessages.increment();
+        messageRate.increment();
         
         // Статистика по пользователю
-        userMessageCount.computeIfAbsent(user, k -> new AtomicLong(0)).incrementAndGet();
+        userMessageCount.increment(user, 1);
+        userMessageRate.computeIfAbsent(user, k -> new SlidingWindowCounter()).increment();
         lastActivityTime.put(user, System.currentTimeMillis());
         
         // Анализ текста
-        String[] words = text.toLowerCase()
-            .replaceAll("[^a-zа-яё0-9\\s]", " ")
-            .split("\\s+");
+        String[] words = WHITESPACE.split(
+            NON_WORD_CHARS.matcher(text.toLowerCase()).replaceAll(" "));
         
-        totalWords.addAndGet(words.length);
-        userWordCount.computeIfAbsent(user, k -> new AtomicLong(0)).addAndGet(words.length);
+        totalWords.add(words.length);
+        userWordCount.computeIfAbsent(user, k -> new LongAdder()).add(words.length);
         
         // Уникальные слова пользователя
-        Set<String> uniqueWords = userUniqueWords.computeIfAbsent(user, k -> new HashSet<>());
+        HyperLogLog uniqueWords = userUniqueWords.computeIfAbsent(user, k -> new HyperLogLog());
         for (String word : words) {
             if (word.length() > 2) { // Игнорируем короткие слова
-                uniqueWords.add(word);
-                wordFrequency.computeIfAbsent(word, k -> new AtomicInteger(0)).incrementAndGet();
+                uniqueWords.offer(word);
+                wordFrequency.increment(word, 1);
             }
         }
+        
+        version.incrementAndGet();
     }
     
     public String generateReport() {
@@ -74,47 +77,89 @@ public class StatsCalculator {
         report.append("Время: ").append(time).append("\n");
         
         // Общая статистика
-        report.append("Всего сообщений: ").append(totalMessages.get()).append("\n");
-        report.append("Сообщений за минуту: ").append(messagesLastMinute.get()).append("\n");
+        report.append("Всего сообщений: ").append(totalMessages.sum()).append("\n");
+        report.append("Сообщений за 1/5/15 мин: ")
+            .append(messageRate.count(60)).append(" / ")
+            .append(messageRate.count(5 * 60)).append(" / ")
+            .append(messageRate.count(15 * 60)).append("\n");
         report.append("Активных пользователей: ").append(userMessageCount.size()).append("\n");
         
+        // Рейтинги перестраиваются, только если статистика изменилась с прошлого отчета
+        report.append(reportCache.get("leaders", this::formatLeaders));
+        
+        return report.toString();
+    }
+    
+    private String formatLeaders() {
+        StringBuilder leaders = new StringBuilder();
+        
         // Самые активные пользователи
-        report.append("\n🏆 Топ-3 активных пользователей:\n");
-        userMessageCount.entrySet().stream()
-            .sorted((e1, e2) -> Long.compare(e2.getValue().get(), e1.getValue().get()))
-            .limit(3)
-            .forEach(entry -> {
-                String user = entry.getKey();
-                long messages = entry.getValue().get();
-                long words = userWordCount.getOrDefault(user, new AtomicLong(0)).get();
-                report.append(String.format("  %s: %d сообщений, %d слов\n", 
-                    user, messages, words));
-            });
+        leaders.append("\n🏆 Топ-3 активных пользователей:\n");
+        for (Leaderboard.Entry entry : userMessageCount.top(3)) {
+            String user = entry.getKey();
+            LongAdder words = userWordCount.get(user);
+            leaders.append(String.format("  %s: %d сообщений, %d слов\n", 
+                user, entry.getCount(), words != null ? words.sum() : 0));
+        }
         
         // Популярные слова
-        report.append("\n🔥 Популярные слова:\n");
-        wordFrequency.entrySet().stream()
-            .sorted((e1, e2) -> Integer.compare(e2.getValue().get(), e1.getValue().get()))
-            .limit(5)
-            .forEach(entry -> {
-                report.append(String.format("  \"%s\" - %d раз\n", 
-                    entry.getKey(), entry.getValue().get()));
-            });
+        leaders.append("\n🔥 Популярные слова:\n");
+        for (Leaderboard.Entry entry : wordFrequency.top(5)) {
+            leaders.append(String.format("  \"%s\" - %d раз\n", 
+                entry.getKey(), entry.getCount()));
+        }
         
-        return report.toString();
+        return leaders.toString();
+    }
+    
+    /**
+     * Версия данных: меняется при каждом изменении статистики (для ResponseCache)
+     */
+    public long getVersion() {
+        return version.get();
+    }
+    
+    // Методы для получения статистики (используются CommandProcessor)
+    public boolean hasUser(String user) {
+        return userMessageCount.contains(user);
+    }
+    
+    public long getUserMessageCount(String user) {
+        return userMessageCount.get(user);
+    }
+    
+    /**
+     * Самые активные пользователи, O(limit)
+     */
+    public List<Leaderboard.Entry> getTopUsers(int limit) {
+        return userMessageCount.top(limit);
+    }
+    
+    /**
+     * Самые частые слова, O(limit)
+     */
+    public List<Leaderboard.Entry> getTopWords(int limit) {
+        return wordFrequency.top(limit);
+    }
+    
+    public long getUserUniqueWords(String user) {
+        HyperLogLog uniqueWords = userUniqueWords.get(user);
+        return uniqueWords != null ? uniqueWords.cardinality() : 0;
     }
     
-    // Методы для получения статистики (будут использоваться CommandProcessor)
-    public Map<String, Long> getUserMessageCounts() {
-        Map<String, Long> result = new HashMap<>();
-        userMessageCount.forEach((user, count) -> result.put(user, count.get()));
-        return result;
+    /**
+     * Количество сообщений в чате за последние windowSeconds секунд (не более 15 минут)
+     */
+    public long getMessageRate(int windowSeconds) {
+        return messageRate.count(windowSeconds);
     }
     
-    public Map<String, Integer> getWordFrequency() {
-        Map<String, Integer> result = new HashMap<>();
-        wordFrequency.forEach((word, count) -> result.put(word, count.get()));
-        return result;
+    /**
+     * Количество сообщений пользователя за последние windowSeconds секунд, -1 если пользователь неизвестен
+     */
+    public long getUserMessageRate(String user, int windowSeconds) {
+        SlidingWindowCounter rate = userMessageRate.get(user);
+        return rate != null ? rate.count(windowSeconds) : -1;
     }
     
     public int getActiveUsersCount() {
@@ -122,21 +167,80 @@ public class StatsCalculator {
     }
     
     public long getTotalMessages() {
-        return totalMessages.get();
+        return totalMessages.sum();
+    }
+    
+    /**
+     * Копия состояния для сохранения на диск.
+     * Писатели не блокируются: каждый счетчик читается атомарно, а сообщения,
+     * обработанные во время копирования, могут попасть в снимок частично.
+     */
+    public StatsSnapshot snapshot() {
+        List<Leaderboard.Entry> userEntries = userMessageCount.entries();
+        int userCount = userEntries.size();
+        String[] users = new String[userCount];
+        long[] userMessages = new long[userCount];
+        long[] userWords = new long[userCount];
+        long[] userLastActivity = new long[userCount];
+        byte[][] userVocabulary = new byte[userCount][];
+        long now = System.currentTimeMillis();
+
+        for (int i = 0; i < userCount; i++) {
+            String user = userEntries.get(i).getKey();
+            users[i] = user;
+            userMessages[i] = userEntries.get(i).getCount();
+            LongAdder words = userWordCount.get(user);
+            userWords[i] = words != null ? words.sum() : 0;
+            userLastActivity[i] = lastActivityTime.getOrDefault(user, now);
+            HyperLogLog vocabulary = userUniqueWords.get(user);
+            userVocabulary[i] = vocabulary != null ? vocabulary.toByteArray() : null;
+        }
+
+        List<Leaderboard.Entry> wordEntries = wordFrequency.entries();
+        String[] words = new String[wordEntries.size()];
+        long[] wordCounts = new long[wordEntries.size()];
+        for (int i = 0; i < words.length; i++) {
+            words[i] = wordEntries.get(i).getKey();
+            wordCounts[i] = wordEntries.get(i).getCount();
+        }
+
+        return new StatsSnapshot(now, totalMessages.sum(), totalWords.sum(),
+            users, userMessages, userWords, userLastActivity, userVocabulary,
+            words, wordCounts);
+    }
+
+    /**
+     * Восстановление состояния из снимка (вызывается при старте, до начала обработки сообщений)
+     */
+    public void restore(StatsSnapshot snapshot) {
+        totalMessages.add(snapshot.totalMessages);
+        totalWords.add(snapshot.totalWords);
+
+        for (int i = 0; i < snapshot.users.length; i++) {
+            String user = snapshot.users[i];
+            userWordCount.computeIfAbsent(user, k -> new LongAdder()).add(snapshot.userWords[i]);
+            lastActivityTime.put(user, snapshot.userLastActivity[i]);
+            if (snapshot.userVocabulary[i] != null) {
+                userUniqueWords.put(user, new HyperLogLog(snapshot.userVocabulary[i]));
+            }
+        }
+
+        userMessageCount.load(snapshot.users, snapshot.userMessages);
+        wordFrequency.load(snapshot.words, snapshot.wordCounts);
+        version.incrementAndGet();
     }
     
     public void cleanupInactiveUsers() {
         long inactiveThreshold = System.currentTimeMillis() - (15 * 60 * 1000); // 15 минут
         lastActivityTime.entrySet().removeIf(entry ->
             entry.getValue() < inactiveThreshold &&
-            !userMessageCount.containsKey(entry.getKey())
+            !userMessageCount.contains(entry.getKey())
         );
         
         // Также очищаем данные пользователей, которые давно не были активны
         Set<String> usersToRemove = new HashSet<>();
-        userMessageCount.forEach((user, count) -> {
-            Long lastActivity = lastActivityTime.get(user);
-            if (lastActivity != null && lastActivity < inactiveThreshold) {
+        lastActivityTime.forEach((user, lastActivity) -> {
+            if (lastActivity < inactiveThreshold) {
                 usersToRemove.add(user);
             }
         });
@@ -145,7 +249,12 @@ public class StatsCalculator {
             userMessageCount.remove(user);
             userWordCount.remove(user);
             userUniqueWords.remove(user);
+            userMessageRate.remove(user);
             lastActivityTime.remove(user);
         }
+        
+        if (!usersToRemove.isEmpty()) {
+            version.incrementAndGet();
+        }
     }
 }
\ No newline at end of file
@@ -0,0 +1,208 @@
+package server;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Бинарный формат снимка статистики.
+ * Запись идет во временный файл с последующим атомарным переименованием,
+ * чтение - через memory-mapped буфер без промежуточных потоков.
+ *
+ * Формат: MAGIC, VERSION, createdAt, totalMessages, totalWords,
+ * [userCount, (имя, сообщения, слова, активность, словарь)*],
+ * [wordCount, (слово, количество)*]
+ */
+public class StatsCheckpoint {
+    private static final int MAGIC = 0x4E435331; // "NCS1"
+    private static final int VERSION = 1;
+
+    // Кодирование регистров HyperLogLog: разреженное (индекс+значение) или плотное
+    private static final byte VOCABULARY_NONE = 0;
+    private static final byte VOCABULARY_SPARSE = 1;
+    private static final byte VOCABULARY_DENSE = 2;
+
+    /**
+     * Записывает снимок в файл (атомарно заменяя предыдущий)
+     */
+    public static void write(StatsSnapshot snapshot, Path file) throws IOException {
+        Path parent = file.toAbsolutePath().getParent();
+        if (parent != null) {
+            Files.createDirectories(parent);
+        }
+        Path tempFile = file.resolveSibling(file.getFileName() + ".tmp");
+
+        try (DataOutputStream out = new DataOutputStream(
+                new BufferedOutputStream(Files.newOutputStream(tempFile), 1 << 16))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeLong(snapshot.createdAt);
+            out.writeLong(snapshot.totalMessages);
+            out.writeLong(snapshot.totalWords);
+
+            out.writeInt(snapshot.users.length);
+            for (int i = 0; i < snapshot.users.length; i++) {
+                writeString(out, snapshot.users[i]);
+                out.writeLong(snapshot.userMessages[i]);
+                out.writeLong(snapshot.userWords[i]);
+                out.writeLong(snapshot.userLastActivity[i]);
+                writeVocabulary(out, snapshot.userVocabulary[i]);
+            }
+
+            out.writeInt(snapshot.words.length);
+            for (int i = 0; i < snapshot.words.length; i++) {
+                writeString(out, snapshot.words[i]);
+                out.writeLong(snapshot.wordCounts[i]);
+            }
+        }
+
+        Files.move(tempFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Читает снимок из файла через memory-mapped буфер
+     */
+    public static StatsSnapshot read(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size > Integer.MAX_VALUE) {
+                throw new IOException("Файл снимка слишком большой: " + size + " байт");
+            }
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            return read(buffer);
+        } catch (BufferUnderflowException e) {
+            throw new IOException("Файл снимка поврежден или обрезан: " + file, e);
+        }
+    }
+
+    private static StatsSnapshot read(MappedByteBuffer buffer) throws IOException {
+        if (buffer.getInt() != MAGIC) {
+            throw new IOException("Неверный формат файла снимка");
+        }
+        int version = buffer.getInt();
+        if (version != VERSION) {
+            throw new IOException("Неподдерживаемая версия снимка: " + version);
+        }
+
+        long createdAt = buffer.getLong();
+        long totalMessages = buffer.getLong();
+        long totalWords = buffer.getLong();
+        byte[] stringBuffer = new byte[4096];
+
+        int userCount = readCount(buffer);
+        String[] users = new String[userCount];
+        long[] userMessages = new long[userCount];
+        long[] userWords = new long[userCount];
+        long[] userLastActivity = new long[userCount];
+        byte[][] userVocabulary = new byte[userCount][];
+        for (int i = 0; i < userCount; i++) {
+            users[i] = readString(buffer, stringBuffer);
+            userMessages[i] = buffer.getLong();
+            userWords[i] = buffer.getLong();
+            userLastActivity[i] = buffer.getLong();
+            userVocabulary[i] = readVocabulary(buffer);
+        }
+
+        int wordCount = readCount(buffer);
+        String[] words = new String[wordCount];
+        long[] wordCounts = new long[wordCount];
+        for (int i = 0; i < wordCount; i++) {
+            words[i] = readString(buffer, stringBuffer);
+            wordCounts[i] = buffer.getLong();
+        }
+
+        return new StatsSnapshot(createdAt, totalMessages, totalWords,
+            users, userMessages, userWords, userLastActivity, userVocabulary,
+            words, wordCounts);
+    }
+
+    private static int readCount(MappedByteBuffer buffer) throws IOException {
+        int count = buffer.getInt();
+        if (count < 0 || count > buffer.remaining()) {
+            throw new IOException("Неверное количество записей в снимке: " + count);
+        }
+        return count;
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(MappedByteBuffer buffer, byte[] stringBuffer) throws IOException {
+        int length = buffer.getInt();
+        if (length < 0 || length > buffer.remaining()) {
+            throw new IOException("Неверная длина строки в снимке: " + length);
+        }
+        if (length > stringBuffer.length) {
+            byte[] bytes = new byte[length];
+            buffer.get(bytes);
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+        buffer.get(stringBuffer, 0, length);
+        return new String(stringBuffer, 0, length, StandardCharsets.UTF_8);
+    }
+
+    private static void writeVocabulary(DataOutputStream out, byte[] registers) throws IOException {
+        if (registers == null) {
+            out.writeByte(VOCABULARY_NONE);
+            return;
+        }
+
+        int nonZero = 0;
+        for (byte register : registers) {
+            if (register != 0) nonZero++;
+        }
+
+        // Разреженная запись занимает 3 байта на регистр
+        if (nonZero * 3 < registers.length) {
+            out.writeByte(VOCABULARY_SPARSE);
+            out.writeShort(nonZero);
+            for (int i = 0; i < registers.length; i++) {
+                if (registers[i] != 0) {
+                    out.writeShort(i);
+                    out.writeByte(registers[i]);
+                }
+            }
+        } else {
+            out.writeByte(VOCABULARY_DENSE);
+            out.write(registers);
+        }
+    }
+
+    private static byte[] readVocabulary(MappedByteBuffer buffer) throws IOException {
+        byte encoding = buffer.get();
+        switch (encoding) {
+            case VOCABULARY_NONE:
+                return null;
+            case VOCABULARY_SPARSE: {
+                byte[] registers = new byte[HyperLogLog.REGISTER_COUNT];
+                int nonZero = buffer.getShort() & 0xFFFF;
+                for (int i = 0; i < nonZero; i++) {
+                    int index = buffer.getShort() & 0xFFFF;
+                    if (index >= registers.length) {
+                        throw new IOException("Неверный индекс регистра в снимке: " + index);
+                    }
+                    registers[index] = buffer.get();
+                }
+                return registers;
+            }
+            case VOCABULARY_DENSE: {
+                byte[] registers = new byte[HyperLogLog.REGISTER_COUNT];
+                buffer.get(registers);
+                return registers;
+            }
+            default:
+                throw new IOException("Неизвестное кодирование словаря: " + encoding);
+        }
+    }
+}
@@ -0,0 +1,38 @@
+package server;
+
+/**
+ * Копия состояния StatsCalculator для сохранения на диск и восстановления.
+ * Данные пользователя i лежат в i-х элементах массивов users/userMessages/...
+ */
+public class StatsSnapshot {
+    public final long createdAt;
+    public final long totalMessages;
+    public final long totalWords;
+
+    // Пользователи
+    public final String[] users;
+    public final long[] userMessages;
+    public final long[] userWords;
+    public final long[] userLastActivity;
+    public final byte[][] userVocabulary; // Регистры HyperLogLog, null если слов нет
+
+    // Частота слов
+    public final String[] words;
+    public final long[] wordCounts;
+
+    public StatsSnapshot(long createdAt, long totalMessages, long totalWords,
+                         String[] users, long[] userMessages, long[] userWords,
+                         long[] userLastActivity, byte[][] userVocabulary,
+                         String[] words, long[] wordCounts) {
+        this.createdAt = createdAt;
+        this.totalMessages = totalMessages;
+        this.totalWords = totalWords;
+        this.users = users;
+        this.userMessages = userMessages;
+        this.userWords = userWords;
+        this.userLastActivity = userLastActivity;
+        this.userVocabulary = userVocabulary;
+        this.words = words;
+        this.wordCounts = wordCounts;
+    }
+}
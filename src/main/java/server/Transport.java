@@ -0,0 +1,55 @@
+package server;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.function.Consumer;
+
+/**
+ * Транспорт, через который ChatServer принимает подключения.
+ * Основная реализация - TCP (SocketTransport); LoopbackTransport соединяет клиентов
+ * в памяти, чтобы тесты и бенчмарки проходили весь путь сообщения без сети.
+ */
+public interface Transport extends Closeable {
+
+    /**
+     * Двунаправленный поток байтов одного клиента
+     */
+    interface Connection extends Closeable {
+        InputStream getInputStream() throws IOException;
+
+        OutputStream getOutputStream() throws IOException;
+
+        /**
+         * Адрес клиента для логов и событий
+         */
+        String getRemoteAddress();
+
+        boolean isClosed();
+    }
+
+    /**
+     * Начинает прослушивание (для TCP - привязка порта). После успешного вызова
+     * клиенты могут подключаться, даже если serve() еще не вызван.
+     */
+    default void bind() throws IOException {
+    }
+
+    /**
+     * Принимает подключения и передает их обработчику, пока транспорт не закрыт.
+     * Блокирует вызывающий поток. Если bind() не вызывался, вызывает его сам.
+     */
+    void serve(Consumer<Connection> acceptor) throws IOException;
+
+    /**
+     * Описание транспорта для логов, например "TCP-порт 12345"
+     */
+    String describe();
+
+    /**
+     * Прекращает прием подключений; serve() завершается
+     */
+    @Override
+    void close() throws IOException;
+}
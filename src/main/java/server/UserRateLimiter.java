@@ -3,14 +3,18 @@ package server;
 import java.time.Instant;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
 
 /**
  * Класс для управления рейт-лимитингом пользователя
  */
 public class UserRateLimiter {
+    // Отклоненные сообщения всех пользователей (для метрик)
+    private static final LongAdder totalRejected = new LongAdder();
+    
     private final AtomicInteger messageCount = new AtomicInteger(0);
     private final AtomicLong windowStart = new AtomicLong(Instant.now().toEpochMilli());
-    private final int maxMessagesPerMinute;
+    private volatile int maxMessagesPerMinute;
 
     public UserRateLimiter(int maxMessagesPerMinute) {
         this.maxMessagesPerMinute = maxMessagesPerMinute;
@@ -41,9 +45,21 @@ public class UserRateLimiter {
             currentCount = messageCount.get();
         }
         
+        totalRejected.increment();
         return false; // лимит превышен
     }
     
+    public static long getTotalRejected() {
+        return totalRejected.sum();
+    }
+    
+    /**
+     * Новый лимит действует в текущем окне (горячая перезагрузка конфигурации)
+     */
+    public void setMaxMessagesPerMinute(int maxMessagesPerMinute) {
+        this.maxMessagesPerMinute = maxMessagesPerMinute;
+    }
+    
     public int getMaxMessagesPerMinute() {
         return maxMessagesPerMinute;
     }
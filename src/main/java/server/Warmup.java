@@ -0,0 +1,178 @@
+package server;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Синтетическая нагрузка через ChatServer, MessageBroker, StatsCalculator и CommandProcessor
+ * на loopback-транспорте. Перед приемом настоящих подключений прогревает JIT на рабочем пути,
+ * а в тренировочном прогоне (--train) загружает его классы для архива AppCDS.
+ * Использует отдельный экземпляр сервера и аналитики без снимка статистики,
+ * поэтому настоящая статистика не меняется.
+ */
+public final class Warmup {
+    public static final int DEFAULT_MESSAGES = 10_000;
+
+    // Не больше лимита сообщений в минуту на одного пользователя
+    private static final int MESSAGES_PER_CLIENT = 50;
+    private static final int WAVE_CLIENTS = 20;
+    private static final int COMMAND_EVERY = 10;
+    private static final long DRAIN_TIMEOUT_SECONDS = 30;
+    private static final long PACING_PARK_NANOS = 50_000;
+    private static final String MARKER = "wu ";
+    private static final String[] COMMANDS = {
+        "/stats", "/top", "/users", "/help", "/cmdstats", "/latency", "/uptime", "/time", "/roll", "/flip"
+    };
+    private static final String[] WORDS = {
+        "привет", "лекция", "вопрос", "ответ", "сервер", "задача", "java", "поток", "очередь", "сообщение"
+    };
+
+    private final AtomicLong delivered = new AtomicLong(0);
+
+    private Warmup() {
+    }
+
+    /**
+     * Прогнать нагрузку и дождаться доставки всех сообщений
+     * @param messages число сообщений (включая команды)
+     */
+    public static void run(int messages) {
+        Logger.LogLevel level = Logger.getLogLevel();
+        Logger.setLogLevel(Logger.LogLevel.WARN); // сотни синтетических подключений не должны попасть в лог
+        long start = System.nanoTime();
+        Warmup warmup = new Warmup();
+        int clients = (messages + MESSAGES_PER_CLIENT - 1) / MESSAGES_PER_CLIENT;
+        long expected;
+        try {
+            expected = warmup.drive(clients, messages);
+        } catch (IOException e) {
+            Logger.setLogLevel(level);
+            Logger.error("Warmup", "Прогрев прерван: " + e.getMessage(), e);
+            return;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            Logger.setLogLevel(level);
+            return;
+        }
+        Logger.setLogLevel(level);
+        Logger.info("Warmup", "Прогрев: %d сообщений от %d клиентов, доставлено %d из %d за %d мс",
+            messages, clients, warmup.delivered.get(), expected,
+            TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+    }
+
+    private long drive(int clients, int messages) throws IOException, InterruptedException {
+        LoopbackTransport transport = new LoopbackTransport();
+        ChatServer server = new ChatServer(transport, clients + 8);
+        AnalyticsBot bot = new AnalyticsBot(server.getMessageBroker(), "");
+        bot.start();
+        Thread acceptor = new Thread(server::start, "Warmup-Acceptor");
+        acceptor.setDaemon(true);
+        acceptor.start();
+
+        long expected = 0;
+        try {
+            // Волнами по WAVE_CLIENTS подключений: рассылка не разрастается, а подключение
+            // и отключение клиентов тоже попадают в прогрев
+            int sent = 0;
+            for (int first = 0; first < clients; first += WAVE_CLIENTS) {
+                int waveClients = Math.min(WAVE_CLIENTS, clients - first);
+                int waveMessages = Math.min(waveClients * MESSAGES_PER_CLIENT, messages - sent);
+                expected += wave(transport, server.getMessageBroker(), first, waveClients, sent, waveMessages);
+                sent += waveMessages;
+            }
+            return expected;
+        } finally {
+            bot.shutdown();
+            server.shutdown();
+        }
+    }
+
+    // Одна волна: подключить клиентов, разослать сообщения, дождаться доставки и отключиться
+    private long wave(LoopbackTransport transport, MessageBroker broker, int firstClient, int clients,
+                      int firstMessage, int messages) throws IOException, InterruptedException {
+        List<Transport.Connection> connections = new ArrayList<>(clients);
+        List<PrintWriter> writers = new ArrayList<>(clients);
+        try {
+            for (int i = 0; i < clients; i++) {
+                Transport.Connection connection = transport.connect();
+                connections.add(connection);
+                BufferedReader in = new BufferedReader(new InputStreamReader(connection.getInputStream()));
+                PrintWriter out = new PrintWriter(connection.getOutputStream(), true);
+                in.readLine();                  // приглашение ввести имя
+                out.println(name(firstClient + i));
+                in.readLine();                  // приветствие
+                writers.add(out);
+                Thread reader = new Thread(() -> readLoop(in), "Warmup-Reader-" + (firstClient + i));
+                reader.setDaemon(true);
+                reader.start();
+            }
+
+            long start = delivered.get();
+            long userMessages = 0;
+            for (int i = firstMessage; i < firstMessage + messages; i++) {
+                if (i % COMMAND_EVERY == 0) {
+                    awaitInFlight(broker, start, userMessages, clients);
+                }
+                PrintWriter out = writers.get(i % clients);
+                if (i % COMMAND_EVERY == COMMAND_EVERY - 1) {
+                    out.println(COMMANDS[(i / COMMAND_EVERY) % COMMANDS.length]);
+                } else {
+                    out.println(MARKER + i + " " + WORDS[i % WORDS.length] + " " + WORDS[(i * 7 + 3) % WORDS.length]);
+                    userMessages++;
+                }
+            }
+
+            long expected = userMessages * clients;
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(DRAIN_TIMEOUT_SECONDS);
+            while (delivered.get() - start < expected && System.nanoTime() < deadline) {
+                Thread.sleep(1);
+            }
+            return expected;
+        } finally {
+            for (Transport.Connection connection : connections) {
+                connection.close();
+            }
+        }
+    }
+
+    /**
+     * Не опережать рассылку: ответы команд кладутся в исходящую очередь без ожидания
+     * и при переполненной очереди теряются, а прогрев должен пройти и их путь.
+     * Недоставленные сообщения считаются от клиента до клиента (вместе с буферами
+     * loopback-соединений) и держатся в пределах половины исходящей очереди.
+     */
+    private void awaitInFlight(MessageBroker broker, long deliveredAtStart, long sent, int clients)
+            throws InterruptedException {
+        int capacity = broker.getOutgoingQueue().size() + broker.getOutgoingQueue().remainingCapacity();
+        long limit = Math.max(1, capacity / 2 - COMMAND_EVERY);
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(DRAIN_TIMEOUT_SECONDS);
+        while (sent - (delivered.get() - deliveredAtStart) / clients > limit && System.nanoTime() < deadline) {
+            LockSupport.parkNanos(PACING_PARK_NANOS);
+            if (Thread.interrupted()) throw new InterruptedException();
+        }
+    }
+
+    private void readLoop(BufferedReader in) {
+        try {
+            String line;
+            while ((line = in.readLine()) != null) {
+                if (line.contains("] " + MARKER)) {
+                    delivered.incrementAndGet();
+                }
+            }
+        } catch (IOException e) {
+            // соединение закрыто при остановке сервера
+        }
+    }
+
+    private static String name(int client) {
+        return "warmup-" + client;
+    }
+}
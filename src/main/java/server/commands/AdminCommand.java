@@ -0,0 +1,120 @@
+package server.commands;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.List;
+
+import server.ChatCommand;
+import server.CommandContext;
+import server.ConnectionStats;
+import server.Logger;
+import server.ServerConfig;
+import server.SessionRegistry;
+
+/**
+ * /admin conns [критерий] [N] - самые тяжелые или медленные подключения.
+ * Имя пользователя выбирает сам клиент, поэтому членство в server.admin.users - только фильтр:
+ * сессия должна один раз ввести /admin login <пароль из server.admin.secret>.
+ * Ответ видит только автор команды.
+ */
+public class AdminCommand implements ChatCommand {
+    private static final int DEFAULT_LIMIT = 10;
+    private static final int MAX_LIMIT = 50;
+
+    @Override
+    public String name() {
+        return "admin";
+    }
+
+    @Override
+    public boolean isPrivate() {
+        return true;
+    }
+
+    @Override
+    public String execute(CommandContext context, String user, String args) {
+        ServerConfig config = ServerConfig.getInstance();
+        String secret = config.getAdminSecret();
+        if (secret.isEmpty() || !config.getAdminUsers().contains(user)) {
+            return "⛔ Команда доступна только администраторам.";
+        }
+        SessionRegistry.Session session = context.getMessageBroker().getServer().getSessions().get(user);
+        if (session == null) {
+            return "⛔ Команда доступна только администраторам.";
+        }
+
+        String[] parts = args.isEmpty() ? new String[0] : args.split("\\s+");
+        if (parts.length > 0 && parts[0].equalsIgnoreCase("login")) {
+            return login(session, parts.length > 1 ? parts[1] : "", secret);
+        }
+        if (!session.isAdmin()) {
+            return "⛔ Сначала подтвердите права: /admin login <пароль>";
+        }
+        if (parts.length == 0 || !parts[0].equalsIgnoreCase("conns")) {
+            return usageText();
+        }
+
+        ConnectionStats.SortKey sortKey = ConnectionStats.SortKey.OUT;
+        if (parts.length > 1) {
+            sortKey = ConnectionStats.SortKey.parse(parts[1]);
+            if (sortKey == null) return usageText();
+        }
+        int limit = DEFAULT_LIMIT;
+        if (parts.length > 2) {
+            try {
+                limit = Math.max(1, Math.min(MAX_LIMIT, Integer.parseInt(parts[2])));
+            } catch (NumberFormatException e) {
+                return usageText();
+            }
+        }
+
+        List<ConnectionStats> connections = context.getMessageBroker().getServer().getConnectionStats();
+        List<ConnectionStats> top = ConnectionStats.top(connections, sortKey, limit);
+
+        StringBuilder sb = new StringBuilder();
+        sb.append(String.format("🔧 ПОДКЛЮЧЕНИЯ (%d, сортировка: %s):\n", connections.size(), sortKey.getKey()));
+        sb.append(String.format("%-15s %8s %8s %6s %6s %4s %8s %8s %8s\n",
+            "пользователь", "вход", "выход", "вх.", "исх.", "очер", "посл.мс", "макс.мс", "возраст"));
+        for (ConnectionStats stats : top) {
+            sb.append(String.format("%-15s %8s %8s %6d %6d %4d %8.2f %8.2f %8s\n",
+                context.limitString(String.valueOf(stats.getUser()), 15),
+                formatBytes(stats.getBytesIn()),
+                formatBytes(stats.getBytesOut()),
+                stats.getMessagesIn(),
+                stats.getMessagesOut(),
+                stats.getPendingWrites(),
+                stats.getLastWriteNanos() / 1e6,
+                stats.getMaxWriteNanos() / 1e6,
+                formatAge(stats.getAgeMillis())));
+        }
+        return sb.toString();
+    }
+
+    private static String login(SessionRegistry.Session session, String password, String secret) {
+        // Сравнение за постоянное время, чтобы пароль нельзя было подобрать по задержке ответа
+        boolean valid = MessageDigest.isEqual(password.getBytes(StandardCharsets.UTF_8),
+            secret.getBytes(StandardCharsets.UTF_8));
+        if (!valid) {
+            Logger.warn("AdminCommand", "Неверный пароль администратора от " + session.getUsername());
+            return "⛔ Неверный пароль.";
+        }
+        session.grantAdmin();
+        Logger.info("AdminCommand", "Права администратора подтверждены: " + session.getUsername());
+        return "🔧 Права администратора подтверждены до конца сессии.";
+    }
+
+    private static String usageText() {
+        return "Использование: /admin login <пароль> | /admin conns [out|in|msgs|backlog|slow|maxwrite|age] [N]";
+    }
+
+    private static String formatBytes(long bytes) {
+        if (bytes < 1024) return bytes + "B";
+        if (bytes < 1024 * 1024) return String.format("%.1fK", bytes / 1024.0);
+        return String.format("%.1fM", bytes / (1024.0 * 1024));
+    }
+
+    private static String formatAge(long millis) {
+        long seconds = millis / 1000;
+        return String.format("%d:%02d:%02d", seconds / 3600, (seconds % 3600) / 60, seconds % 60);
+    }
+}
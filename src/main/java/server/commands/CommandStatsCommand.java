@@ -0,0 +1,40 @@
+package server.commands;
+
+import server.ChatCommand;
+import server.CommandContext;
+import server.CommandRegistry;
+import server.LatencyHistogram;
+
+/**
+ * /cmdstats - количество вызовов и время выполнения каждой команды
+ */
+public class CommandStatsCommand implements ChatCommand {
+
+    @Override
+    public String name() {
+        return "cmdstats";
+    }
+
+    @Override
+    public String usage() {
+        return "/cmdstats     - Стоимость команд (вызовы, p50/p99)";
+    }
+
+    @Override
+    public String execute(CommandContext context, String user, String args) {
+        StringBuilder sb = new StringBuilder("⚙️ СТАТИСТИКА КОМАНД (вызовы, ошибки, p50/p99/max мкс):\n");
+        for (CommandRegistry.Registration registration : context.getRegistry().getRegistrations()) {
+            if (registration.getCalls() == 0) continue;
+
+            LatencyHistogram latency = registration.getLatency();
+            sb.append(String.format("/%-9s %6d %3d  %d/%d/%d\n",
+                registration.getCommand().name(),
+                registration.getCalls(),
+                registration.getErrors(),
+                latency.getValueAtPercentile(50) / 1000,
+                latency.getValueAtPercentile(99) / 1000,
+                latency.getMax() / 1000));
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,38 @@
+package server.commands;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+import server.ChatCommand;
+import server.CommandContext;
+
+/**
+ * /8ball [вопрос] - шар предсказаний
+ */
+public class EightBallCommand implements ChatCommand {
+    private static final String[] ANSWERS = {
+        "Бесспорно", "Предрешено", "Никаких сомнений", "Определенно да",
+        "Пока не ясно, попробуй снова", "Спроси позже", "Лучше не рассказывать",
+        "Даже не думай", "Мой ответ — нет", "Весьма сомнительно"
+    };
+
+    @Override
+    public String name() {
+        return "8ball";
+    }
+
+    @Override
+    public String usage() {
+        return "/8ball [msg]  - Шар предсказаний";
+    }
+
+    @Override
+    public boolean isInline() {
+        return true;
+    }
+
+    @Override
+    public String execute(CommandContext context, String user, String question) {
+        if (question.isEmpty()) return "🎱 Задай вопрос! Пример: /8ball Сдам ли я экзамен?";
+        return String.format("🎱 Вопрос: %s\n✨ Ответ: %s", question, ANSWERS[ThreadLocalRandom.current().nextInt(ANSWERS.length)]);
+    }
+}
@@ -0,0 +1,32 @@
+package server.commands;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+import server.ChatCommand;
+import server.CommandContext;
+
+/**
+ * /flip - орел или решка
+ */
+public class FlipCommand implements ChatCommand {
+
+    @Override
+    public String name() {
+        return "flip";
+    }
+
+    @Override
+    public String usage() {
+        return "/flip         - Орел или решка";
+    }
+
+    @Override
+    public boolean isInline() {
+        return true;
+    }
+
+    @Override
+    public String execute(CommandContext context, String user, String args) {
+        return String.format("🪙 %s подбросил монету: %s", user, ThreadLocalRandom.current().nextBoolean() ? "ОРЕЛ" : "РЕШКА");
+    }
+}
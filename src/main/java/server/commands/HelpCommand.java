@@ -0,0 +1,45 @@
+package server.commands;
+
+import server.ChatCommand;
+import server.CommandContext;
+import server.CommandRegistry;
+
+/**
+ * /help - список команд, собирается из реестра
+ */
+public class HelpCommand implements ChatCommand {
+    private volatile String helpText;
+
+    @Override
+    public String name() {
+        return "help";
+    }
+
+    @Override
+    public String[] aliases() {
+        return new String[] { "h", "?" };
+    }
+
+    @Override
+    public boolean isInline() {
+        return true;
+    }
+
+    @Override
+    public String execute(CommandContext context, String user, String args) {
+        // Реестр не меняется после запуска, поэтому текст собирается один раз
+        String text = helpText;
+        if (text == null) {
+            StringBuilder sb = new StringBuilder("📋 ДОСТУПНЫЕ КОМАНДЫ:");
+            for (CommandRegistry.Registration registration : context.getRegistry().getRegistrations()) {
+                String usage = registration.getCommand().usage();
+                if (usage != null) {
+                    sb.append("\n🔹 ").append(usage);
+                }
+            }
+            text = sb.toString();
+            helpText = text;
+        }
+        return text;
+    }
+}
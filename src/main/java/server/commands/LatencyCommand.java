@@ -0,0 +1,25 @@
+package server.commands;
+
+import server.ChatCommand;
+import server.CommandContext;
+
+/**
+ * /latency - перцентили задержек на пути сообщения
+ */
+public class LatencyCommand implements ChatCommand {
+
+    @Override
+    public String name() {
+        return "latency";
+    }
+
+    @Override
+    public String usage() {
+        return "/latency      - Задержки доставки (p50/p99/p999)";
+    }
+
+    @Override
+    public String execute(CommandContext context, String user, String args) {
+        return "⏱️ ЗАДЕРЖКИ СООБЩЕНИЙ:\n" + context.getMessageBroker().getLatency().formatSummary();
+    }
+}
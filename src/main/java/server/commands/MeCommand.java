@@ -0,0 +1,25 @@
+package server.commands;
+
+import server.ChatCommand;
+import server.CommandContext;
+
+/**
+ * /me - собственная статистика (синоним /stats без аргументов)
+ */
+public class MeCommand implements ChatCommand {
+
+    @Override
+    public String name() {
+        return "me";
+    }
+
+    @Override
+    public String cacheKey(String user, String args) {
+        return "stats:" + user;
+    }
+
+    @Override
+    public String execute(CommandContext context, String user, String args) {
+        return StatsCommand.render(context, user);
+    }
+}
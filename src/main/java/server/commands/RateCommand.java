@@ -0,0 +1,55 @@
+package server.commands;
+
+import server.ChatCommand;
+import server.CommandContext;
+import server.StatsCalculator;
+
+/**
+ * /rate [user] - темп сообщений за 1/5/15 минут
+ */
+public class RateCommand implements ChatCommand {
+
+    @Override
+    public String name() {
+        return "rate";
+    }
+
+    @Override
+    public String[] aliases() {
+        return new String[] { "r" };
+    }
+
+    @Override
+    public String usage() {
+        return "/rate [user]  - Темп сообщений за 1/5/15 мин";
+    }
+
+    @Override
+    public boolean isInline() {
+        return true; // Скользящие окна читаются за O(1)
+    }
+
+    @Override
+    public String execute(CommandContext context, String user, String args) {
+        StatsCalculator statsCalculator = context.getStatsCalculator();
+        String targetUser = args.isEmpty() ? user : args;
+
+        StringBuilder sb = new StringBuilder("📈 ТЕМП СООБЩЕНИЙ:\n");
+        sb.append(String.format("💬 Чат:  1м %d | 5м %d | 15м %d\n",
+            statsCalculator.getMessageRate(60),
+            statsCalculator.getMessageRate(5 * 60),
+            statsCalculator.getMessageRate(15 * 60)));
+
+        long userLastMinute = statsCalculator.getUserMessageRate(targetUser, 60);
+        if (userLastMinute < 0) {
+            sb.append(String.format("👤 %s: нет сообщений", targetUser));
+        } else {
+            sb.append(String.format("👤 %s:  1м %d | 5м %d | 15м %d",
+                targetUser,
+                userLastMinute,
+                statsCalculator.getUserMessageRate(targetUser, 5 * 60),
+                statsCalculator.getUserMessageRate(targetUser, 15 * 60)));
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,38 @@
+package server.commands;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+import server.ChatCommand;
+import server.CommandContext;
+
+/**
+ * /roll [max] - случайное число
+ */
+public class RollCommand implements ChatCommand {
+
+    @Override
+    public String name() {
+        return "roll";
+    }
+
+    @Override
+    public String usage() {
+        return "/roll [max]   - Случайное число";
+    }
+
+    @Override
+    public boolean isInline() {
+        return true;
+    }
+
+    @Override
+    public String execute(CommandContext context, String user, String args) {
+        int max = 100;
+        try {
+            if (!args.isEmpty()) max = Math.abs(Integer.parseInt(args));
+        } catch (NumberFormatException ignored) {}
+
+        if (max <= 0) max = 100; // 0 и Integer.MIN_VALUE (abs остается отрицательным)
+        return String.format("🎲 %s бросил кубик (1-%d): [%d]", user, max, ThreadLocalRandom.current().nextInt(max) + 1);
+    }
+}
@@ -0,0 +1,64 @@
+package server.commands;
+
+import server.ChatCommand;
+import server.CommandContext;
+import server.StatsCalculator;
+
+/**
+ * /stats [user] - карточка статистики пользователя
+ */
+public class StatsCommand implements ChatCommand {
+
+    @Override
+    public String name() {
+        return "stats";
+    }
+
+    @Override
+    public String[] aliases() {
+        return new String[] { "s" };
+    }
+
+    @Override
+    public String usage() {
+        return "/stats [user] - Статистика (или /me)";
+    }
+
+    @Override
+    public String cacheKey(String user, String args) {
+        return "stats:" + (args.isEmpty() ? user : args);
+    }
+
+    @Override
+    public String execute(CommandContext context, String user, String args) {
+        return render(context, args.isEmpty() ? user : args);
+    }
+
+    static String render(CommandContext context, String targetUser) {
+        StatsCalculator statsCalculator = context.getStatsCalculator();
+        if (!statsCalculator.hasUser(targetUser)) {
+            return String.format("❌ Пользователь [%s] не найден или молчит.", targetUser);
+        }
+
+        long userMsgs = statsCalculator.getUserMessageCount(targetUser);
+        long totalMsgs = statsCalculator.getTotalMessages();
+
+        // Вычисляем процент от общего числа сообщений
+        double percentage = totalMsgs > 0 ? (double) userMsgs / totalMsgs * 100 : 0;
+
+        // Рисуем бар
+        String progressBar = context.drawProgressBar((int) percentage, 10);
+        String rank = context.determineRank(userMsgs);
+        long uniqueWords = statsCalculator.getUserUniqueWords(targetUser);
+
+        return new StringBuilder()
+            .append("╔════════ СТАТИСТИКА ════════╗\n")
+            .append(String.format("║ 👤 Пользователь: %s\n", targetUser))
+            .append(String.format("║ ✉️ Сообщений:    %d\n", userMsgs))
+            .append(String.format("║ 📚 Уникальных слов: %d\n", uniqueWords))
+            .append(String.format("║ 🏆 Ранг:         %s\n", rank))
+            .append(String.format("║ 📊 Активность:   %s (%.1f%%)\n", progressBar, percentage))
+            .append("╚════════════════════════════╝")
+            .toString();
+    }
+}
@@ -0,0 +1,29 @@
+package server.commands;
+
+import java.time.LocalTime;
+import java.time.format.DateTimeFormatter;
+
+import server.ChatCommand;
+import server.CommandContext;
+
+/**
+ * /time - время на сервере
+ */
+public class TimeCommand implements ChatCommand {
+    private static final DateTimeFormatter TIME_FORMAT = DateTimeFormatter.ofPattern("HH:mm:ss");
+
+    @Override
+    public String name() {
+        return "time";
+    }
+
+    @Override
+    public boolean isInline() {
+        return true;
+    }
+
+    @Override
+    public String execute(CommandContext context, String user, String args) {
+        return "🕒 Время на сервере: " + LocalTime.now().format(TIME_FORMAT);
+    }
+}
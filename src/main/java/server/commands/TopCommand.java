@@ -0,0 +1,56 @@
+package server.commands;
+
+import java.util.List;
+
+import server.ChatCommand;
+import server.CommandContext;
+import server.Leaderboard;
+
+/**
+ * /top - самые частые слова чата
+ */
+public class TopCommand implements ChatCommand {
+
+    @Override
+    public String name() {
+        return "top";
+    }
+
+    @Override
+    public String[] aliases() {
+        return new String[] { "t" };
+    }
+
+    @Override
+    public String usage() {
+        return "/top          - Топ слов чата";
+    }
+
+    @Override
+    public String cacheKey(String user, String args) {
+        return "top";
+    }
+
+    @Override
+    public String execute(CommandContext context, String user, String args) {
+        List<Leaderboard.Entry> top = context.getStatsCalculator().getTopWords(10);
+        if (top.isEmpty()) return "📊 Статистика слов пока пуста.";
+
+        long maxCount = top.get(0).getCount();
+        StringBuilder sb = new StringBuilder("🔥 ТОП-10 СЛОВ:\n");
+
+        int i = 1;
+        for (Leaderboard.Entry entry : top) {
+            // Нормализуем длину бара относительно самого частого слова
+            int barPercent = (int) ((double) entry.getCount() / maxCount * 100);
+            String bar = context.drawProgressBar(barPercent, 8);
+
+            sb.append(String.format("%2d. %-10s %s %d\n",
+                i++,
+                context.limitString(entry.getKey(), 10),
+                bar,
+                entry.getCount()));
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,35 @@
+package server.commands;
+
+import java.time.Duration;
+import java.time.Instant;
+
+import server.ChatCommand;
+import server.CommandContext;
+
+/**
+ * /uptime - время работы сервера
+ */
+public class UptimeCommand implements ChatCommand {
+
+    @Override
+    public String name() {
+        return "uptime";
+    }
+
+    @Override
+    public String usage() {
+        return "/uptime       - Время работы сервера";
+    }
+
+    @Override
+    public boolean isInline() {
+        return true;
+    }
+
+    @Override
+    public String execute(CommandContext context, String user, String args) {
+        Duration d = Duration.between(context.getStartTime(), Instant.now());
+        return String.format("⏳ Аптайм: %dд %02dч %02dм %02dс",
+            d.toDays(), d.toHoursPart(), d.toMinutesPart(), d.toSecondsPart());
+    }
+}
@@ -0,0 +1,61 @@
+package server.commands;
+
+import java.util.List;
+
+import server.ChatCommand;
+import server.CommandContext;
+import server.Leaderboard;
+import server.ServerConfig;
+import server.SessionRegistry;
+
+/**
+ * /users - самые активные пользователи
+ */
+public class UsersCommand implements ChatCommand {
+
+    @Override
+    public String name() {
+        return "users";
+    }
+
+    @Override
+    public String[] aliases() {
+        return new String[] { "u", "online" };
+    }
+
+    @Override
+    public String usage() {
+        return "/users        - Кто онлайн/активен";
+    }
+
+    @Override
+    public String execute(CommandContext context, String user, String args) {
+        // Счетчики онлайна - обход реестра сессий без копирования; считаются при каждом вызове,
+        // потому что версия статистики не меняется при входе, выходе и отключении
+        SessionRegistry sessions = context.getMessageBroker().getServer().getSessions();
+        int detached = sessions.countDetached();
+        int online = sessions.size() - detached;
+        int active = sessions.countActive(ServerConfig.getInstance().getClientTimeout());
+        String header = String.format("👥 Онлайн: %d, активны: %d", online, active)
+            + (detached > 0 ? String.format(", ждут переподключения: %d", detached) : "");
+
+        return header + "\n" + context.cached("users", () -> leaderboard(context));
+    }
+
+    // Таблица самых активных: зависит только от статистики, поэтому кэшируется по ее версии
+    private String leaderboard(CommandContext context) {
+        List<Leaderboard.Entry> top = context.getStatsCalculator().getTopUsers(15); // Ограничиваем список
+        if (top.isEmpty()) return "Нет активных пользователей.";
+
+        StringBuilder sb = new StringBuilder();
+        sb.append(String.format("👥 АКТИВНЫЕ ПОЛЬЗОВАТЕЛИ (%d):\n", context.getStatsCalculator().getActiveUsersCount()));
+        sb.append("──────────────────────────────\n");
+
+        for (Leaderboard.Entry e : top) {
+            String icon = e.getCount() > 50 ? "👑" : (e.getCount() > 10 ? "⭐️" : "👤");
+            sb.append(String.format("%s %-15s : %d msg\n", icon, e.getKey(), e.getCount()));
+        }
+
+        return sb.toString();
+    }
+}
@@ -0,0 +1,99 @@
+package test;
+
+import server.StatsCalculator;
+import server.StatsCheckpoint;
+import server.StatsSnapshot;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+
+/**
+ * Замер времени снимка и восстановления статистики на больших объемах.
+ * Аргументы: [количество пользователей] [количество слов]
+ */
+public class CheckpointBenchmark {
+    public static void main(String[] args) throws Exception {
+        int userCount = args.length > 0 ? Integer.parseInt(args[0]) : 50_000;
+        int wordCount = args.length > 1 ? Integer.parseInt(args[1]) : 3_000_000;
+
+        System.out.println("=== ТЕСТ СНИМКА СТАТИСТИКИ ===");
+        System.out.println("Пользователей: " + userCount + ", слов: " + wordCount);
+
+        StatsSnapshot generated = generate(userCount, wordCount);
+        StatsCalculator source = new StatsCalculator();
+        source.restore(generated);
+
+        Path file = Files.createTempFile("stats-checkpoint", ".bin");
+        try {
+            long start = System.nanoTime();
+            StatsSnapshot snapshot = source.snapshot();
+            long copied = System.nanoTime();
+            StatsCheckpoint.write(snapshot, file);
+            long written = System.nanoTime();
+
+            StatsSnapshot loaded = StatsCheckpoint.read(file);
+            long read = System.nanoTime();
+            StatsCalculator restored = new StatsCalculator();
+            restored.restore(loaded);
+            long applied = System.nanoTime();
+
+            System.out.println("\nРезультаты:");
+            System.out.println("  Размер файла:   " + Files.size(file) / 1024 + " КБ");
+            System.out.println("  Копия:          " + millis(copied - start) + " мс");
+            System.out.println("  Запись:         " + millis(written - copied) + " мс");
+            System.out.println("  Чтение (mmap):  " + millis(read - written) + " мс");
+            System.out.println("  Восстановление: " + millis(applied - read) + " мс");
+
+            boolean consistent = restored.getTotalMessages() == source.getTotalMessages()
+                && restored.getActiveUsersCount() == source.getActiveUsersCount()
+                && restored.getTopWords(1).get(0).getCount() == source.getTopWords(1).get(0).getCount();
+            System.out.println("\n" + (consistent ? "✅ ДАННЫЕ СОВПАДАЮТ" : "❌ ДАННЫЕ РАЗЛИЧАЮТСЯ"));
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    private static StatsSnapshot generate(int userCount, int wordCount) {
+        Random random = new Random(42);
+        long now = System.currentTimeMillis();
+
+        String[] users = new String[userCount];
+        long[] userMessages = new long[userCount];
+        long[] userWords = new long[userCount];
+        long[] userLastActivity = new long[userCount];
+        byte[][] userVocabulary = new byte[userCount][];
+        long totalMessages = 0;
+        long totalWords = 0;
+        for (int i = 0; i < userCount; i++) {
+            users[i] = "User_" + i;
+            userMessages[i] = 1 + random.nextInt(1000);
+            userWords[i] = userMessages[i] * 5;
+            userLastActivity[i] = now;
+            // Словарь от нескольких до тысяч слов: часть будет записана разреженно, часть плотно
+            byte[] registers = new byte[4096];
+            int filled = random.nextInt(registers.length);
+            for (int j = 0; j < filled; j++) {
+                registers[random.nextInt(registers.length)] = (byte) (1 + random.nextInt(10));
+            }
+            userVocabulary[i] = registers;
+            totalMessages += userMessages[i];
+            totalWords += userWords[i];
+        }
+
+        String[] words = new String[wordCount];
+        long[] wordCounts = new long[wordCount];
+        for (int i = 0; i < wordCount; i++) {
+            words[i] = "слово" + i;
+            wordCounts[i] = 1 + random.nextInt(10_000);
+        }
+
+        return new StatsSnapshot(now, totalMessages, totalWords,
+            users, userMessages, userWords, userLastActivity, userVocabulary,
+            words, wordCounts);
+    }
+
+    private static long millis(long nanos) {
+        return nanos / 1_000_000;
+    }
+}
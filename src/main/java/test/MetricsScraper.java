@@ -0,0 +1,120 @@
+package test;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Раз в секунду читает /metrics сервера и запоминает значения выбранных рядов.
+ * Работает в отдельном потоке, чтобы HTTP-запросы не задерживали генератор нагрузки.
+ */
+class MetricsScraper implements Runnable {
+    private final URL url;
+    private final String[] series;
+    private final double[][] values;
+    private final Thread thread;
+    private volatile long startNanos;
+    private volatile boolean running = true;
+    private volatile String lastError;
+
+    /**
+     * @param series ряды в формате экспозиции, например jvm_memory_used_bytes{area="heap"}
+     * @param seconds сколько секунд хранить
+     */
+    MetricsScraper(String url, String[] series, int seconds) throws IOException {
+        this.url = new URL(url);
+        this.series = series.clone();
+        this.values = new double[series.length][seconds];
+        for (double[] row : values) {
+            Arrays.fill(row, Double.NaN);
+        }
+        this.thread = new Thread(this, "MetricsScraper");
+        this.thread.setDaemon(true);
+    }
+
+    void start(long startNanos) {
+        this.startNanos = startNanos;
+        thread.start();
+    }
+
+    void stop() {
+        running = false;
+        thread.interrupt();
+    }
+
+    @Override
+    public void run() {
+        while (running) {
+            int second = (int) TimeUnit.NANOSECONDS.toSeconds(System.nanoTime() - startNanos);
+            if (second >= values[0].length) return;
+            try {
+                scrape(second);
+                lastError = null;
+            } catch (IOException e) {
+                lastError = e.getMessage();
+            }
+            long next = startNanos + TimeUnit.SECONDS.toNanos(second + 1);
+            try {
+                TimeUnit.NANOSECONDS.sleep(next - System.nanoTime());
+            } catch (InterruptedException e) {
+                return;
+            }
+        }
+    }
+
+    private void scrape(int second) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+        connection.setConnectTimeout(1000);
+        connection.setReadTimeout(1000);
+        try (BufferedReader reader = new BufferedReader(
+                new InputStreamReader(connection.getInputStream(), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                for (int i = 0; i < series.length; i++) {
+                    if (line.startsWith(series[i]) && line.length() > series[i].length()
+                            && line.charAt(series[i].length()) == ' ') {
+                        set(i, second, Double.parseDouble(line.substring(series[i].length() + 1).trim()));
+                    }
+                }
+            }
+        } finally {
+            connection.disconnect();
+        }
+    }
+
+    private synchronized void set(int index, int second, double value) {
+        values[index][second] = value;
+    }
+
+    /**
+     * Значение ряда за секунду, NaN - нет данных
+     */
+    synchronized double get(int index, int second) {
+        return second < values[index].length ? values[index][second] : Double.NaN;
+    }
+
+    /**
+     * Первое, максимальное и последнее значение ряда (NaN, если данных нет)
+     */
+    synchronized double[] summary(int index) {
+        double first = Double.NaN;
+        double max = Double.NaN;
+        double last = Double.NaN;
+        for (double value : values[index]) {
+            if (Double.isNaN(value)) continue;
+            if (Double.isNaN(first)) first = value;
+            if (Double.isNaN(max) || value > max) max = value;
+            last = value;
+        }
+        return new double[] {first, max, last};
+    }
+
+    String getLastError() {
+        return lastError;
+    }
+}
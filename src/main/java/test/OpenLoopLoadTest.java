@@ -0,0 +1,781 @@
+package test;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.Iterator;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import server.LatencyHistogram;
+
+/**
+ * Нагрузочный тест с открытым циклом.
+ * Сообщения отправляются по расписанию с заданным темпом независимо от того, успевает ли
+ * сервер отвечать. В текст сообщения встраиваются запланированное и фактическое время
+ * отправки; все клиенты читают рассылку и считают задержку доставки. Задержка от
+ * запланированного времени учитывает coordinated omission: если генератор или сервер
+ * отстали, ожидание в очереди тоже входит в результат.
+ *
+ * Часть клиентов можно сделать "плохими" (--profiles=slow:10,stalled:5,drip:5,reconnect:5):
+ * они медленно читают, перестают читать, отправляют строки по частям или массово
+ * переподключаются. Основной результат - задержка у здоровых клиентов, то есть насколько
+ * плохие клиенты ухудшают обслуживание остальных. С --metrics сервер опрашивается
+ * каждую секунду, чтобы видеть рост памяти и очередей.
+ *
+ * Все подключения обслуживает один поток на NIO-селекторе, поэтому тест держит тысячи клиентов.
+ * Сервер ограничивает каждого пользователя 60 сообщениями в минуту, поэтому темп
+ * не может превышать ~0.9 сообщения в секунду на отправляющее подключение.
+ *
+ * Запуск: java -cp target/classes test.OpenLoopLoadTest --connections=200 --rate=150 --duration=60 --csv=load.csv
+ */
+public class OpenLoopLoadTest {
+    private static final double MAX_RATE_PER_CONNECTION = 55.0 / 60; // запас до лимита 60/мин
+    private static final int MAX_PENDING_CONNECTS = 50;                // очередь accept сервера по умолчанию
+    private static final long TICK_NANOS = TimeUnit.MILLISECONDS.toNanos(10);
+    private static final long READ_BUDGET_PERIOD_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+    private static final byte[] MARKER = "] lt ".getBytes(StandardCharsets.US_ASCII);
+    private static final String WELCOME = "Добро пожаловать";
+    private static final String RATE_LIMITED = "Превышен лимит";
+    private static final String[] METRIC_SERIES = {
+        "jvm_memory_used_bytes{area=\"heap\"}",
+        "jvm_buffer_pool_used_bytes{pool=\"direct\"}",
+        "chat_queue_size{queue=\"outgoing\"}",
+        "chat_connected_clients"
+    };
+
+    /**
+     * Поведение клиента
+     */
+    enum Profile {
+        HEALTHY("healthy", "здоровые"),
+        SLOW("slow", "медленное чтение"),
+        STALLED("stalled", "перестали читать"),
+        DRIP("drip", "отправка по частям"),
+        RECONNECT("reconnect", "шторм переподключений");
+
+        private final String key;
+        private final String description;
+
+        Profile(String key, String description) {
+            this.key = key;
+            this.description = description;
+        }
+
+        /**
+         * Участвует ли клиент в отправке сообщений по расписанию
+         */
+        boolean sends() {
+            return this == HEALTHY || this == SLOW || this == DRIP;
+        }
+
+        static Profile parse(String key) {
+            for (Profile profile : values()) {
+                if (profile.key.equalsIgnoreCase(key)) return profile;
+            }
+            throw new IllegalArgumentException("Неизвестный профиль клиента: " + key);
+        }
+    }
+
+    /**
+     * Параметры теста (--ключ=значение)
+     */
+    static final class Options {
+        String host = "localhost";
+        int port = 12345;
+        int connections = 100;
+        double rate = 50;
+        int durationSeconds = 30;
+        int warmupSeconds = 5;
+        int drainSeconds = 3;
+        String csv = "";
+        String prefix = "lt";
+        Map<Profile, Integer> profiles = new EnumMap<>(Profile.class);
+        int slowReadBytesPerSecond = 2048;
+        int dripChunkBytes = 4;
+        int dripIntervalMillis = 50;
+        int reconnectIntervalSeconds = 5;
+        String metrics = "";
+
+        static Options parse(String[] args) {
+            Options options = new Options();
+            for (String arg : args) {
+                if (!arg.startsWith("--") || !arg.contains("=")) {
+                    throw new IllegalArgumentException("Ожидается --ключ=значение: " + arg);
+                }
+                String key = arg.substring(2, arg.indexOf('='));
+                String value = arg.substring(arg.indexOf('=') + 1);
+                switch (key) {
+                    case "host": options.host = value; break;
+                    case "port": options.port = Integer.parseInt(value); break;
+                    case "connections": options.connections = Integer.parseInt(value); break;
+                    case "rate": options.rate = Double.parseDouble(value); break;
+                    case "duration": options.durationSeconds = Integer.parseInt(value); break;
+                    case "warmup": options.warmupSeconds = Integer.parseInt(value); break;
+                    case "drain": options.drainSeconds = Integer.parseInt(value); break;
+                    case "csv": options.csv = value; break;
+                    case "prefix": options.prefix = value; break;
+                    case "profiles": options.profiles = parseProfiles(value); break;
+                    case "slow-read-bps": options.slowReadBytesPerSecond = Integer.parseInt(value); break;
+                    case "drip-bytes": options.dripChunkBytes = Integer.parseInt(value); break;
+                    case "drip-interval-ms": options.dripIntervalMillis = Integer.parseInt(value); break;
+                    case "reconnect-interval": options.reconnectIntervalSeconds = Integer.parseInt(value); break;
+                    case "metrics": options.metrics = value; break;
+                    default: throw new IllegalArgumentException("Неизвестный параметр: " + key);
+                }
+            }
+            return options;
+        }
+
+        // "slow:10,stalled:5" - доли клиентов в процентах, остальные здоровые
+        private static Map<Profile, Integer> parseProfiles(String value) {
+            Map<Profile, Integer> profiles = new EnumMap<>(Profile.class);
+            int total = 0;
+            for (String part : value.split(",")) {
+                if (part.trim().isEmpty()) continue;
+                String[] pair = part.split(":");
+                if (pair.length != 2) {
+                    throw new IllegalArgumentException("Ожидается профиль:процент: " + part);
+                }
+                Profile profile = Profile.parse(pair[0].trim());
+                int percent = Integer.parseInt(pair[1].trim());
+                if (profile == Profile.HEALTHY || percent < 0) {
+                    throw new IllegalArgumentException("Недопустимая доля профиля: " + part);
+                }
+                profiles.put(profile, percent);
+                total += percent;
+            }
+            if (total >= 100) {
+                throw new IllegalArgumentException("Доля плохих клиентов должна быть меньше 100%");
+            }
+            return profiles;
+        }
+
+        /**
+         * Профили подключений в случайном (но воспроизводимом) порядке
+         */
+        Profile[] assignProfiles() {
+            Profile[] assigned = new Profile[connections];
+            int index = 0;
+            for (Map.Entry<Profile, Integer> entry : profiles.entrySet()) {
+                int count = (int) Math.round(connections * entry.getValue() / 100.0);
+                for (int i = 0; i < count && index < connections - 1; i++) {
+                    assigned[index++] = entry.getKey();
+                }
+            }
+            while (index < connections) {
+                assigned[index++] = Profile.HEALTHY;
+            }
+            Collections.shuffle(java.util.Arrays.asList(assigned), new Random(42));
+            return assigned;
+        }
+    }
+
+    /**
+     * Состояние одного подключения
+     */
+    static final class Connection {
+        final int id;
+        final Profile profile;
+        final ByteBuffer readBuffer = ByteBuffer.allocate(64 * 1024);
+        final ArrayDeque<ByteBuffer> pendingWrites = new ArrayDeque<>();
+        final ArrayDeque<ByteBuffer> dripQueue = new ArrayDeque<>();
+        SocketChannel channel;
+        SelectionKey key;
+        String name;
+        int generation;
+        boolean registered;
+        boolean reading = true;
+        long readBudget = Long.MAX_VALUE;
+        long nextDripNanos;
+
+        Connection(int id, Profile profile) {
+            this.id = id;
+            this.profile = profile;
+        }
+    }
+
+    private final Options options;
+    private final Selector selector;
+    private final Connection[] connections;
+    private final Profile[] profiles;
+    private final int[] profileCounts = new int[Profile.values().length];
+    private int connected;
+    private int registered;
+    private int failed;
+    private int reconnects;
+
+    // Результаты: задержка здоровых получателей для сообщений от отправителей без искажений
+    private final LatencyHistogram correctedLatency = new LatencyHistogram();
+    private final LatencyHistogram uncorrectedLatency = new LatencyHistogram();
+    private final LatencyHistogram schedulerLag = new LatencyHistogram();
+    private final LatencyHistogram dripSenderLatency = new LatencyHistogram();
+    private final LatencyHistogram[] latencyByProfile = new LatencyHistogram[Profile.values().length];
+    private final long[] receivedByProfile = new long[Profile.values().length];
+    private final long[] fields = new long[4];
+    private LatencyHistogram[] perSecondLatency;
+    private long[] perSecondSent;
+    private long[] perSecondReceived;
+    private MetricsScraper scraper;
+    private long loadStart;
+    private long measureStart;
+    private long loadEnd;
+    private long measuredSent;
+    private long rateLimited;
+
+    OpenLoopLoadTest(Options options) throws IOException {
+        this.options = options;
+        this.selector = Selector.open();
+        this.connections = new Connection[options.connections];
+        this.profiles = options.assignProfiles();
+        for (Profile profile : profiles) {
+            profileCounts[profile.ordinal()]++;
+        }
+        for (int i = 0; i < latencyByProfile.length; i++) {
+            latencyByProfile[i] = new LatencyHistogram();
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        Options options = Options.parse(args);
+        OpenLoopLoadTest test = new OpenLoopLoadTest(options);
+
+        int senders = 0;
+        for (Profile profile : test.profiles) {
+            if (profile.sends()) senders++;
+        }
+        double maxRate = senders * MAX_RATE_PER_CONNECTION;
+        if (options.rate > maxRate) {
+            System.out.printf("⚠️  Темп %.1f/с превышает лимит сервера для %d отправителей, используется %.1f/с%n",
+                options.rate, senders, maxRate);
+            options.rate = maxRate;
+        }
+
+        test.connectAll();
+        test.runLoad();
+        test.closeAll();
+        test.printReport();
+        if (!options.csv.isEmpty()) {
+            test.writeCsv();
+        }
+    }
+
+    // ================= ПОДКЛЮЧЕНИЕ =================
+
+    void connectAll() throws IOException {
+        System.out.printf("🔌 Подключение %d клиентов к %s:%d...%n", options.connections, options.host, options.port);
+        for (Profile profile : Profile.values()) {
+            if (profileCounts[profile.ordinal()] > 0) {
+                System.out.printf("   %-10s %5d  (%s)%n", profile.key, profileCounts[profile.ordinal()], profile.description);
+            }
+        }
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(30 + options.connections / 100);
+        int opened = 0;
+        while (registered + failed < options.connections && System.nanoTime() < deadline) {
+            // Подключаемся порциями, чтобы не переполнить очередь accept сервера
+            while (opened < options.connections && opened - connected - failed < MAX_PENDING_CONNECTS) {
+                Connection connection = new Connection(opened, profiles[opened]);
+                connections[opened++] = connection;
+                open(connection);
+            }
+            selector.select(100);
+            processSelected();
+        }
+        System.out.printf("   Зарегистрировано: %d, ошибок: %d%n", registered, failed);
+        if (registered == 0) {
+            throw new IOException("Ни один клиент не зарегистрировался");
+        }
+    }
+
+    private void open(Connection connection) throws IOException {
+        SocketChannel channel = SocketChannel.open();
+        channel.configureBlocking(false);
+        channel.socket().setTcpNoDelay(true);
+        connection.channel = channel;
+        connection.name = options.prefix + "-" + connection.id
+            + (connection.generation > 0 ? "-r" + connection.generation : "");
+        try {
+            if (channel.connect(new InetSocketAddress(options.host, options.port))) {
+                connected++;
+                connection.key = channel.register(selector, SelectionKey.OP_READ, connection);
+            } else {
+                connection.key = channel.register(selector, SelectionKey.OP_CONNECT, connection);
+            }
+        } catch (IOException e) {
+            fail(connection, e);
+        }
+    }
+
+    // ================= НАГРУЗКА =================
+
+    void runLoad() throws IOException {
+        long interval = (long) (TimeUnit.SECONDS.toNanos(1) / options.rate);
+        int seconds = options.durationSeconds;
+        perSecondLatency = new LatencyHistogram[seconds];
+        perSecondSent = new long[seconds];
+        perSecondReceived = new long[seconds];
+        for (int i = 0; i < seconds; i++) {
+            perSecondLatency[i] = new LatencyHistogram();
+        }
+
+        System.out.printf("🚀 Нагрузка: %.1f сообщ./с, %d с (прогрев %d с)...%n", options.rate, seconds, options.warmupSeconds);
+        loadStart = System.nanoTime();
+        measureStart = loadStart + TimeUnit.SECONDS.toNanos(options.warmupSeconds);
+        loadEnd = loadStart + TimeUnit.SECONDS.toNanos(seconds);
+        long drainEnd = loadEnd + TimeUnit.SECONDS.toNanos(options.drainSeconds);
+        if (!options.metrics.isEmpty()) {
+            scraper = new MetricsScraper(options.metrics, METRIC_SERIES, seconds + options.drainSeconds + 1);
+            scraper.start(loadStart);
+        }
+        startProfiles();
+
+        long nextSend = loadStart;
+        long nextBudget = loadStart + READ_BUDGET_PERIOD_NANOS;
+        long nextStorm = loadStart + TimeUnit.SECONDS.toNanos(options.reconnectIntervalSeconds);
+        long sequence = 0;
+        int nextConnection = 0;
+        while (true) {
+            long now = System.nanoTime();
+            if (now >= drainEnd) break;
+
+            // Отправляем все сообщения, время которых наступило (расписание не сдвигается при отставании)
+            while (nextSend <= now && nextSend < loadEnd) {
+                Connection connection = nextSender(nextConnection);
+                if (connection == null) break;
+                nextConnection = connection.id + 1;
+                send(connection, sequence++, nextSend);
+                nextSend += interval;
+            }
+
+            if (now >= nextBudget) {
+                refillReadBudgets();
+                nextBudget += READ_BUDGET_PERIOD_NANOS;
+            }
+            drip(now);
+            if (now >= nextStorm && now < loadEnd) {
+                reconnectStorm();
+                nextStorm += TimeUnit.SECONDS.toNanos(options.reconnectIntervalSeconds);
+            }
+
+            long wait = Math.min(nextSend < loadEnd ? nextSend : drainEnd, now + TICK_NANOS) - System.nanoTime();
+            if (wait > TimeUnit.MILLISECONDS.toNanos(1)) {
+                selector.select(TimeUnit.NANOSECONDS.toMillis(wait));
+            } else {
+                selector.selectNow();
+            }
+            processSelected();
+        }
+        if (scraper != null) {
+            scraper.stop();
+        }
+    }
+
+    private Connection nextSender(int from) {
+        for (int i = 0; i < connections.length; i++) {
+            Connection connection = connections[(from + i) % connections.length];
+            if (connection != null && connection.profile.sends() && connection.registered && connection.channel.isOpen()) {
+                return connection;
+            }
+        }
+        return null;
+    }
+
+    private void send(Connection connection, long sequence, long intended) {
+        long actual = System.nanoTime();
+        String line = "lt " + connection.id + " " + sequence + " " + intended + " " + actual + "\n";
+        ByteBuffer buffer = ByteBuffer.wrap(line.getBytes(StandardCharsets.US_ASCII));
+        if (connection.profile == Profile.DRIP) {
+            connection.dripQueue.add(buffer);
+        } else {
+            write(connection, buffer);
+        }
+
+        if (intended >= measureStart) {
+            measuredSent++;
+            schedulerLag.record(actual - intended);
+        }
+        perSecondSent[second(intended)]++;
+    }
+
+    private void write(Connection connection, ByteBuffer buffer) {
+        try {
+            if (connection.pendingWrites.isEmpty()) {
+                connection.channel.write(buffer);
+            }
+            if (buffer.hasRemaining()) {
+                connection.pendingWrites.add(buffer);
+                updateInterest(connection);
+            }
+        } catch (IOException e) {
+            fail(connection, e);
+        }
+    }
+
+    private void updateInterest(Connection connection) {
+        if (connection.key == null || !connection.key.isValid()) return;
+        int ops = (connection.reading ? SelectionKey.OP_READ : 0)
+            | (connection.pendingWrites.isEmpty() ? 0 : SelectionKey.OP_WRITE);
+        connection.key.interestOps(ops);
+    }
+
+    // ================= ПРОФИЛИ КЛИЕНТОВ =================
+
+    private void startProfiles() {
+        for (Connection connection : connections) {
+            if (connection == null || !connection.channel.isOpen()) continue;
+            if (connection.profile == Profile.STALLED) {
+                connection.reading = false;
+                updateInterest(connection);
+            } else if (connection.profile == Profile.SLOW) {
+                connection.readBudget = readBudgetPerPeriod();
+            }
+        }
+    }
+
+    private long readBudgetPerPeriod() {
+        return Math.max(1, options.slowReadBytesPerSecond * READ_BUDGET_PERIOD_NANOS / TimeUnit.SECONDS.toNanos(1));
+    }
+
+    private void refillReadBudgets() {
+        long budget = readBudgetPerPeriod();
+        for (Connection connection : connections) {
+            if (connection != null && connection.profile == Profile.SLOW) {
+                connection.readBudget = budget;
+                if (!connection.reading) {
+                    connection.reading = true;
+                    updateInterest(connection);
+                }
+            }
+        }
+    }
+
+    // Отправка строк по несколько байт с паузами: сервер видит незавершенные строки
+    private void drip(long now) {
+        for (Connection connection : connections) {
+            if (connection == null || connection.profile != Profile.DRIP || connection.dripQueue.isEmpty()
+                    || now < connection.nextDripNanos || !connection.channel.isOpen()) {
+                continue;
+            }
+            ByteBuffer message = connection.dripQueue.peek();
+            int chunk = Math.min(options.dripChunkBytes, message.remaining());
+            ByteBuffer slice = message.slice();
+            slice.limit(chunk);
+            message.position(message.position() + chunk);
+            if (!message.hasRemaining()) {
+                connection.dripQueue.poll();
+            }
+            write(connection, slice);
+            connection.nextDripNanos = now + TimeUnit.MILLISECONDS.toNanos(options.dripIntervalMillis);
+        }
+    }
+
+    // Все клиенты профиля reconnect одновременно рвут соединение и подключаются заново
+    private void reconnectStorm() throws IOException {
+        for (Connection connection : connections) {
+            if (connection == null || connection.profile != Profile.RECONNECT) continue;
+            if (connection.channel.isOpen()) {
+                if (connection.registered) registered--;
+                connected--;
+                connection.channel.close();
+            }
+            connection.registered = false;
+            connection.readBuffer.clear();
+            connection.pendingWrites.clear();
+            connection.generation++;
+            reconnects++;
+            open(connection);
+        }
+    }
+
+    // ================= ОБРАБОТКА СОБЫТИЙ =================
+
+    private void processSelected() {
+        Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+        while (keys.hasNext()) {
+            SelectionKey key = keys.next();
+            keys.remove();
+            Connection connection = (Connection) key.attachment();
+            try {
+                if (!key.isValid()) continue;
+                if (key.isConnectable()) {
+                    connection.channel.finishConnect();
+                    connected++;
+                    key.interestOps(SelectionKey.OP_READ);
+                }
+                if (key.isValid() && key.isWritable()) {
+                    flushPending(connection);
+                }
+                if (key.isValid() && key.isReadable()) {
+                    read(connection);
+                }
+            } catch (IOException e) {
+                fail(connection, e);
+            }
+        }
+    }
+
+    private void flushPending(Connection connection) throws IOException {
+        while (!connection.pendingWrites.isEmpty()) {
+            ByteBuffer buffer = connection.pendingWrites.peek();
+            connection.channel.write(buffer);
+            if (buffer.hasRemaining()) return;
+            connection.pendingWrites.poll();
+        }
+        updateInterest(connection);
+    }
+
+    private void read(Connection connection) throws IOException {
+        ByteBuffer buffer = connection.readBuffer;
+        if (connection.readBudget <= 0) {
+            // Медленный клиент исчерпал бюджет: ждем следующего пополнения
+            connection.reading = false;
+            updateInterest(connection);
+            return;
+        }
+        buffer.limit((int) Math.min(buffer.capacity(), buffer.position() + connection.readBudget));
+        int n = connection.channel.read(buffer);
+        buffer.limit(buffer.capacity());
+        if (n < 0) {
+            throw new IOException("сервер закрыл соединение");
+        }
+        if (connection.readBudget != Long.MAX_VALUE) {
+            connection.readBudget -= n;
+        }
+        long now = System.nanoTime();
+
+        // Разбираем все полные строки, остаток переносим в начало буфера
+        byte[] data = buffer.array();
+        int limit = buffer.position();
+        int lineStart = 0;
+        for (int i = 0; i < limit; i++) {
+            if (data[i] == '\n') {
+                onLine(connection, data, lineStart, i, now);
+                lineStart = i + 1;
+            }
+        }
+        if (lineStart == 0 && limit == buffer.capacity()) {
+            lineStart = limit; // строка длиннее буфера - отбрасываем
+        }
+        System.arraycopy(data, lineStart, data, 0, limit - lineStart);
+        buffer.position(limit - lineStart);
+    }
+
+    private void onLine(Connection connection, byte[] data, int start, int end, long now) {
+        int marker = indexOf(data, start, end, MARKER);
+        if (marker >= 0) {
+            onLatencyLine(connection, data, marker + MARKER.length, end, now);
+            return;
+        }
+        if (data[start] == '[') {
+            return; // прочие сообщения чата и бота
+        }
+
+        // Ответы сервера лично клиенту - редкие, их можно декодировать
+        String line = new String(data, start, end - start, StandardCharsets.UTF_8).trim();
+        if (!connection.registered && line.startsWith("Введите")) {
+            write(connection, ByteBuffer.wrap((connection.name + "\n").getBytes(StandardCharsets.UTF_8)));
+        } else if (!connection.registered && line.startsWith(WELCOME)) {
+            connection.registered = true;
+            registered++;
+        } else if (line.startsWith(RATE_LIMITED)) {
+            rateLimited++;
+        }
+    }
+
+    // Разбор "<id> <seq> <запланировано> <отправлено>" без выделения памяти
+    private void onLatencyLine(Connection receiver, byte[] data, int position, int end, long now) {
+        int field = 0;
+        long value = 0;
+        boolean inNumber = false;
+        for (int i = position; i < end && field < fields.length; i++) {
+            byte b = data[i];
+            if (b >= '0' && b <= '9') {
+                value = value * 10 + (b - '0');
+                inNumber = true;
+            } else if (inNumber) {
+                fields[field++] = value;
+                value = 0;
+                inNumber = false;
+            }
+        }
+        if (inNumber && field < fields.length) {
+            fields[field++] = value;
+        }
+        if (field < fields.length || fields[0] >= connections.length) return;
+
+        long intended = fields[2];
+        long actual = fields[3];
+        if (intended < loadStart || intended >= loadEnd) return;
+
+        long latency = now - intended;
+        boolean measured = intended >= measureStart;
+        if (measured) {
+            receivedByProfile[receiver.profile.ordinal()]++;
+        }
+        if (receiver.profile == Profile.HEALTHY) {
+            perSecondReceived[second(intended)]++;
+        }
+
+        // Отправка по частям задерживает сообщение еще до сервера - считаем такие отдельно
+        if (connections[(int) fields[0]].profile == Profile.DRIP) {
+            if (measured && receiver.profile == Profile.HEALTHY) {
+                dripSenderLatency.record(latency);
+            }
+            return;
+        }
+        if (measured) {
+            latencyByProfile[receiver.profile.ordinal()].record(latency);
+        }
+        if (receiver.profile != Profile.HEALTHY) return;
+
+        perSecondLatency[second(intended)].record(latency);
+        if (measured) {
+            correctedLatency.record(latency);
+            uncorrectedLatency.record(now - actual);
+        }
+    }
+
+    private static int indexOf(byte[] data, int start, int end, byte[] pattern) {
+        outer:
+        for (int i = start; i <= end - pattern.length; i++) {
+            for (int j = 0; j < pattern.length; j++) {
+                if (data[i + j] != pattern[j]) continue outer;
+            }
+            return i;
+        }
+        return -1;
+    }
+
+    private int second(long nanos) {
+        int second = (int) TimeUnit.NANOSECONDS.toSeconds(nanos - loadStart);
+        return Math.max(0, Math.min(perSecondSent.length - 1, second));
+    }
+
+    private void fail(Connection connection, IOException e) {
+        if (connection.channel.isOpen()) {
+            if (connection.registered) registered--;
+            connection.registered = false;
+            failed++;
+            System.err.println("Клиент " + connection.name + ": " + e.getMessage());
+            try {
+                connection.channel.close();
+            } catch (IOException ignored) {
+                // соединение уже закрыто
+            }
+        }
+    }
+
+    void closeAll() throws IOException {
+        for (Connection connection : connections) {
+            if (connection != null) {
+                connection.channel.close();
+            }
+        }
+        selector.close();
+    }
+
+    // ================= ОТЧЕТ =================
+
+    void printReport() {
+        double measuredSeconds = options.durationSeconds - options.warmupSeconds;
+        long expected = measuredSent * profileCounts[Profile.HEALTHY.ordinal()];
+        long received = receivedByProfile[Profile.HEALTHY.ordinal()];
+        System.out.println("\n" + "=".repeat(60));
+        System.out.println("РЕЗУЛЬТАТЫ (без прогрева)");
+        System.out.println("=".repeat(60));
+        System.out.printf("Подключений: %d, ошибок: %d, переподключений: %d%n", options.connections, failed, reconnects);
+        System.out.printf("Отправлено: %d (%.1f сообщ./с при цели %.1f)%n",
+            measuredSent, measuredSent / measuredSeconds, options.rate);
+        System.out.printf("Получено здоровыми клиентами: %d из ~%d ожидаемых (%.2f%%)%n",
+            received, expected, expected > 0 ? received * 100.0 / expected : 0);
+        System.out.printf("Отклонено рейт-лимитом: %d%n", rateLimited);
+        printHistogram("Отставание генератора от расписания", schedulerLag);
+        printHistogram("Задержка рассылки от запланированной отправки (с поправкой на CO)", correctedLatency);
+        printHistogram("Задержка рассылки от фактической отправки (без поправки)", uncorrectedLatency);
+
+        if (!options.profiles.isEmpty()) {
+            System.out.println("\nПо профилям получателей (задержка с поправкой на CO, мс):");
+            System.out.printf("   %-10s %6s %10s %8s %8s %8s %8s%n", "профиль", "кол-во", "получено", "p50", "p99", "p99.9", "max");
+            for (Profile profile : Profile.values()) {
+                int count = profileCounts[profile.ordinal()];
+                if (count == 0) continue;
+                LatencyHistogram histogram = latencyByProfile[profile.ordinal()];
+                System.out.printf("   %-10s %6d %10d %8.2f %8.2f %8.2f %8.2f%n", profile.key, count,
+                    receivedByProfile[profile.ordinal()],
+                    millis(histogram.getValueAtPercentile(50)),
+                    millis(histogram.getValueAtPercentile(99)),
+                    millis(histogram.getValueAtPercentile(99.9)),
+                    millis(histogram.getMax()));
+            }
+            if (profileCounts[Profile.DRIP.ordinal()] > 0) {
+                printHistogram("Задержка сообщений от drip-отправителей у здоровых клиентов", dripSenderLatency);
+            }
+        }
+
+        if (scraper != null) {
+            System.out.println("\nСервер (/metrics: начало / максимум / конец):");
+            for (int i = 0; i < METRIC_SERIES.length; i++) {
+                double[] summary = scraper.summary(i);
+                boolean bytes = METRIC_SERIES[i].contains("_bytes");
+                double scale = bytes ? 1024 * 1024 : 1;
+                System.out.printf("   %-45s %10.1f %10.1f %10.1f%s%n", METRIC_SERIES[i],
+                    summary[0] / scale, summary[1] / scale, summary[2] / scale, bytes ? " МБ" : "");
+            }
+            if (scraper.getLastError() != null) {
+                System.out.println("   ⚠️  Ошибка опроса метрик: " + scraper.getLastError());
+            }
+        }
+    }
+
+    private static void printHistogram(String title, LatencyHistogram histogram) {
+        System.out.println(title + ":");
+        System.out.printf("   n=%d  p50=%.2f  p90=%.2f  p99=%.2f  p99.9=%.2f  max=%.2f мс%n",
+            histogram.getCount(),
+            millis(histogram.getValueAtPercentile(50)),
+            millis(histogram.getValueAtPercentile(90)),
+            millis(histogram.getValueAtPercentile(99)),
+            millis(histogram.getValueAtPercentile(99.9)),
+            millis(histogram.getMax()));
+    }
+
+    void writeCsv() throws IOException {
+        try (PrintWriter csv = new PrintWriter(Files.newBufferedWriter(Paths.get(options.csv), StandardCharsets.UTF_8))) {
+            csv.print("second,sent,received,p50_ms,p90_ms,p99_ms,max_ms");
+            if (scraper != null) {
+                csv.print(",heap_mb,direct_mb,outgoing_queue,connected_clients");
+            }
+            csv.println();
+            for (int i = 0; i < perSecondSent.length; i++) {
+                LatencyHistogram histogram = perSecondLatency[i];
+                csv.printf(Locale.ROOT, "%d,%d,%d,%.3f,%.3f,%.3f,%.3f", i, perSecondSent[i], perSecondReceived[i],
+                    millis(histogram.getValueAtPercentile(50)),
+                    millis(histogram.getValueAtPercentile(90)),
+                    millis(histogram.getValueAtPercentile(99)),
+                    millis(histogram.getMax()));
+                if (scraper != null) {
+                    csv.printf(Locale.ROOT, ",%.1f,%.1f,%.0f,%.0f",
+                        scraper.get(0, i) / (1024 * 1024), scraper.get(1, i) / (1024 * 1024),
+                        scraper.get(2, i), scraper.get(3, i));
+                }
+                csv.println();
+            }
+        }
+        System.out.println("📄 Посекундная статистика: " + options.csv);
+    }
+
+    private static double millis(long nanos) {
+        return nanos / 1_000_000.0;
+    }
+}
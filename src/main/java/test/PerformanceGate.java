@@ -0,0 +1,457 @@
+package test;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.PrintWriter;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+import server.AnalyticsBot;
+import server.ChatServer;
+import server.LatencyHistogram;
+import server.Logger;
+import server.LoopbackTransport;
+import server.Transport;
+
+/**
+ * Проверка регрессий производительности (профиль Maven perf).
+ * Поднимает сервер в том же процессе на LoopbackTransport и прогоняет две фазы:
+ * <ul>
+ *   <li>открытый цикл - фиксированный сценарий (N клиентов, M сообщений в секунду, K команд):
+ *       p99 задержки рассылки, выделение памяти, пик кучи. Число доставок здесь задано темпом
+ *       отправки, поэтому оно проверяется только на полноту;</li>
+ *   <li>насыщение - замкнутый цикл с ограниченным числом сообщений в пути: максимальная
+ *       устойчивая пропускная способность и процессорное время сервера на доставку.</li>
+ * </ul>
+ * Метрики сравниваются с базовым файлом. Если метрика хуже базовой больше допустимого
+ * или часть сообщений не дошла, процесс завершается с кодом 1 и сборка падает.
+ *
+ * Запуск: mvn -Pperf verify
+ * Обновление базы: mvn -Pperf verify -Dperf.update=true
+ */
+public class PerformanceGate {
+    private static final String MARKER = "gate ";
+    private static final String SATURATION_MARKER = "sat ";
+    private static final int SATURATION_RAMP_SECONDS = 2; // начало фазы насыщения не учитывается
+    private static final String[] COMMANDS = {"/stats", "/top", "/users", "/rate", "/me"};
+    private static final String[] WORDS = {
+        "привет", "сервер", "сообщение", "очередь", "задержка", "клиент", "поток", "память",
+        "рассылка", "команда", "статистика", "пользователь", "чат", "сеть", "буфер", "тест"
+    };
+
+    /**
+     * Метрики проверки: направление и абсолютный допуск, ниже которого разница считается шумом
+     */
+    enum Metric {
+        SATURATION_THROUGHPUT("saturation.deliveries.per.second", "Доставок в секунду (насыщ.)", true, 0),
+        CPU_PER_DELIVERY("cpu.us.per.delivery", "CPU сервера на доставку, мкс", false, 0.1),
+        FANOUT_P99("fanout.p99.ms", "p99 задержки рассылки, мс", false, 2),
+        ALLOCATION_RATE("allocation.mb.per.second", "Выделение памяти, МБ/с", false, 2),
+        HEAP_PEAK("heap.peak.mb", "Пик кучи, МБ", false, 16);
+
+        private final String key;
+        private final String description;
+        private final boolean higherIsBetter;
+        private final double absoluteSlack;
+
+        Metric(String key, String description, boolean higherIsBetter, double absoluteSlack) {
+            this.key = key;
+            this.description = description;
+            this.higherIsBetter = higherIsBetter;
+            this.absoluteSlack = absoluteSlack;
+        }
+
+        /**
+         * true - значение хуже базового больше допуска
+         */
+        boolean regressed(double baseline, double current, double tolerance) {
+            double delta = higherIsBetter ? baseline - current : current - baseline;
+            return delta > baseline * tolerance && delta > absoluteSlack;
+        }
+    }
+
+    /**
+     * Параметры сценария (--ключ=значение)
+     */
+    static final class Options {
+        Path baseline = Paths.get("perf/baseline.properties");
+        double tolerance = 0.15;
+        int clients = 50;
+        double rate = 40;
+        int commands = 100;
+        int durationSeconds = 20;
+        int warmupSeconds = 5;
+        int saturationSeconds = 10;
+        int inflight = 4;
+        boolean update;
+
+        static Options parse(String[] args) {
+            Options options = new Options();
+            for (String arg : args) {
+                if (!arg.startsWith("--") || !arg.contains("=")) {
+                    throw new IllegalArgumentException("Ожидается --ключ=значение: " + arg);
+                }
+                String key = arg.substring(2, arg.indexOf('='));
+                String value = arg.substring(arg.indexOf('=') + 1);
+                switch (key) {
+                    case "baseline": options.baseline = Paths.get(value); break;
+                    case "tolerance": options.tolerance = Double.parseDouble(value); break;
+                    case "clients": options.clients = Integer.parseInt(value); break;
+                    case "rate": options.rate = Double.parseDouble(value); break;
+                    case "commands": options.commands = Integer.parseInt(value); break;
+                    case "duration": options.durationSeconds = Integer.parseInt(value); break;
+                    case "warmup": options.warmupSeconds = Integer.parseInt(value); break;
+                    case "saturation": options.saturationSeconds = Integer.parseInt(value); break;
+                    case "inflight": options.inflight = Integer.parseInt(value); break;
+                    case "update": options.update = Boolean.parseBoolean(value); break;
+                    default: throw new IllegalArgumentException("Неизвестный параметр: " + key);
+                }
+            }
+            if (options.saturationSeconds <= SATURATION_RAMP_SECONDS) {
+                throw new IllegalArgumentException("Фаза насыщения должна быть длиннее " + SATURATION_RAMP_SECONDS + " с");
+            }
+            if (options.inflight <= 0) {
+                throw new IllegalArgumentException("inflight должен быть положительным: " + options.inflight);
+            }
+            return options;
+        }
+
+        String scenario() {
+            return String.format(Locale.ROOT, "clients=%d rate=%.1f commands=%d duration=%d warmup=%d saturation=%d inflight=%d",
+                clients, rate, commands, durationSeconds, warmupSeconds, saturationSeconds, inflight);
+        }
+    }
+
+    private final Options options;
+    private final LatencyHistogram fanoutLatency = new LatencyHistogram();
+    private final AtomicLong delivered = new AtomicLong(0);
+    private final AtomicLong commandResponses = new AtomicLong(0);
+    private final AtomicLong saturationDelivered = new AtomicLong(0);
+    private volatile long measureStart = Long.MAX_VALUE;
+    private volatile long heapPeak;
+    private volatile boolean sampling;
+    private boolean complete;
+
+    PerformanceGate(Options options) {
+        this.options = options;
+    }
+
+    public static void main(String[] args) throws Exception {
+        Options options = Options.parse(args);
+        // Снимок статистики на диск искажает замер и не нужен проверке
+        if (System.getProperty("server.analytics.checkpoint.file") == null) {
+            System.setProperty("server.analytics.checkpoint.file", "");
+        }
+        // Фаза насыщения шлет быстрее обычного рейт-лимита
+        if (System.getProperty("server.rate.limit.per.minute") == null) {
+            System.setProperty("server.rate.limit.per.minute", "1000000");
+        }
+        Logger.setLogLevel(Logger.LogLevel.WARN);
+
+        System.out.println("=== ПРОВЕРКА РЕГРЕССИЙ ПРОИЗВОДИТЕЛЬНОСТИ ===");
+        System.out.println("Сценарий: " + options.scenario());
+        PerformanceGate gate = new PerformanceGate(options);
+        double[] results = gate.run();
+
+        if (!gate.complete) {
+            System.out.println("\n❌ Часть сообщений открытого цикла не доставлена, база не сравнивается");
+            System.exit(1);
+        }
+        if (options.update) {
+            writeBaseline(options, results);
+            System.out.println("\n📄 Базовые значения записаны в " + options.baseline);
+            System.exit(0);
+        }
+        System.exit(compare(options, results) ? 0 : 1);
+    }
+
+    // ================= СЦЕНАРИЙ =================
+
+    double[] run() throws Exception {
+        LoopbackTransport transport = new LoopbackTransport();
+        ChatServer server = new ChatServer(transport, options.clients + 8);
+        AnalyticsBot bot = new AnalyticsBot(server.getMessageBroker());
+        bot.start();
+        Thread acceptor = new Thread(server::start, "ChatServer-Acceptor");
+        acceptor.setDaemon(true);
+        acceptor.start();
+
+        List<PrintWriter> writers = new ArrayList<>();
+        for (int i = 0; i < options.clients; i++) {
+            Transport.Connection connection = transport.connect();
+            BufferedReader in = new BufferedReader(new InputStreamReader(connection.getInputStream()));
+            PrintWriter out = new PrintWriter(connection.getOutputStream(), true);
+            in.readLine();                  // приглашение ввести имя
+            out.println("gate" + i);
+            in.readLine();                  // приветствие
+            writers.add(out);
+            Thread reader = new Thread(() -> readLoop(in), "PerfGate-Reader-" + i);
+            reader.setDaemon(true);
+            reader.start();
+        }
+
+        Thread heapSampler = new Thread(this::sampleHeap, "PerfGate-HeapSampler");
+        heapSampler.setDaemon(true);
+        heapSampler.start();
+
+        // Открытый цикл: сообщения и команды идут по расписанию, задержка считается от него
+        long start = System.nanoTime();
+        long warmupEnd = start + TimeUnit.SECONDS.toNanos(options.warmupSeconds);
+        long end = start + TimeUnit.SECONDS.toNanos(options.durationSeconds);
+        long messageInterval = (long) (TimeUnit.SECONDS.toNanos(1) / options.rate);
+        long commandInterval = options.commands > 0
+            ? TimeUnit.SECONDS.toNanos(options.durationSeconds) / options.commands : Long.MAX_VALUE;
+        long nextMessage = start;
+        long nextCommand = start + commandInterval / 2;
+        long sent = 0;
+        long measuredSent = 0;
+        int commandsSent = 0;
+        int nextWriter = 0;
+        long allocatedAtStart = 0;
+
+        while (true) {
+            long now = System.nanoTime();
+            if (measureStart == Long.MAX_VALUE && now >= warmupEnd) {
+                allocatedAtStart = allocatedBytes();
+                heapPeak = 0;
+                sampling = true;
+                measureStart = warmupEnd;
+            }
+            long next = Math.min(nextMessage, nextCommand);
+            if (next >= end) break;
+            if (now < next) {
+                LockSupport.parkNanos(next - now);
+                continue;
+            }
+            PrintWriter out = writers.get(nextWriter++ % writers.size());
+            if (nextMessage <= nextCommand) {
+                out.println(MARKER + nextMessage + " " + words(sent++));
+                if (nextMessage >= warmupEnd) measuredSent++;
+                nextMessage += messageInterval;
+            } else {
+                out.println(COMMANDS[commandsSent++ % COMMANDS.length]);
+                nextCommand += commandInterval;
+            }
+        }
+        long measuredNanos = System.nanoTime() - measureStart;
+        long allocated = allocatedBytes() - allocatedAtStart;
+        sampling = false;
+
+        // Даем сообщениям из хвоста расписания дойти до клиентов
+        long expected = measuredSent * options.clients;
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (delivered.get() < expected && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        long deliveredOpenLoop = delivered.get();
+        complete = deliveredOpenLoop >= expected;
+
+        double seconds = measuredNanos / 1e9;
+        double[] results = new double[Metric.values().length];
+        results[Metric.FANOUT_P99.ordinal()] = fanoutLatency.getValueAtPercentile(99) / 1e6;
+        results[Metric.ALLOCATION_RATE.ordinal()] = allocated / seconds / (1024 * 1024);
+        results[Metric.HEAP_PEAK.ordinal()] = heapPeak / (1024.0 * 1024);
+
+        System.out.printf(Locale.ROOT, "Открытый цикл: отправлено %d сообщений, %d команд; доставлено %d из %d (%.2f%%), ответов бота: %d%n",
+            sent, commandsSent, deliveredOpenLoop, expected, expected > 0 ? deliveredOpenLoop * 100.0 / expected : 100,
+            commandResponses.get());
+
+        saturate(writers, results);
+
+        bot.shutdown();
+        server.shutdown();
+        return results;
+    }
+
+    /**
+     * Замкнутый цикл: новое сообщение уходит, как только в пути меньше inflight сообщений
+     * на клиента. Очереди сервера не растут без предела, а темп определяет сам сервер.
+     * Записывает доставки в секунду и процессорное время сервера на доставку после разгона.
+     */
+    private void saturate(List<PrintWriter> writers, double[] results) {
+        long window = (long) options.inflight * options.clients;
+        long start = System.nanoTime();
+        long measureFrom = start + TimeUnit.SECONDS.toNanos(SATURATION_RAMP_SECONDS);
+        long end = start + TimeUnit.SECONDS.toNanos(options.saturationSeconds);
+        long deliveredAtStart = 0;
+        long cpuAtStart = 0;
+        long measureStartNanos = 0;
+        long sent = 0;
+        int nextWriter = 0;
+
+        while (true) {
+            long now = System.nanoTime();
+            if (measureStartNanos == 0 && now >= measureFrom) {
+                deliveredAtStart = saturationDelivered.get();
+                cpuAtStart = cpuNanos();
+                measureStartNanos = now;
+            }
+            if (now >= end) break;
+            if (sent - saturationDelivered.get() / options.clients >= window) {
+                LockSupport.parkNanos(20_000);
+                continue;
+            }
+            writers.get(nextWriter++ % writers.size()).println(SATURATION_MARKER + words(sent++));
+        }
+        long measured = saturationDelivered.get() - deliveredAtStart;
+        long cpu = cpuNanos() - cpuAtStart;
+        double throughput = measured / ((System.nanoTime() - measureStartNanos) / 1e9);
+        results[Metric.SATURATION_THROUGHPUT.ordinal()] = throughput;
+        results[Metric.CPU_PER_DELIVERY.ordinal()] = measured > 0 ? cpu / 1e3 / measured : 0;
+        System.out.printf(Locale.ROOT, "Насыщение: отправлено %d сообщений, в пути не больше %d; %.0f доставок/с%n",
+            sent, window, throughput);
+    }
+
+    private void readLoop(BufferedReader in) {
+        try {
+            String line;
+            while ((line = in.readLine()) != null) {
+                int marker = line.indexOf("] " + MARKER);
+                if (marker >= 0) {
+                    long now = System.nanoTime();
+                    int from = marker + 2 + MARKER.length();
+                    int to = line.indexOf(' ', from);
+                    long intended = Long.parseLong(line.substring(from, to < 0 ? line.length() : to));
+                    if (intended >= measureStart) {
+                        fanoutLatency.record(now - intended);
+                        delivered.incrementAndGet();
+                    }
+                } else if (line.contains("] " + SATURATION_MARKER)) {
+                    saturationDelivered.incrementAndGet();
+                } else if (line.startsWith("[БОТ]")) {
+                    commandResponses.incrementAndGet();
+                }
+            }
+        } catch (IOException e) {
+            // соединение закрыто при остановке сервера
+        }
+    }
+
+    private static String words(long seed) {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < 6; i++) {
+            if (i > 0) text.append(' ');
+            text.append(WORDS[(int) ((seed * 31 + i * 7) % WORDS.length)]);
+        }
+        return text.toString();
+    }
+
+    private void sampleHeap() {
+        while (true) {
+            if (sampling) {
+                long used = ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+                if (used > heapPeak) heapPeak = used;
+            }
+            LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(20));
+        }
+    }
+
+    // Выделено памяти потоками сервера (потоки самой проверки не учитываются)
+    private static long allocatedBytes() {
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long total = 0;
+        for (Thread thread : Thread.getAllStackTraces().keySet()) {
+            if (thread.getName().startsWith("PerfGate-") || thread == Thread.currentThread()) continue;
+            long bytes = threads.getThreadAllocatedBytes(thread.getId());
+            if (bytes > 0) total += bytes;
+        }
+        return total;
+    }
+
+    // Процессорное время потоков сервера, нс (потоки самой проверки не учитываются)
+    private static long cpuNanos() {
+        java.lang.management.ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        long total = 0;
+        for (Thread thread : Thread.getAllStackTraces().keySet()) {
+            if (thread.getName().startsWith("PerfGate-") || thread == Thread.currentThread()) continue;
+            long nanos = threads.getThreadCpuTime(thread.getId());
+            if (nanos > 0) total += nanos;
+        }
+        return total;
+    }
+
+    // ================= СРАВНЕНИЕ С БАЗОЙ =================
+
+    private static boolean compare(Options options, double[] results) throws IOException {
+        if (!Files.exists(options.baseline)) {
+            printResults(results);
+            System.out.println("\n❌ Нет базового файла " + options.baseline + ", создайте его с -Dperf.update=true");
+            return false;
+        }
+        Properties baseline = new Properties();
+        try (InputStream in = Files.newInputStream(options.baseline)) {
+            baseline.load(new InputStreamReader(in, StandardCharsets.UTF_8));
+        }
+        String scenario = baseline.getProperty("scenario", "");
+        if (!scenario.equals(options.scenario())) {
+            System.out.println("⚠️  База снята на другом сценарии: " + scenario);
+        }
+
+        boolean passed = true;
+        System.out.printf("%n%-28s %12s %12s %9s %8s%n", "Метрика", "База", "Сейчас", "Разница", "Допуск");
+        for (Metric metric : Metric.values()) {
+            String value = baseline.getProperty(metric.key);
+            double current = results[metric.ordinal()];
+            if (value == null) {
+                System.out.printf(Locale.ROOT, "%-28s %12s %12.2f %9s %8s%n", metric.description, "—", current, "", "");
+                continue;
+            }
+            double base = Double.parseDouble(value);
+            double tolerance = Double.parseDouble(baseline.getProperty(metric.key + ".tolerance",
+                String.valueOf(options.tolerance)));
+            boolean regressed = metric.regressed(base, current, tolerance);
+            passed &= !regressed;
+            System.out.printf(Locale.ROOT, "%-28s %12.2f %12.2f %+8.1f%% %7.0f%% %s%n", metric.description, base, current,
+                base != 0 ? (current - base) * 100 / base : 0, tolerance * 100, regressed ? "❌" : "✅");
+        }
+        System.out.println("\n" + (passed ? "✅ РЕГРЕССИЙ НЕТ" : "❌ ОБНАРУЖЕНА РЕГРЕССИЯ"));
+        return passed;
+    }
+
+    private static void printResults(double[] results) {
+        for (Metric metric : Metric.values()) {
+            System.out.printf(Locale.ROOT, "%-28s %12.2f%n", metric.description, results[metric.ordinal()]);
+        }
+    }
+
+    private static void writeBaseline(Options options, double[] results) throws IOException {
+        // Допуски отдельных метрик, заданные вручную, сохраняются
+        Properties previous = new Properties();
+        if (Files.exists(options.baseline)) {
+            try (InputStream in = Files.newInputStream(options.baseline)) {
+                previous.load(new InputStreamReader(in, StandardCharsets.UTF_8));
+            }
+        } else if (options.baseline.getParent() != null) {
+            Files.createDirectories(options.baseline.getParent());
+        }
+        try (OutputStream out = Files.newOutputStream(options.baseline);
+             PrintWriter writer = new PrintWriter(new java.io.OutputStreamWriter(out, StandardCharsets.UTF_8))) {
+            writer.println("# Базовые значения проверки производительности (mvn -Pperf verify)");
+            writer.println("# Обновлено " + LocalDate.now() + ", Java " + System.getProperty("java.version"));
+            writer.println("# <метрика>.tolerance - допуск отдельной метрики вместо -Dperf.tolerance");
+            writer.println("scenario=" + options.scenario());
+            for (Metric metric : Metric.values()) {
+                writer.printf(Locale.ROOT, "%s=%.2f%n", metric.key, results[metric.ordinal()]);
+                String tolerance = previous.getProperty(metric.key + ".tolerance");
+                if (tolerance != null) {
+                    writer.println(metric.key + ".tolerance=" + tolerance);
+                }
+            }
+        }
+        printResults(results);
+    }
+}
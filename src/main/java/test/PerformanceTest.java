@@ -1,99 +1,97 @@
 package test;
 
-import server.MessageBroker;
-import server.ChatServer;  // Добавьте этот импорт
-import common.ChatMessage;
+import server.ChatServer;
+import server.Logger;
+import server.LoopbackTransport;
+import server.Transport;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.concurrent.*;
-import java.util.concurrent.atomic.AtomicInteger;  // Добавьте этот импорт
+import java.util.concurrent.atomic.AtomicLong;
 
+/**
+ * Тест производительности полного пути сообщения без сети.
+ * Клиенты подключаются через LoopbackTransport и проходят настоящие регистрацию,
+ * рейт-лимит, MessageBroker и рассылку; тест ждет, пока каждое сообщение дойдет до всех.
+ */
 public class PerformanceTest {
+    private static final int CLIENTS = 20;
+    private static final int MESSAGES_PER_CLIENT = 5; // в пределах рейт-лимита 60/мин
+    private static final String MARKER = "Тестовое сообщение #";
+
     public static void main(String[] args) throws Exception {
         System.out.println("=== ТЕСТ ПРОИЗВОДИТЕЛЬНОСТИ ===");
-        
-        // Mock сервер должен наследовать ChatServer
-        PerformanceTestServer server = new PerformanceTestServer();
-        MessageBroker broker = new MessageBroker(server);
-        
-        // Запускаем брокер
-        Thread brokerThread = new Thread(broker);
-        brokerThread.start();
-        Thread.sleep(2000);
-        
-        // Отправляем 100 сообщений
-        int totalMessages = 100;
+        Logger.setLogLevel(Logger.LogLevel.WARN);
+
+        LoopbackTransport transport = new LoopbackTransport();
+        ChatServer server = new ChatServer(transport, CLIENTS);
+        Thread serverThread = new Thread(server::start, "ChatServer-Acceptor");
+        serverThread.start();
+
+        // Подключаем клиентов; каждый читает рассылку в своем потоке
+        AtomicLong delivered = new AtomicLong(0);
+        List<PrintWriter> writers = new ArrayList<>();
+        ExecutorService readers = Executors.newFixedThreadPool(CLIENTS);
+        for (int i = 0; i < CLIENTS; i++) {
+            Transport.Connection connection = transport.connect();
+            BufferedReader in = new BufferedReader(new InputStreamReader(connection.getInputStream()));
+            PrintWriter out = new PrintWriter(connection.getOutputStream(), true);
+            in.readLine();                  // приглашение ввести имя
+            out.println("TestUser" + i);
+            in.readLine();                  // приветствие
+            writers.add(out);
+            readers.submit(() -> readLoop(in, delivered));
+        }
+
+        // Отправляем сообщения
+        int totalMessages = CLIENTS * MESSAGES_PER_CLIENT;
+        long expected = (long) totalMessages * CLIENTS;
         long startTime = System.currentTimeMillis();
-        
-        ExecutorService executor = Executors.newFixedThreadPool(10);
-        CountDownLatch latch = new CountDownLatch(totalMessages);
-        
         for (int i = 0; i < totalMessages; i++) {
-            final int msgNum = i;
-            executor.submit(() -> {
-                broker.processIncomingMessage(
-                    new ChatMessage(ChatMessage.MessageType.USER_MESSAGE,
-                                   "TestUser" + (msgNum % 5),
-                                   "Тестовое сообщение #" + msgNum));
-                latch.countDown();
-            });
-            
-            if (msgNum % 20 == 0) Thread.sleep(10);
+            writers.get(i % CLIENTS).println(MARKER + i);
+        }
+
+        // Ждем доставки всем клиентам
+        long deadline = startTime + 10_000;
+        while (delivered.get() < expected && System.currentTimeMillis() < deadline) {
+            Thread.sleep(1);
         }
-        
-        latch.await();
         long endTime = System.currentTimeMillis();
-        
+
         // Статистика
-        long duration = endTime - startTime;
+        long duration = Math.max(1, endTime - startTime);
         double msgPerSecond = totalMessages / (duration / 1000.0);
-        
+
         System.out.println("\nРезультаты:");
+        System.out.println("  Клиентов: " + CLIENTS);
         System.out.println("  Сообщений: " + totalMessages);
         System.out.println("  Время: " + duration + " мс");
         System.out.println("  Сообщений/сек: " + String.format("%.1f", msgPerSecond));
-        System.out.println("  Broadcast выполнено: " + server.getBroadcastCount());
-        
-        // Ожидаем обработки
-        Thread.sleep(2000);
-        System.out.println("  Всего обработано: " + server.getBroadcastCount());
-        
-        broker.shutdown();
-        executor.shutdown();
-        
-        System.out.println("\n" + (msgPerSecond > 50 ? "✅ ТЕСТ ПРОЙДЕН" : "⚠️  СЛИШКОМ МЕДЛЕННО"));
+        System.out.println("  Доставлено: " + delivered.get() + " из " + expected);
+
+        server.shutdown();
+        readers.shutdownNow();
+
+        boolean complete = delivered.get() == expected;
+        System.out.println("\n" + (complete && msgPerSecond > 50 ? "✅ ТЕСТ ПРОЙДЕН"
+            : complete ? "⚠️  СЛИШКОМ МЕДЛЕННО" : "❌ ДОСТАВЛЕНЫ НЕ ВСЕ СООБЩЕНИЯ"));
     }
-    
-    // PerformanceTestServer должен наследовать ChatServer
-    static class PerformanceTestServer extends ChatServer {
-        private AtomicInteger broadcastCount = new AtomicInteger(0);
-        
-        public PerformanceTestServer() {
-            super(12345, 10); // Вызываем конструктор родителя
-        }
-        
-        @Override
-        public void broadcastMessage(ChatMessage msg) {
-            broadcastCount.incrementAndGet();
-            // Для теста просто считаем, не отправляем реальным клиентам
-            if (broadcastCount.get() % 20 == 0) {
-                System.out.println("    [Broadcast #" + broadcastCount.get() + "] " + 
-                    msg.getUser() + ": " + 
-                    (msg.getText().length() > 20 ? msg.getText().substring(0, 20) + "..." : msg.getText()));
+
+    private static void readLoop(BufferedReader in, AtomicLong delivered) {
+        try {
+            String line;
+            while ((line = in.readLine()) != null) {
+                if (line.contains(MARKER)) {
+                    delivered.incrementAndGet();
+                }
             }
-        }
-        
-        // Переопределяем start, чтобы не запускать реальный сервер
-        @Override
-        public void start() {
-            // Не делаем ничего в тесте
-        }
-        
-        @Override
-        public void shutdown() {
-            // Не делаем ничего в тесте
-        }
-        
-        public int getBroadcastCount() { 
-            return broadcastCount.get(); 
+        } catch (IOException e) {
+            // соединение закрыто при остановке сервера
         }
     }
 }